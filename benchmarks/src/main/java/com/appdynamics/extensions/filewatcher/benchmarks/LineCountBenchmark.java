@@ -0,0 +1,81 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.benchmarks;
+
+import com.appdynamics.extensions.filewatcher.util.FileWatcherUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Compares the byte level line counter with the BufferedReader based counter it replaced, on log-like files of
+ * 1 MB, 100 MB and 2 GB. Run with -prof gc to see the allocation rate of each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LineCountBenchmark {
+
+    @Param({"1", "100", "2048"})
+    public int fileSizeInMB;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        file = Files.createTempFile("line-count-benchmark", ".log");
+        Random random = new Random(42);
+        StringBuilder chunk = new StringBuilder();
+        while (chunk.length() < 1024 * 1024) {
+            chunk.append("2020-01-01 00:00:00,000 INFO [main] ");
+            int length = random.nextInt(160);
+            for (int i = 0; i < length; i++) {
+                chunk.append((char) ('a' + random.nextInt(26)));
+            }
+            chunk.append('\n');
+        }
+        byte[] bytes = chunk.substring(0, 1024 * 1024).getBytes(StandardCharsets.UTF_8);
+        try (OutputStream outputStream = Files.newOutputStream(file)) {
+            for (int i = 0; i < fileSizeInMB; i++) {
+                outputStream.write(bytes);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long byteCounter() {
+        return FileWatcherUtil.getNumberOfLinesFromFile(file);
+    }
+
+    @Benchmark
+    public long bufferedReader() throws IOException {
+        // Line counting as it was done before the byte level counter
+        long lines = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file.toFile().getAbsolutePath()))) {
+            while (reader.readLine() != null) lines++;
+        }
+        return lines;
+    }
+}
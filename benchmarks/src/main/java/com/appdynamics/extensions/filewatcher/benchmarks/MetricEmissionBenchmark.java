@@ -0,0 +1,99 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.benchmarks;
+
+import com.appdynamics.extensions.filewatcher.config.FileMetric;
+import com.appdynamics.extensions.filewatcher.config.PathToProcess;
+import com.appdynamics.extensions.filewatcher.processors.ColumnarFileMetricStore;
+import com.appdynamics.extensions.filewatcher.processors.FileMetricsProcessor;
+import com.appdynamics.extensions.filewatcher.processors.MetricEmissionPlan;
+import com.appdynamics.extensions.filewatcher.processors.FilePathProcessor;
+import com.appdynamics.extensions.filewatcher.util.FileWatcherUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.appdynamics.extensions.filewatcher.util.Constants.*;
+
+/*
+ * Measures turning the metrics of one walk into Metric objects and handing them to a publisher that discards them, in
+ * place of the MetricWriteHelper, from a map of FileMetric objects or from the columnar store. Throughput is reported
+ * per metric entry (file or directory).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MetricEmissionBenchmark {
+
+    @Param({"WIDE", "MANY_SMALL_FILES"})
+    public TreeFixture tree;
+
+    @Param
+    public PathShape pathShape;
+
+    @Param({"false", "true"})
+    public boolean columnarMetricStore;
+
+    private Path root;
+    private Map<String, FileMetric> fileMetrics;
+    private FileMetricsProcessor fileMetricsProcessor;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Entries {
+        public long entries;
+    }
+
+    @Setup(Level.Trial)
+    public void walkTree() throws IOException {
+        root = tree.create();
+        PathToProcess pathToProcess = pathShape.toPathToProcess(root);
+        fileMetrics = columnarMetricStore ? new ColumnarFileMetricStore() : new HashMap<>();
+        for (String baseDirectory : new FilePathProcessor().getBaseDirectories(pathToProcess)) {
+            FileWatcherUtil.walk(baseDirectory, pathToProcess, fileMetrics);
+        }
+        fileMetricsProcessor = new FileMetricsProcessor(new MetricEmissionPlan("Custom Metrics|File Watcher",
+                getMetricsFromConfig()), metrics -> { }, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTree() throws IOException {
+        TreeFixture.delete(root);
+    }
+
+    @Benchmark
+    public void printMetrics(Entries entries) {
+        fileMetricsProcessor.printMetrics(fileMetrics);
+        entries.entries += fileMetrics.size();
+    }
+
+    // Every metric of the sample config.yml
+    private static Map<String, Map<String, ?>> getMetricsFromConfig() {
+        Map<String, Map<String, ?>> metrics = new LinkedHashMap<>();
+        String[][] aliases = {{FILE_SIZE, "File Size (Bytes)"}, {OLDEST_FILE_AGE, "Oldest File Age"},
+                {FILE_COUNT, "File Count"}, {NUMBER_OF_LINES, "Number of Lines"},
+                {LAST_MODIFIED_TIME, "Last Modified Time"}, {AVAILABLE, "Available"},
+                {RECURSIVE_FILE_COUNT, "Recursive File Count"}, {MODIFIED, "Modified"},
+                {RECURSIVE_FILE_SIZE, "Size on Disk (Bytes)"}};
+        for (String[] alias : aliases) {
+            Map<String, Object> properties = new HashMap<>();
+            properties.put("alias", alias[1]);
+            metrics.put(alias[0], properties);
+        }
+        return metrics;
+    }
+}
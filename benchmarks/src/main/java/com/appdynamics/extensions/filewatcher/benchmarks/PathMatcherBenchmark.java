@@ -0,0 +1,73 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.benchmarks;
+
+import com.appdynamics.extensions.filewatcher.config.PathToProcess;
+import com.appdynamics.extensions.filewatcher.util.FileWatcherUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/*
+ * Measures the glob matcher on its own: creating it from a configured path, and matching every entry of a tree
+ * against it. The entries are listed once up front so the file system is not part of the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PathMatcherBenchmark {
+
+    @Param({"MANY_SMALL_FILES"})
+    public TreeFixture tree;
+
+    @Param
+    public PathShape pathShape;
+
+    private Path root;
+    private PathToProcess pathToProcess;
+    private PathMatcher pathMatcher;
+    private Path[] entries;
+
+    @Setup(Level.Trial)
+    public void createTree() throws IOException {
+        root = tree.create();
+        pathToProcess = pathShape.toPathToProcess(root);
+        pathMatcher = FileWatcherUtil.getPathMatcher(pathToProcess).getMatcher();
+        try (Stream<Path> paths = Files.walk(root)) {
+            entries = paths.toArray(Path[]::new);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTree() throws IOException {
+        TreeFixture.delete(root);
+    }
+
+    @Benchmark
+    public PathMatcher createMatcher() {
+        return FileWatcherUtil.getPathMatcher(pathToProcess).getMatcher();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1000)
+    public void matchEntries(Blackhole blackhole) {
+        for (int i = 0; i < 1000; i++) {
+            blackhole.consume(pathMatcher.matches(entries[i % entries.length]));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.benchmarks;
+
+import com.appdynamics.extensions.filewatcher.config.PathToProcess;
+
+import java.io.File;
+import java.nio.file.Path;
+
+/*
+ * The path shapes of the sample config.yml, with the same options as the samples.
+ */
+public enum PathShape {
+    SPECIFIC_DIRECTORY("TestFiles", true, true, false, false),
+    SINGLE_LEVEL("TestFiles/*", true, false, true, true),
+    FULLY_RECURSIVE("TestFiles/**", false, true, true, true),
+    FILE_NAME_REGEX("TestFiles/*.txt", true, false, false, true),
+    DIRECTORY_AND_FILE_NAME_REGEXES("Test*/*.*", true, false, false, true);
+
+    private final String path;
+    private final boolean ignoreHiddenFiles;
+    private final boolean excludeSubdirectoryCount;
+    private final boolean recursiveFileCounts;
+    private final boolean recursiveFileSizes;
+
+    PathShape(String path, boolean ignoreHiddenFiles, boolean excludeSubdirectoryCount, boolean recursiveFileCounts,
+              boolean recursiveFileSizes) {
+        this.path = path;
+        this.ignoreHiddenFiles = ignoreHiddenFiles;
+        this.excludeSubdirectoryCount = excludeSubdirectoryCount;
+        this.recursiveFileCounts = recursiveFileCounts;
+        this.recursiveFileSizes = recursiveFileSizes;
+    }
+
+    public PathToProcess toPathToProcess(Path root) {
+        PathToProcess pathToProcess = new PathToProcess();
+        pathToProcess.setDisplayName(name());
+        pathToProcess.setPath(root.toString() + File.separator + path.replace("/", File.separator));
+        pathToProcess.setIgnoreHiddenFiles(ignoreHiddenFiles);
+        pathToProcess.setExcludeSubdirectoryCount(excludeSubdirectoryCount);
+        pathToProcess.setEnableRecursiveFileCounts(recursiveFileCounts);
+        pathToProcess.setEnableRecursiveFileSizes(recursiveFileSizes);
+        return pathToProcess;
+    }
+}
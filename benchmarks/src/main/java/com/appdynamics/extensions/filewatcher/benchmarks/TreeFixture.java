@@ -0,0 +1,92 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.benchmarks;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/*
+ * Synthetic directory trees the benchmarks run against. Every tree is created under a TestFiles directory of a fresh
+ * temp directory, with a mix of .txt and .log files so that every path shape of the sample config.yml matches part
+ * of it.
+ */
+public enum TreeFixture {
+    // One directory holding a large number of files
+    WIDE {
+        @Override
+        void populate(Path testFiles) throws IOException {
+            createFiles(testFiles, 20000, 1024);
+        }
+    },
+    // A long chain of nested directories with a few files on every level
+    DEEP {
+        @Override
+        void populate(Path testFiles) throws IOException {
+            Path directory = testFiles;
+            for (int level = 0; level < 64; level++) {
+                createFiles(directory, 10, 1024);
+                directory = Files.createDirectory(directory.resolve("Level" + level));
+            }
+        }
+    },
+    // Many directories, each holding many small files
+    MANY_SMALL_FILES {
+        @Override
+        void populate(Path testFiles) throws IOException {
+            createFiles(testFiles, 200, 128);
+            for (int i = 0; i < 100; i++) {
+                createFiles(Files.createDirectory(testFiles.resolve("Directory" + i)), 200, 128);
+            }
+        }
+    },
+    // A handful of large log files, where reading the files dominates
+    FEW_HUGE_FILES {
+        @Override
+        void populate(Path testFiles) throws IOException {
+            createFiles(testFiles, 4, 256 * 1024 * 1024);
+        }
+    };
+
+    static final String TEST_FILES = "TestFiles";
+    private static final byte[] LINE = "2020-01-01 00:00:00,000 INFO [main] benchmark line\n"
+            .getBytes(StandardCharsets.UTF_8);
+
+    abstract void populate(Path testFiles) throws IOException;
+
+    /*
+     * Creates the tree under a new temp directory and returns that directory.
+     */
+    public Path create() throws IOException {
+        Path root = Files.createTempDirectory("file-watcher-benchmark");
+        populate(Files.createDirectory(root.resolve(TEST_FILES)));
+        return root;
+    }
+
+    public static void delete(Path root) throws IOException {
+        if (root != null) {
+            FileUtils.deleteDirectory(root.toFile());
+        }
+    }
+
+    private static void createFiles(Path directory, int count, long size) throws IOException {
+        for (int i = 0; i < count; i++) {
+            String name = "TF" + i + (i % 2 == 0 ? ".txt" : ".log");
+            try (OutputStream outputStream = Files.newOutputStream(directory.resolve(name))) {
+                for (long written = 0; written < size; written += LINE.length) {
+                    outputStream.write(LINE, 0, (int) Math.min(LINE.length, size - written));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.benchmarks;
+
+import com.appdynamics.extensions.filewatcher.config.FileMetric;
+import com.appdynamics.extensions.filewatcher.config.PathToProcess;
+import com.appdynamics.extensions.filewatcher.processors.FilePathProcessor;
+import com.appdynamics.extensions.filewatcher.util.FileWatcherUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Measures one collection run of a path: evaluating its base directories and walking each of them, as the monitor
+ * task does. The number of metric entries a run produces is printed once per trial, so that dividing
+ * gc.alloc.rate.norm of -prof gc by it gives the allocations per file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WalkBenchmark {
+
+    @Param
+    public TreeFixture tree;
+
+    @Param
+    public PathShape pathShape;
+
+    @Param({"1", "4"})
+    public int walkParallelism;
+
+    private Path root;
+    private PathToProcess pathToProcess;
+
+    @Setup(Level.Trial)
+    public void createTree() throws IOException {
+        root = tree.create();
+        pathToProcess = pathShape.toPathToProcess(root);
+        pathToProcess.setWalkParallelism(walkParallelism);
+        int entries = 0;
+        for (String baseDirectory : new FilePathProcessor().getBaseDirectories(pathToProcess)) {
+            Map<String, FileMetric> fileMetrics = new HashMap<>();
+            FileWatcherUtil.walk(baseDirectory, pathToProcess, fileMetrics);
+            entries += fileMetrics.size();
+        }
+        System.out.println("# " + entries + " metric entries per run");
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTree() throws IOException {
+        TreeFixture.delete(root);
+    }
+
+    @Benchmark
+    public Map<String, FileMetric> walk() throws IOException {
+        Map<String, FileMetric> fileMetrics = null;
+        for (String baseDirectory : new FilePathProcessor().getBaseDirectories(pathToProcess)) {
+            fileMetrics = new HashMap<>();
+            FileWatcherUtil.walk(baseDirectory, pathToProcess, fileMetrics);
+        }
+        return fileMetrics;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020. AppDynamics LLC and its affiliates.
+ * All Rights Reserved.
+ * This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ * The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher;
+
+import com.appdynamics.extensions.filewatcher.config.PathToProcess;
+import com.appdynamics.extensions.filewatcher.processors.BudgetedFileWalker;
+import com.appdynamics.extensions.filewatcher.processors.ChangeDetector;
+import com.appdynamics.extensions.filewatcher.processors.ColumnarFileMetricStore;
+import com.appdynamics.extensions.filewatcher.processors.DirectoryChangeWatcher;
+import com.appdynamics.extensions.filewatcher.processors.StateSnapshot;
+
+import java.io.Closeable;
+
+/*
+ * State of one base directory of a configured path that outlives a single collection cycle.
+ */
+class BaseDirectoryState implements Closeable {
+    private final String baseDirectory;
+    private final PathToProcess pathToProcess;
+    private final ChangeDetector changeDetector = new ChangeDetector();
+    private DirectoryChangeWatcher directoryChangeWatcher;
+    private BudgetedFileWalker budgetedFileWalker;
+    // Double buffered: collections walk into the one store while the other holds the last completed collection
+    private ColumnarFileMetricStore columnarFileMetricStore;
+    private ColumnarFileMetricStore completedColumnarFileMetricStore;
+    private boolean restored;
+
+    BaseDirectoryState(String baseDirectory, PathToProcess pathToProcess) {
+        this.baseDirectory = baseDirectory;
+        this.pathToProcess = pathToProcess;
+    }
+
+    static String getKey(PathToProcess pathToProcess, String baseDirectory) {
+        return pathToProcess.getDisplayName() + "|" + pathToProcess.getPath() + "|" + baseDirectory;
+    }
+
+    synchronized DirectoryChangeWatcher getDirectoryChangeWatcher() {
+        if (directoryChangeWatcher == null) {
+            directoryChangeWatcher = new DirectoryChangeWatcher(baseDirectory, pathToProcess, changeDetector);
+        }
+        return directoryChangeWatcher;
+    }
+
+    synchronized BudgetedFileWalker getBudgetedFileWalker() {
+        if (budgetedFileWalker == null) {
+            budgetedFileWalker = new BudgetedFileWalker(baseDirectory, pathToProcess, changeDetector);
+        }
+        return budgetedFileWalker;
+    }
+
+    /*
+     * Restores the change detector from the snapshot the first time it is called. Callers that come later wait until
+     * it is restored.
+     */
+    synchronized void restore(StateSnapshot stateSnapshot, String key) {
+        if (!restored) {
+            restored = true;
+            stateSnapshot.restore(key, changeDetector);
+        }
+    }
+
+    ChangeDetector getChangeDetector() {
+        return changeDetector;
+    }
+
+    /*
+     * The store the next collection walks into, which is never the store of the last completed collection.
+     */
+    synchronized ColumnarFileMetricStore getColumnarFileMetricStore() {
+        if (columnarFileMetricStore == null) {
+            columnarFileMetricStore = new ColumnarFileMetricStore();
+        }
+        return columnarFileMetricStore;
+    }
+
+    /*
+     * Swaps the stores once the collection that walked into the given store has completed, so that the next
+     * collection walks into the store of the collection before, which is no longer reported.
+     */
+    synchronized void completeColumnarFileMetricStore(ColumnarFileMetricStore completedStore) {
+        if (completedStore == columnarFileMetricStore) {
+            columnarFileMetricStore = completedColumnarFileMetricStore;
+            completedColumnarFileMetricStore = completedStore;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (directoryChangeWatcher != null) {
+            directoryChangeWatcher.close();
+            directoryChangeWatcher = null;
+        }
+        if (budgetedFileWalker != null) {
+            budgetedFileWalker.close();
+            budgetedFileWalker = null;
+        }
+        columnarFileMetricStore = null;
+        completedColumnarFileMetricStore = null;
+    }
+}
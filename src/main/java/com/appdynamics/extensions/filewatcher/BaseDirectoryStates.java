@@ -0,0 +1,88 @@
+/*
+ * Copyright 2020. AppDynamics LLC and its affiliates.
+ * All Rights Reserved.
+ * This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ * The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher;
+
+import com.appdynamics.extensions.filewatcher.config.PathToProcess;
+import com.appdynamics.extensions.filewatcher.processors.ChangeDetector;
+import com.appdynamics.extensions.filewatcher.processors.FilePathProcessor;
+import com.appdynamics.extensions.filewatcher.processors.StateSnapshot;
+import com.appdynamics.extensions.logging.ExtensionsLoggerFactory;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * The states of the base directories of all configured paths. With a state snapshot, the change detector of a base
+ * directory is restored from it the first time the state is used, and written back to it by writeStateSnapshot().
+ * Restoring decodes the saved state, so it happens outside of the map, which only blocks other callers of the same
+ * state.
+ */
+class BaseDirectoryStates {
+    private static final Logger LOGGER = ExtensionsLoggerFactory.getLogger(BaseDirectoryStates.class);
+
+    private final Map<String, BaseDirectoryState> states = new ConcurrentHashMap<>();
+    private volatile StateSnapshot stateSnapshot;
+
+    BaseDirectoryState get(PathToProcess pathToProcess, String baseDirectory) {
+        String key = BaseDirectoryState.getKey(pathToProcess, baseDirectory);
+        BaseDirectoryState baseDirectoryState = states.computeIfAbsent(key,
+                k -> new BaseDirectoryState(baseDirectory, pathToProcess));
+        StateSnapshot stateSnapshot = this.stateSnapshot;
+        if (stateSnapshot != null) {
+            baseDirectoryState.restore(stateSnapshot, key);
+        }
+        return baseDirectoryState;
+    }
+
+    void setStateSnapshot(StateSnapshot stateSnapshot) {
+        this.stateSnapshot = stateSnapshot;
+    }
+
+    /*
+     * Writes the change detectors of all states. Saved states of base directories that none of the configured paths
+     * has any more are dropped; without configured paths, all saved states are kept.
+     */
+    void writeStateSnapshot(List<PathToProcess> pathsToProcess) {
+        StateSnapshot stateSnapshot = this.stateSnapshot;
+        if (stateSnapshot == null) {
+            return;
+        }
+        Map<String, ChangeDetector> changeDetectors = new HashMap<>();
+        for (Map.Entry<String, BaseDirectoryState> entry : states.entrySet()) {
+            changeDetectors.put(entry.getKey(), entry.getValue().getChangeDetector());
+        }
+        Set<String> configuredKeys = null;
+        if (pathsToProcess != null) {
+            configuredKeys = new HashSet<>(states.keySet());
+            for (PathToProcess pathToProcess : pathsToProcess) {
+                for (String baseDirectory : new FilePathProcessor().getBaseDirectories(pathToProcess)) {
+                    configuredKeys.add(BaseDirectoryState.getKey(pathToProcess, baseDirectory));
+                }
+            }
+        }
+        try {
+            stateSnapshot.write(changeDetectors, configuredKeys);
+        } catch (IOException ex) {
+            LOGGER.error("Could not write the state snapshot", ex);
+        }
+    }
+
+    void close() {
+        for (BaseDirectoryState baseDirectoryState : states.values()) {
+            baseDirectoryState.close();
+        }
+        states.clear();
+    }
+}
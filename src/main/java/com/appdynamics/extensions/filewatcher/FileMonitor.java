@@ -10,15 +10,34 @@ package com.appdynamics.extensions.filewatcher;
 
 import com.appdynamics.extensions.ABaseMonitor;
 import com.appdynamics.extensions.TasksExecutionServiceProvider;
+import com.appdynamics.extensions.filewatcher.config.ContentPattern;
 import com.appdynamics.extensions.filewatcher.config.PathToProcess;
+import com.appdynamics.extensions.filewatcher.processors.DirectoryTreeCache;
+import com.appdynamics.extensions.filewatcher.processors.LineCountPool;
+import com.appdynamics.extensions.filewatcher.processors.MetricEmissionPlan;
+import com.appdynamics.extensions.filewatcher.processors.StateSnapshot;
+import com.appdynamics.extensions.filewatcher.processors.VirtualThreadExecutor;
+import com.appdynamics.extensions.filewatcher.util.ContentMatchCache;
+import com.appdynamics.extensions.filewatcher.util.FileWatcherUtil;
+import com.appdynamics.extensions.filewatcher.util.WalkStatistics;
 import com.appdynamics.extensions.logging.ExtensionsLoggerFactory;
 import com.google.common.collect.Lists;
 
 import org.slf4j.Logger;
 
 import java.io.File;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.PatternSyntaxException;
 
 import static com.appdynamics.extensions.filewatcher.util.Constants.*;
 import static com.appdynamics.extensions.util.AssertUtils.assertNotNull;
@@ -31,6 +50,17 @@ public class FileMonitor extends ABaseMonitor {
 
     private static final Logger LOGGER = ExtensionsLoggerFactory.getLogger(FileMonitor.class);
     private List<PathToProcess> pathsToProcess;
+    private final BaseDirectoryStates baseDirectoryStates = new BaseDirectoryStates();
+    private final Map<String, PathSchedule> pathSchedules = new ConcurrentHashMap<>();
+    private ScheduledExecutorService collectionScheduler;
+    private VirtualThreadExecutor virtualThreadExecutor;
+    private boolean virtualThreadsInitialized;
+    private MetricEmissionPlan metricEmissionPlan;
+    private StateSnapshot stateSnapshot;
+    private boolean stateSnapshotInitialized;
+    private LineCountPool lineCountPool;
+    private boolean lineCountPoolInitialized;
+    private ExecutorService metricEmitter;
 
     @Override
     public String getMonitorName() {
@@ -46,10 +76,141 @@ public class FileMonitor extends ABaseMonitor {
     protected void doRun(TasksExecutionServiceProvider tasksExecutionServiceProvider) {
         initMonitor();
         assertNotNull(pathsToProcess, "Please configure the paths to be processed in your config.yml");
+        baseDirectoryStates.setStateSnapshot(getStateSnapshot());
+        Set<PathToProcess> sharedPaths = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (isSharedTraversalEnabled()) {
+            List<PathToProcess> shareablePaths = Lists.newArrayList();
+            for (PathToProcess pathToProcess : pathsToProcess) {
+                if (SharedTraversalTask.canShareTraversal(pathToProcess, getVirtualThreadExecutor())) {
+                    shareablePaths.add(pathToProcess);
+                }
+            }
+            for (List<List<SharedTraversalTask.Target>> traversals : SharedTraversalTask.plan(shareablePaths)) {
+                Set<PathToProcess> traversalPaths = SharedTraversalTask.getPathsToProcess(traversals);
+                sharedPaths.addAll(traversalPaths);
+                if (tryStartAll(traversalPaths)) {
+                    SharedTraversalTask task = new SharedTraversalTask(
+                            tasksExecutionServiceProvider.getMetricWriteHelper(), traversals, pathSchedules,
+                            baseDirectoryStates, getLineCountPool(), getMetricEmissionPlan(), getMetricEmitter());
+                    tasksExecutionServiceProvider.submit(SharedTraversalTask.getName(traversals), task);
+                } else {
+                    for (PathToProcess pathToProcess : traversalPaths) {
+                        submit(tasksExecutionServiceProvider, pathToProcess, null);
+                    }
+                }
+            }
+        }
+        for (PathToProcess pathToProcess : pathsToProcess) {
+            if (sharedPaths.contains(pathToProcess)) {
+                continue;
+            }
+            PathSchedule pathSchedule = getPathSchedule(pathToProcess);
+            PathCollector pathCollector = new PathCollector(pathToProcess, baseDirectoryStates,
+                    getVirtualThreadExecutor(), getLineCountPool(), getMetricEmissionPlan());
+            if (pathToProcess.getCollectionIntervalSeconds() > 0) {
+                scheduleCollection(pathToProcess, pathSchedule, pathCollector);
+                submit(tasksExecutionServiceProvider, pathToProcess, null);
+            } else if (pathSchedule.tryStart()) {
+                submit(tasksExecutionServiceProvider, pathToProcess, pathCollector);
+            } else {
+                LOGGER.warn("The collection of {} started {} ms ago is still running, reporting its last completed " +
+                        "collection instead of starting another", pathToProcess.getDisplayName(),
+                        pathSchedule.getInFlightMillis());
+                submit(tasksExecutionServiceProvider, pathToProcess, null);
+            }
+        }
+    }
+
+    private void submit(TasksExecutionServiceProvider tasksExecutionServiceProvider, PathToProcess pathToProcess,
+                        PathCollector pathCollector) {
+        FileMonitorTask task = new FileMonitorTask(getContextConfiguration(),
+                tasksExecutionServiceProvider.getMetricWriteHelper(), pathToProcess, getPathSchedule(pathToProcess),
+                pathCollector, getMetricEmissionPlan(), getMetricEmitter());
+        tasksExecutionServiceProvider.submit(pathToProcess.getDisplayName(), task);
+    }
+
+    private PathSchedule getPathSchedule(PathToProcess pathToProcess) {
+        return pathSchedules.computeIfAbsent(PathSchedule.getKey(pathToProcess), key -> new PathSchedule());
+    }
+
+    /*
+     * Marks the collections of all given paths as in flight, or of none if one of them already is.
+     */
+    private boolean tryStartAll(Set<PathToProcess> pathsToProcess) {
+        List<PathSchedule> started = Lists.newArrayList();
+        for (PathToProcess pathToProcess : pathsToProcess) {
+            PathSchedule pathSchedule = getPathSchedule(pathToProcess);
+            if (!pathSchedule.tryStart()) {
+                LOGGER.warn("The collection of {} started {} ms ago is still running, reporting the last completed " +
+                        "collections of the paths walked with it instead", pathToProcess.getDisplayName(),
+                        pathSchedule.getInFlightMillis());
+                for (PathSchedule startedSchedule : started) {
+                    startedSchedule.release();
+                }
+                return false;
+            }
+            started.add(pathSchedule);
+        }
+        return true;
+    }
+
+    /*
+     * Collects the path on its own interval, independent of the runs of the monitor, which report its last completed
+     * collection. Collections run with a fixed delay between them, so one never starts before the last one ended.
+     */
+    private synchronized void scheduleCollection(PathToProcess pathToProcess, PathSchedule pathSchedule,
+                                                 PathCollector pathCollector) {
+        if (pathSchedule.isScheduled()) {
+            return;
+        }
+        if (collectionScheduler == null) {
+            collectionScheduler = Executors.newScheduledThreadPool(getScheduledPathCount(), runnable -> {
+                Thread thread = new Thread(runnable, "FileWatcher-Collection");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        LOGGER.info("Collecting {} every {} seconds", pathToProcess.getDisplayName(),
+                pathToProcess.getCollectionIntervalSeconds());
+        pathSchedule.setScheduledCollection(collectionScheduler.scheduleWithFixedDelay(() -> {
+            if (!pathSchedule.tryStart()) {
+                return;
+            }
+            boolean completed = false;
+            try {
+                pathSchedule.complete(pathCollector.collect());
+                completed = true;
+            } catch (Throwable throwable) {
+                // Anything thrown out of here would end all further collections of the path
+                LOGGER.error("Scheduled collection failed for name {}", pathToProcess.getDisplayName(), throwable);
+            } finally {
+                if (!completed) {
+                    pathSchedule.release();
+                }
+            }
+        }, 0, pathToProcess.getCollectionIntervalSeconds(), TimeUnit.SECONDS));
+    }
+
+    private int getScheduledPathCount() {
+        int scheduledPathCount = 0;
         for (PathToProcess pathToProcess : pathsToProcess) {
-            FileMonitorTask task = new FileMonitorTask(getContextConfiguration(),
-                    tasksExecutionServiceProvider.getMetricWriteHelper(), pathToProcess);
-            tasksExecutionServiceProvider.submit(pathToProcess.getDisplayName(), task);
+            if (pathToProcess.getCollectionIntervalSeconds() > 0) {
+                scheduledPathCount++;
+            }
+        }
+        return scheduledPathCount;
+    }
+
+    private synchronized void closeCollectionScheduler() {
+        for (PathSchedule pathSchedule : pathSchedules.values()) {
+            pathSchedule.cancel();
+        }
+        // Collections still in flight keep their schedules, so that no second collection of their paths starts
+        // before they complete
+        pathSchedules.values().removeIf(pathSchedule -> !pathSchedule.isInFlight());
+        if (collectionScheduler != null) {
+            collectionScheduler.shutdownNow();
+            collectionScheduler = null;
         }
     }
 
@@ -60,9 +221,126 @@ public class FileMonitor extends ABaseMonitor {
 
     @Override
     protected void onConfigReload(File file) {
+        baseDirectoryStates.writeStateSnapshot(pathsToProcess);
+        baseDirectoryStates.close();
+        clearStateSnapshot();
+        closeCollectionScheduler();
+        closeVirtualThreadExecutor();
+        closeLineCountPool();
+        FileWatcherUtil.clearPathMatchers();
+        WalkStatistics.clear();
+        DirectoryTreeCache.clear();
+        ContentMatchCache.clear();
+        clearMetricEmissionPlan();
         initMonitor();
     }
 
+    private boolean isSharedTraversalEnabled() {
+        return Boolean.valueOf(String.valueOf(getContextConfiguration().getConfigYml().get(SHARED_TRAVERSAL)));
+    }
+
+    private synchronized VirtualThreadExecutor getVirtualThreadExecutor() {
+        if (!virtualThreadsInitialized) {
+            Map<String, ?> virtualThreads = (Map<String, ?>) getContextConfiguration().getConfigYml()
+                    .get(VIRTUAL_THREADS);
+            if (virtualThreads != null && Boolean.valueOf(String.valueOf(virtualThreads.get("enabled")))) {
+                Object maxConcurrentFileOperations = virtualThreads.get("maxConcurrentFileOperations");
+                virtualThreadExecutor = VirtualThreadExecutor.create(maxConcurrentFileOperations != null ?
+                        Integer.parseInt(maxConcurrentFileOperations.toString()) :
+                        DEFAULT_MAX_CONCURRENT_FILE_OPERATIONS);
+            }
+            virtualThreadsInitialized = true;
+        }
+        return virtualThreadExecutor;
+    }
+
+    private synchronized void closeVirtualThreadExecutor() {
+        if (virtualThreadExecutor != null) {
+            virtualThreadExecutor.close();
+            virtualThreadExecutor = null;
+        }
+        virtualThreadsInitialized = false;
+    }
+
+    private synchronized MetricEmissionPlan getMetricEmissionPlan() {
+        if (metricEmissionPlan == null) {
+            Map<String, ?> metricPublishing = (Map<String, ?>) getContextConfiguration().getConfigYml()
+                    .get(METRIC_PUBLISHING);
+            int batchSize = 0;
+            long lingerMillis = 0;
+            if (metricPublishing != null) {
+                batchSize = metricPublishing.get("batchSize") != null ?
+                        Integer.parseInt(metricPublishing.get("batchSize").toString()) : 0;
+                lingerMillis = metricPublishing.get("lingerMillis") != null ?
+                        Long.parseLong(metricPublishing.get("lingerMillis").toString()) : 0;
+            }
+            metricEmissionPlan = new MetricEmissionPlan(getContextConfiguration().getMetricPrefix(),
+                    (Map) getContextConfiguration().getConfigYml().get("metrics"), batchSize, lingerMillis);
+        }
+        return metricEmissionPlan;
+    }
+
+    private synchronized void clearMetricEmissionPlan() {
+        metricEmissionPlan = null;
+    }
+
+    private synchronized StateSnapshot getStateSnapshot() {
+        if (!stateSnapshotInitialized) {
+            Map<String, ?> snapshot = (Map<String, ?>) getContextConfiguration().getConfigYml().get(STATE_SNAPSHOT);
+            if (snapshot != null && snapshot.get("file") != null) {
+                stateSnapshot = new StateSnapshot(Paths.get(snapshot.get("file").toString()));
+            }
+            stateSnapshotInitialized = true;
+        }
+        return stateSnapshot;
+    }
+
+    private synchronized void clearStateSnapshot() {
+        stateSnapshot = null;
+        stateSnapshotInitialized = false;
+    }
+
+    private synchronized LineCountPool getLineCountPool() {
+        if (!lineCountPoolInitialized) {
+            Map<String, ?> lineCounting = (Map<String, ?>) getContextConfiguration().getConfigYml().get(LINE_COUNTING);
+            if (lineCounting != null) {
+                lineCountPool = new LineCountPool(lineCounting.get("threads") != null ?
+                        Integer.parseInt(lineCounting.get("threads").toString()) : DEFAULT_LINE_COUNT_THREADS,
+                        lineCounting.get("maxQueuedFiles") != null ?
+                                Integer.parseInt(lineCounting.get("maxQueuedFiles").toString()) :
+                                DEFAULT_MAX_QUEUED_FILES,
+                        lineCounting.get("deadlineMillis") != null ?
+                                Long.parseLong(lineCounting.get("deadlineMillis").toString()) :
+                                DEFAULT_LINE_COUNT_DEADLINE_MILLIS);
+            }
+            lineCountPoolInitialized = true;
+        }
+        return lineCountPool;
+    }
+
+    private synchronized void closeLineCountPool() {
+        if (lineCountPool != null) {
+            lineCountPool.close();
+            lineCountPool = null;
+        }
+        lineCountPoolInitialized = false;
+    }
+
+    /*
+     * The threads that publish the metric batches of all tasks, so that tasks go on walking while their metrics are
+     * published. Every task waits for its own batches before it completes, and idle threads end after a minute.
+     */
+    private synchronized ExecutorService getMetricEmitter() {
+        if (metricEmitter == null) {
+            metricEmitter = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "FileWatcher-Emitter");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return metricEmitter;
+    }
+
     private void initMonitor() {
         try {
             pathsToProcess = getPathsToProcess(getServers());
@@ -74,20 +352,88 @@ public class FileMonitor extends ABaseMonitor {
     private List<PathToProcess> getPathsToProcess(List<Map<String, ?>> configuredPaths) {
         List<PathToProcess> pathsToProcess = Lists.newArrayList();
         for (Map<String, ?> path : configuredPaths) {
-            pathsToProcess.add(new PathToProcess() {{
+            PathToProcess pathToProcess = new PathToProcess() {{
                 setDisplayName((String) path.get("displayName"));
                 setPath((String) path.get("path"));
                 setIgnoreHiddenFiles(Boolean.valueOf(path.get("ignoreHiddenFiles").toString()));
                 setEnableRecursiveFileCounts(Boolean.valueOf(path.get("recursiveFileCounts").toString()));
                 setExcludeSubdirectoryCount(Boolean.valueOf(path.get("excludeSubdirectoriesFromFileCount").toString()));
                 setEnableRecursiveFileSizes(Boolean.valueOf(path.get("recursiveFileSizes").toString()));
-            }});
+                setWatchMode(path.get("watchMode") != null ? path.get("watchMode").toString() : WATCH_MODE_WALK);
+                setWalkParallelism(path.get("walkParallelism") != null ?
+                        Integer.parseInt(path.get("walkParallelism").toString()) : 1);
+                setMaxEntriesPerCycle(path.get("maxEntriesPerCycle") != null ?
+                        Long.parseLong(path.get("maxEntriesPerCycle").toString()) : 0);
+                setMaxWalkTimeSeconds(path.get("maxWalkTimeSeconds") != null ?
+                        Long.parseLong(path.get("maxWalkTimeSeconds").toString()) : 0);
+                setColumnarMetricStore(path.get("columnarMetricStore") != null &&
+                        Boolean.valueOf(path.get("columnarMetricStore").toString()));
+                setAggregation(path.get("aggregation") != null ? path.get("aggregation").toString() : null);
+                setMaxSeries(path.get("maxSeries") != null ?
+                        Integer.parseInt(path.get("maxSeries").toString()) : DEFAULT_MAX_SERIES);
+                setTopFiles(path.get("topFiles") != null ? Integer.parseInt(path.get("topFiles").toString()) : 0);
+                setCollectionIntervalSeconds(path.get("collectionIntervalSeconds") != null ?
+                        Long.parseLong(path.get("collectionIntervalSeconds").toString()) : 0);
+                setDirectoryCache(path.get("directoryCache") != null &&
+                        Boolean.valueOf(path.get("directoryCache").toString()));
+                setDirectoryCacheMaxAgeSeconds(path.get("directoryCacheMaxAgeSeconds") != null ?
+                        Long.parseLong(path.get("directoryCacheMaxAgeSeconds").toString()) :
+                        DEFAULT_DIRECTORY_CACHE_MAX_AGE_SECONDS);
+                if (path.get("contentPatterns") != null) {
+                    setContentPatterns(parseContentPatterns(getDisplayName(),
+                            (List<Map<String, ?>>) path.get("contentPatterns")));
+                }
+            }};
+            // Any event under the path changes the recursive totals of its ancestors, so events would save nothing
+            if (WATCH_MODE_EVENTS.equalsIgnoreCase(pathToProcess.getWatchMode())
+                    && (pathToProcess.getEnableRecursiveFileCounts() || pathToProcess.getEnableRecursiveFileSizes())) {
+                LOGGER.warn("Events mode is not supported with recursive file counts or sizes, walking {} instead",
+                        pathToProcess.getDisplayName());
+                pathToProcess.setWatchMode(WATCH_MODE_WALK);
+            }
+            // Events and budgeted walks only see part of the tree in a cycle, so their rollups would be incomplete
+            if (pathToProcess.isAggregated() && (WATCH_MODE_EVENTS.equalsIgnoreCase(pathToProcess.getWatchMode())
+                    || pathToProcess.isWalkBudgeted())) {
+                LOGGER.warn("Aggregation is only supported in walk mode without a walk budget, reporting every " +
+                        "matched file of {} instead", pathToProcess.getDisplayName());
+                pathToProcess.setAggregation(null);
+            }
+            pathsToProcess.add(pathToProcess);
         }
         return pathsToProcess;
     }
 
+    // Patterns that are missing or are not valid regular expressions are dropped here, once per configuration load
+    private List<ContentPattern> parseContentPatterns(String displayName, List<Map<String, ?>> configuredPatterns) {
+        List<ContentPattern> contentPatterns = Lists.newArrayList();
+        for (Map<String, ?> pattern : configuredPatterns) {
+            if (pattern.get("pattern") == null) {
+                LOGGER.error("Ignoring content pattern {} of {} as it has no pattern", pattern.get("name"),
+                        displayName);
+                continue;
+            }
+            ContentPattern contentPattern = new ContentPattern() {{
+                setName(pattern.get("name") != null ? pattern.get("name").toString() : null);
+                setPattern(pattern.get("pattern").toString());
+                setRegex(pattern.get("regex") != null && Boolean.valueOf(pattern.get("regex").toString()));
+            }};
+            if (contentPattern.isRegex()) {
+                try {
+                    contentPattern.getCompiledPattern();
+                } catch (PatternSyntaxException ex) {
+                    LOGGER.error("Ignoring content pattern {} of {} as it is not a valid regular expression",
+                            contentPattern.getPattern(), displayName, ex);
+                    continue;
+                }
+            }
+            contentPatterns.add(contentPattern);
+        }
+        return contentPatterns;
+    }
+
     @Override
     public void onComplete() {
+        baseDirectoryStates.writeStateSnapshot(pathsToProcess);
         LOGGER.info("File Monitoring Jobs Completed");
     }
 }
\ No newline at end of file
@@ -12,21 +12,13 @@ import com.appdynamics.extensions.AMonitorTaskRunnable;
 import com.appdynamics.extensions.MetricWriteHelper;
 import com.appdynamics.extensions.conf.MonitorContextConfiguration;
 import com.appdynamics.extensions.executorservice.MonitorExecutorService;
-import com.appdynamics.extensions.filewatcher.config.FileMetric;
 import com.appdynamics.extensions.filewatcher.config.PathToProcess;
 import com.appdynamics.extensions.filewatcher.processors.FileMetricsProcessor;
-import com.appdynamics.extensions.filewatcher.processors.FilePathProcessor;
-import com.appdynamics.extensions.filewatcher.util.FileWatcherUtil;
+import com.appdynamics.extensions.filewatcher.processors.MetricEmissionPlan;
 import com.appdynamics.extensions.logging.ExtensionsLoggerFactory;
 import org.slf4j.Logger;
 
-import java.nio.file.*;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
-import static com.appdynamics.extensions.filewatcher.util.FileWatcherUtil.isDirectoryAccessible;
-import static com.appdynamics.extensions.filewatcher.util.FileWatcherUtil.walk;
+import java.util.concurrent.Executor;
 
 /*
  * @author Aditya Jagtiani
@@ -38,48 +30,42 @@ public class FileMonitorTask implements AMonitorTaskRunnable {
     private PathToProcess pathToProcess;
     private FileMetricsProcessor fileMetricsProcessor;
     private MonitorExecutorService executorService;
-    private Map<String, FileMetric> fileMetrics;
+    private PathSchedule pathSchedule;
+    private PathCollector pathCollector;
 
+    /*
+     * Reports the last completed collection of the path, after running a new one first if a collector is given. The
+     * metrics of a new collection are published on the emitter while it is still walking further base directories.
+     */
     FileMonitorTask(MonitorContextConfiguration monitorContextConfiguration,
-                    MetricWriteHelper metricWriteHelper, PathToProcess pathToProcess) {
+                    MetricWriteHelper metricWriteHelper, PathToProcess pathToProcess, PathSchedule pathSchedule,
+                    PathCollector pathCollector, MetricEmissionPlan metricEmissionPlan, Executor metricEmitter) {
         this.pathToProcess = pathToProcess;
-        this.fileMetricsProcessor = new FileMetricsProcessor(monitorContextConfiguration.getMetricPrefix(),
-                (Map) monitorContextConfiguration.getConfigYml().get("metrics"), metricWriteHelper);
+        this.pathSchedule = pathSchedule;
+        this.pathCollector = pathCollector;
+        this.fileMetricsProcessor = new FileMetricsProcessor(metricEmissionPlan, metricWriteHelper, metricEmitter);
         this.executorService = monitorContextConfiguration.getContext().getExecutorService();
     }
 
     @Override
     public void run() {
         try {
-            List<String> baseDirectories = new FilePathProcessor().getBaseDirectories(pathToProcess);
-            for (String baseDirectory : baseDirectories) {
-                fileMetrics = new HashMap<>();
-                if (isDirectoryAccessible(Paths.get(baseDirectory))) {
-                    LOGGER.info("Configured Path {} accessible, starting to walk directory and collecting metrics.",baseDirectory);
-                    if(pathToProcess.getPath().endsWith("\\**") || pathToProcess.getPath().endsWith("/**")){
-                        LOGGER.info("Path is configured as fully recursive with ** wildcard. Calculating recursive directory count");
-                        long recursiveDirectoryCount = FileWatcherUtil.calculateRecursiveDirectoryCount(Paths.get(baseDirectory),pathToProcess.getIgnoreHiddenFiles());
-                        LOGGER.info("Recursive directory count is "+ recursiveDirectoryCount);
-                        if(recursiveDirectoryCount > 50){
-                            LOGGER.warn("Recursive directory count is more than 50. Printing base directory metrics only for path "+pathToProcess.getPath());
-                            String currentPath = pathToProcess.getPath();
-                            pathToProcess.setPath(currentPath.substring(0,currentPath.length()-1));
-                        } else {
-                            LOGGER.info("Collecting all metrics for path "+pathToProcess.getPath()+" since recursive directory count is less than 50");
-                        }
+            if (pathCollector != null) {
+                boolean completed = false;
+                try {
+                    pathSchedule.complete(pathCollector.collect(fileMetricsProcessor));
+                    completed = true;
+                } finally {
+                    if (!completed) {
+                        pathSchedule.release();
                     }
-                    LOGGER.trace("FileMonitorTask :: run - Starting to walk...");
-                    walk(baseDirectory, pathToProcess, fileMetrics);
-                    LOGGER.trace("FileMonitorTask :: run - Completed walk!!!");
-                    fileMetricsProcessor.printMetrics(fileMetrics);
-                } else {
-                    LOGGER.error("Cannot monitor configured path {} as its base directory {} either does not exist or " +
-                            "has insufficient permissions. Assign read & execute permissions to the base directory for " +
-                            "the current machine agent user in order to monitor this path.", pathToProcess.getPath(), baseDirectory);
                 }
             }
+            pathSchedule.report(pathToProcess.getDisplayName(), fileMetricsProcessor);
         } catch (Exception ex) {
             LOGGER.error("Task failed for name {}", pathToProcess.getDisplayName(), ex);
+        } finally {
+            fileMetricsProcessor.flush();
         }
     }
 
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2020. AppDynamics LLC and its affiliates.
+ * All Rights Reserved.
+ * This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ * The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher;
+
+import com.appdynamics.extensions.filewatcher.config.FileMetric;
+import com.appdynamics.extensions.filewatcher.config.PathToProcess;
+import com.appdynamics.extensions.filewatcher.processors.ChangeDetector;
+import com.appdynamics.extensions.filewatcher.processors.ColumnarFileMetricStore;
+import com.appdynamics.extensions.filewatcher.processors.FileAggregator;
+import com.appdynamics.extensions.filewatcher.processors.FileMetricsProcessor;
+import com.appdynamics.extensions.filewatcher.processors.FilePathProcessor;
+import com.appdynamics.extensions.filewatcher.processors.LineCountPool;
+import com.appdynamics.extensions.filewatcher.processors.MetricEmissionPlan;
+import com.appdynamics.extensions.filewatcher.processors.VirtualThreadExecutor;
+import com.appdynamics.extensions.filewatcher.util.FileWatcherUtil;
+import com.appdynamics.extensions.filewatcher.util.WalkStatistics;
+import com.appdynamics.extensions.logging.ExtensionsLoggerFactory;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.appdynamics.extensions.filewatcher.util.Constants.WATCH_MODE_EVENTS;
+import static com.appdynamics.extensions.filewatcher.util.FileWatcherUtil.isDirectoryAccessible;
+
+/*
+ * Collects the metrics of every base directory of a configured path into a PathSnapshot.
+ */
+class PathCollector {
+
+    private static final Logger LOGGER = ExtensionsLoggerFactory.getLogger(PathCollector.class);
+    private final PathToProcess pathToProcess;
+    private final BaseDirectoryStates baseDirectoryStates;
+    private final VirtualThreadExecutor virtualThreadExecutor;
+    private final LineCountPool lineCountPool;
+    private final MetricEmissionPlan metricEmissionPlan;
+
+    /*
+     * Without a line count pool, lines are counted in the walk.
+     */
+    PathCollector(PathToProcess pathToProcess, BaseDirectoryStates baseDirectoryStates,
+                  VirtualThreadExecutor virtualThreadExecutor, LineCountPool lineCountPool,
+                  MetricEmissionPlan metricEmissionPlan) {
+        this.pathToProcess = pathToProcess;
+        this.baseDirectoryStates = baseDirectoryStates;
+        this.virtualThreadExecutor = virtualThreadExecutor;
+        this.lineCountPool = lineCountPool;
+        this.metricEmissionPlan = metricEmissionPlan;
+    }
+
+    PathSnapshot collect() throws IOException {
+        return collect(null);
+    }
+
+    /*
+     * With a metrics processor, the metrics of every base directory are handed to it as soon as the base directory is
+     * collected, so that they are published while the next one is walked.
+     */
+    PathSnapshot collect(FileMetricsProcessor fileMetricsProcessor) throws IOException {
+        long startTime = System.currentTimeMillis();
+        long publishingNanos = 0;
+        if (fileMetricsProcessor != null) {
+            fileMetricsProcessor.takeLargestBatchSize();
+        }
+        PathSnapshot snapshot = new PathSnapshot();
+        FileAggregator fileAggregator = pathToProcess.isAggregated() ? new FileAggregator(pathToProcess,
+                metricEmissionPlan.getMetricsPerRollup(), metricEmissionPlan.getMetricsPerEntry()) : null;
+        for (String baseDirectory : new FilePathProcessor().getBaseDirectories(pathToProcess)) {
+            Map<String, FileMetric> fileMetrics = new HashMap<>();
+            if (isDirectoryAccessible(Paths.get(baseDirectory))) {
+                if (WATCH_MODE_EVENTS.equalsIgnoreCase(pathToProcess.getWatchMode())) {
+                    LOGGER.debug("Refreshing metrics of {} from file system events", baseDirectory);
+                    fileMetrics = getBaseDirectoryState(baseDirectory).getDirectoryChangeWatcher().refresh();
+                } else if (pathToProcess.isWalkBudgeted()) {
+                    LOGGER.info("Configured Path {} accessible, continuing the budgeted walk of the directory.", baseDirectory);
+                    fileMetrics = getBaseDirectoryState(baseDirectory).getBudgetedFileWalker().walk();
+                } else if (pathToProcess.getColumnarMetricStore()) {
+                    LOGGER.info("Configured Path {} accessible, walking directory into its metric store.", baseDirectory);
+                    ColumnarFileMetricStore columnarFileMetricStore =
+                            getBaseDirectoryState(baseDirectory).getColumnarFileMetricStore();
+                    columnarFileMetricStore.beginCycle();
+                    try {
+                        walk(baseDirectory, columnarFileMetricStore, fileAggregator);
+                    } finally {
+                        columnarFileMetricStore.endCycle();
+                    }
+                    fileMetrics = columnarFileMetricStore;
+                } else {
+                    LOGGER.info("Configured Path {} accessible, starting to walk directory and collecting metrics.",baseDirectory);
+                    LOGGER.trace("PathCollector :: collect - Starting to walk...");
+                    walk(baseDirectory, fileMetrics, fileAggregator);
+                    LOGGER.trace("PathCollector :: collect - Completed walk!!!");
+                }
+                Map<String, FileMetric> collectedMetrics = snapshot.addFileMetrics(fileMetrics,
+                        getBaseDirectoryState(baseDirectory));
+                if (fileMetricsProcessor != null) {
+                    long publishingStartTime = System.nanoTime();
+                    fileMetricsProcessor.printMetrics(collectedMetrics);
+                    publishingNanos += System.nanoTime() - publishingStartTime;
+                }
+                snapshot.getChanges().add(getBaseDirectoryState(baseDirectory).getChangeDetector().takeChanges());
+            } else {
+                LOGGER.error("Cannot monitor configured path {} as its base directory {} either does not exist or " +
+                        "has insufficient permissions. Assign read & execute permissions to the base directory for " +
+                        "the current machine agent user in order to monitor this path.", pathToProcess.getPath(), baseDirectory);
+            }
+        }
+        snapshot.setFileAggregator(fileAggregator);
+        if (fileMetricsProcessor != null) {
+            snapshot.setFileMetricsPublished(publishingNanos);
+        }
+        snapshot.setWalkStatistics(WalkStatistics.get(pathToProcess).take(System.currentTimeMillis() - startTime));
+        return snapshot;
+    }
+
+    private void walk(String baseDirectory, Map<String, FileMetric> fileMetrics, FileAggregator fileAggregator)
+            throws IOException {
+        ChangeDetector changeDetector = getBaseDirectoryState(baseDirectory).getChangeDetector();
+        LineCountPool.Batch lineCountBatch = lineCountPool != null ? lineCountPool.begin(pathToProcess, baseDirectory)
+                : null;
+        changeDetector.beginCycle();
+        boolean walked = false;
+        try {
+            FileWatcherUtil.walk(baseDirectory, pathToProcess, fileMetrics, virtualThreadExecutor, changeDetector,
+                    fileAggregator, lineCountBatch);
+            if (lineCountBatch != null) {
+                lineCountBatch.attach(fileMetrics);
+            }
+            walked = true;
+        } finally {
+            if (walked) {
+                changeDetector.endCycle();
+            } else {
+                changeDetector.abortCycle();
+            }
+        }
+    }
+
+    private BaseDirectoryState getBaseDirectoryState(String baseDirectory) {
+        return baseDirectoryStates.get(pathToProcess, baseDirectory);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020. AppDynamics LLC and its affiliates.
+ * All Rights Reserved.
+ * This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ * The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher;
+
+import com.appdynamics.extensions.filewatcher.config.FileMetric;
+import com.appdynamics.extensions.filewatcher.config.PathToProcess;
+import com.appdynamics.extensions.filewatcher.processors.ChangeDetector;
+import com.appdynamics.extensions.filewatcher.processors.FileMetricsProcessor;
+import com.appdynamics.extensions.filewatcher.util.WalkStatistics;
+import com.appdynamics.extensions.logging.ExtensionsLoggerFactory;
+import org.slf4j.Logger;
+
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * Tracks the collections of one configured path across runs of the monitor. At most one collection of the path is in
+ * flight at any time, and every run reports the last completed collection, so a walk that overruns the run it was
+ * started in does not hold back the metrics of the next one. The changes found by every collection completed since the
+ * last report are summed up, so that none of them is lost or reported twice.
+ */
+class PathSchedule {
+    private static final Logger LOGGER = ExtensionsLoggerFactory.getLogger(PathSchedule.class);
+
+    private final AtomicBoolean inFlight = new AtomicBoolean();
+    private volatile long startTimeMillis;
+    private PathSnapshot lastSnapshot;
+    private ChangeDetector.Changes pendingChanges = new ChangeDetector.Changes();
+    private ScheduledFuture<?> scheduledCollection;
+
+    static String getKey(PathToProcess pathToProcess) {
+        return pathToProcess.getDisplayName() + "|" + pathToProcess.getPath();
+    }
+
+    /*
+     * Marks a collection of the path as in flight, unless one already is.
+     */
+    boolean tryStart() {
+        if (inFlight.compareAndSet(false, true)) {
+            startTimeMillis = System.currentTimeMillis();
+            return true;
+        }
+        return false;
+    }
+
+    boolean isInFlight() {
+        return inFlight.get();
+    }
+
+    long getInFlightMillis() {
+        return inFlight.get() ? System.currentTimeMillis() - startTimeMillis : 0;
+    }
+
+    synchronized void complete(PathSnapshot snapshot) {
+        snapshot.completeColumnarFileMetricStores();
+        lastSnapshot = snapshot;
+        pendingChanges.add(snapshot.getChanges());
+        inFlight.set(false);
+    }
+
+    /*
+     * Ends a collection that did not complete, keeping the last completed one.
+     */
+    void release() {
+        inFlight.set(false);
+    }
+
+    /*
+     * Reports the last completed collection, followed by its walk statistics along with what reporting it cost. File
+     * metrics that the collection already published as it went along are not reported again.
+     */
+    synchronized void report(String displayName, FileMetricsProcessor fileMetricsProcessor) {
+        long startTime = System.nanoTime();
+        if (lastSnapshot == null) {
+            fileMetricsProcessor.takeLargestBatchSize();
+            LOGGER.info("No collection of {} has completed yet, reporting its change metrics only", displayName);
+        } else {
+            if (lastSnapshot.takeFileMetricsPublished()) {
+                // Published base directory by base directory while the collection went on
+                startTime -= lastSnapshot.getPublishingNanos();
+            } else {
+                fileMetricsProcessor.takeLargestBatchSize();
+                for (Map<String, FileMetric> fileMetrics : lastSnapshot.getFileMetrics()) {
+                    fileMetricsProcessor.printMetrics(fileMetrics);
+                }
+            }
+            if (lastSnapshot.getFileAggregator() != null) {
+                fileMetricsProcessor.printAggregates(lastSnapshot.getFileAggregator());
+            }
+        }
+        fileMetricsProcessor.printChangeMetrics(displayName, pendingChanges);
+        pendingChanges = new ChangeDetector.Changes();
+        fileMetricsProcessor.flush();
+        if (lastSnapshot != null && lastSnapshot.getWalkStatistics() != null) {
+            WalkStatistics walkStatistics = lastSnapshot.getWalkStatistics();
+            walkStatistics.setEmission(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime),
+                    fileMetricsProcessor.takeLargestBatchSize());
+            fileMetricsProcessor.printStatisticMetrics(displayName, walkStatistics);
+        }
+    }
+
+    synchronized boolean isScheduled() {
+        return scheduledCollection != null;
+    }
+
+    synchronized void setScheduledCollection(ScheduledFuture<?> scheduledCollection) {
+        this.scheduledCollection = scheduledCollection;
+    }
+
+    synchronized void cancel() {
+        if (scheduledCollection != null) {
+            scheduledCollection.cancel(false);
+            scheduledCollection = null;
+        }
+    }
+}
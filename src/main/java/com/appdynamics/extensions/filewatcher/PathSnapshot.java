@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020. AppDynamics LLC and its affiliates.
+ * All Rights Reserved.
+ * This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ * The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher;
+
+import com.appdynamics.extensions.filewatcher.config.FileMetric;
+import com.appdynamics.extensions.filewatcher.processors.ChangeDetector;
+import com.appdynamics.extensions.filewatcher.processors.ColumnarFileMetricStore;
+import com.appdynamics.extensions.filewatcher.processors.FileAggregator;
+import com.appdynamics.extensions.filewatcher.util.WalkStatistics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * The metrics of one completed collection of a configured path. The metrics of every base directory are copied in, as
+ * the maps they come from are reused by the next collection while this one may still be reported. Columnar metric
+ * stores are kept as they are instead, as their base directory state hands the next collection its other store once
+ * this one is completed.
+ */
+class PathSnapshot {
+    private final List<Map<String, FileMetric>> fileMetrics = new ArrayList<>();
+    private final Map<BaseDirectoryState, ColumnarFileMetricStore> columnarFileMetricStores = new HashMap<>();
+    private final ChangeDetector.Changes changes = new ChangeDetector.Changes();
+    private FileAggregator fileAggregator;
+    private WalkStatistics walkStatistics;
+    private boolean fileMetricsPublished;
+    private long publishingNanos;
+
+    /*
+     * Returns the metrics as they were added, for publishing them while the collection goes on.
+     */
+    Map<String, FileMetric> addFileMetrics(Map<String, FileMetric> fileMetrics, BaseDirectoryState baseDirectoryState) {
+        Map<String, FileMetric> added;
+        if (fileMetrics instanceof ColumnarFileMetricStore) {
+            added = fileMetrics;
+            columnarFileMetricStores.put(baseDirectoryState, (ColumnarFileMetricStore) fileMetrics);
+        } else {
+            added = new HashMap<>(fileMetrics);
+        }
+        this.fileMetrics.add(added);
+        return added;
+    }
+
+    /*
+     * Called once the collection has completed, before it is reported.
+     */
+    void completeColumnarFileMetricStores() {
+        for (Map.Entry<BaseDirectoryState, ColumnarFileMetricStore> entry : columnarFileMetricStores.entrySet()) {
+            entry.getKey().completeColumnarFileMetricStore(entry.getValue());
+        }
+    }
+
+    List<Map<String, FileMetric>> getFileMetrics() {
+        return fileMetrics;
+    }
+
+    ChangeDetector.Changes getChanges() {
+        return changes;
+    }
+
+    FileAggregator getFileAggregator() {
+        return fileAggregator;
+    }
+
+    void setFileAggregator(FileAggregator fileAggregator) {
+        this.fileAggregator = fileAggregator;
+    }
+
+    WalkStatistics getWalkStatistics() {
+        return walkStatistics;
+    }
+
+    void setWalkStatistics(WalkStatistics walkStatistics) {
+        this.walkStatistics = walkStatistics;
+    }
+
+    /*
+     * The file metrics were published by the collection itself, as it went along, in the given time.
+     */
+    void setFileMetricsPublished(long publishingNanos) {
+        this.fileMetricsPublished = true;
+        this.publishingNanos = publishingNanos;
+    }
+
+    /*
+     * Whether the file metrics were published by the collection and are not reported again, which only holds for the
+     * first report of the collection.
+     */
+    boolean takeFileMetricsPublished() {
+        boolean published = fileMetricsPublished;
+        fileMetricsPublished = false;
+        return published;
+    }
+
+    long getPublishingNanos() {
+        return publishingNanos;
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2020. AppDynamics LLC and its affiliates.
+ * All Rights Reserved.
+ * This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ * The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher;
+
+import com.appdynamics.extensions.AMonitorTaskRunnable;
+import com.appdynamics.extensions.MetricWriteHelper;
+import com.appdynamics.extensions.filewatcher.config.FileMetric;
+import com.appdynamics.extensions.filewatcher.config.PathToProcess;
+import com.appdynamics.extensions.filewatcher.helpers.GlobPathMatcher;
+import com.appdynamics.extensions.filewatcher.processors.*;
+import com.appdynamics.extensions.filewatcher.util.WalkStatistics;
+import com.appdynamics.extensions.logging.ExtensionsLoggerFactory;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.Executor;
+
+import static com.appdynamics.extensions.filewatcher.util.Constants.WATCH_MODE_EVENTS;
+import static com.appdynamics.extensions.filewatcher.util.FileWatcherUtil.*;
+
+/*
+ * Collects the metrics of several configured paths whose walks overlap, walking every overlapping tree once with a
+ * SharedTraversal instead of once per path. Each path keeps its own walker, change detector, metric store and
+ * aggregator, so its metrics are the same as those FileMonitorTask would report for it. The metrics of every traversal
+ * are published on the emitter while the next traversal is walked.
+ */
+public class SharedTraversalTask implements AMonitorTaskRunnable {
+
+    private static final Logger LOGGER = ExtensionsLoggerFactory.getLogger(SharedTraversalTask.class);
+    private final List<List<Target>> traversals;
+    private final Map<PathToProcess, PathSchedule> pathSchedules = new IdentityHashMap<>();
+    private final BaseDirectoryStates baseDirectoryStates;
+    private final LineCountPool lineCountPool;
+    private final MetricEmissionPlan metricEmissionPlan;
+    private final FileMetricsProcessor fileMetricsProcessor;
+    private long publishingNanos;
+
+    /*
+     * The collections of all paths of the traversals have to be marked as in flight in their schedules. The schedules
+     * are looked up once, so that the task still completes them if the configuration is reloaded while it runs.
+     */
+    SharedTraversalTask(MetricWriteHelper metricWriteHelper, List<List<Target>> traversals,
+                        Map<String, PathSchedule> pathSchedules, BaseDirectoryStates baseDirectoryStates,
+                        LineCountPool lineCountPool, MetricEmissionPlan metricEmissionPlan, Executor metricEmitter) {
+        this.traversals = traversals;
+        for (PathToProcess pathToProcess : getPathsToProcess(traversals)) {
+            this.pathSchedules.put(pathToProcess, pathSchedules.get(PathSchedule.getKey(pathToProcess)));
+        }
+        this.baseDirectoryStates = baseDirectoryStates;
+        this.lineCountPool = lineCountPool;
+        this.metricEmissionPlan = metricEmissionPlan;
+        this.fileMetricsProcessor = new FileMetricsProcessor(metricEmissionPlan, metricWriteHelper, metricEmitter);
+    }
+
+    /*
+     * Only paths that are walked sequentially, in full, on every run can share a walk with others.
+     */
+    static boolean canShareTraversal(PathToProcess pathToProcess, VirtualThreadExecutor virtualThreadExecutor) {
+        return virtualThreadExecutor == null && pathToProcess.getCollectionIntervalSeconds() <= 0
+                && !WATCH_MODE_EVENTS.equalsIgnoreCase(pathToProcess.getWatchMode())
+                && !pathToProcess.isWalkBudgeted() && pathToProcess.getWalkParallelism() <= 1;
+    }
+
+    /*
+     * The traversals of the given paths, grouped into the sets of traversals that one task has to run so that every
+     * path is handled by a single task. Paths that do not overlap with any other are left out.
+     */
+    static List<List<List<Target>>> plan(List<PathToProcess> pathsToProcess) {
+        List<Target> targets = new ArrayList<>();
+        for (PathToProcess pathToProcess : pathsToProcess) {
+            for (String baseDirectory : new FilePathProcessor().getBaseDirectories(pathToProcess)) {
+                if (isDirectoryAccessible(Paths.get(baseDirectory))) {
+                    targets.add(new Target(pathToProcess, baseDirectory));
+                } else {
+                    LOGGER.error("Cannot monitor configured path {} as its base directory {} either does not exist " +
+                            "or has insufficient permissions.", pathToProcess.getPath(), baseDirectory);
+                }
+            }
+        }
+        List<List<List<Target>>> tasks = new ArrayList<>();
+        List<Set<PathToProcess>> taskPaths = new ArrayList<>();
+        for (List<Target> traversal : SharedTraversal.plan(targets, target -> target.walkRoot)) {
+            List<List<Target>> task = new ArrayList<>();
+            Set<PathToProcess> paths = Collections.newSetFromMap(new IdentityHashMap<>());
+            task.add(traversal);
+            for (Target target : traversal) {
+                paths.add(target.pathToProcess);
+            }
+            // Merges the tasks of earlier traversals that have a path in common with this one
+            for (int i = tasks.size() - 1; i >= 0; i--) {
+                if (!Collections.disjoint(taskPaths.get(i), paths)) {
+                    task.addAll(tasks.remove(i));
+                    paths.addAll(taskPaths.remove(i));
+                }
+            }
+            tasks.add(task);
+            taskPaths.add(paths);
+        }
+        for (int i = tasks.size() - 1; i >= 0; i--) {
+            if (taskPaths.get(i).size() < 2) {
+                tasks.remove(i);
+            }
+        }
+        return tasks;
+    }
+
+    static Set<PathToProcess> getPathsToProcess(List<List<Target>> traversals) {
+        Set<PathToProcess> pathsToProcess = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (List<Target> traversal : traversals) {
+            for (Target target : traversal) {
+                pathsToProcess.add(target.pathToProcess);
+            }
+        }
+        return pathsToProcess;
+    }
+
+    static String getName(List<List<Target>> traversals) {
+        StringJoiner name = new StringJoiner(", ");
+        for (PathToProcess pathToProcess : getPathsToProcess(traversals)) {
+            name.add(pathToProcess.getDisplayName());
+        }
+        return name.toString();
+    }
+
+    @Override
+    public void run() {
+        Map<PathToProcess, PathSnapshot> snapshots = new IdentityHashMap<>();
+        // Released in the end, whatever is thrown, unless their collections completed
+        Map<PathToProcess, PathSchedule> uncompletedSchedules = new IdentityHashMap<>(pathSchedules);
+        long startTime = System.currentTimeMillis();
+        try {
+            for (PathToProcess pathToProcess : pathSchedules.keySet()) {
+                PathSnapshot snapshot = new PathSnapshot();
+                if (pathToProcess.isAggregated()) {
+                    snapshot.setFileAggregator(new FileAggregator(pathToProcess,
+                            metricEmissionPlan.getMetricsPerRollup(), metricEmissionPlan.getMetricsPerEntry()));
+                }
+                snapshots.put(pathToProcess, snapshot);
+            }
+            for (List<Target> traversal : traversals) {
+                walk(traversal, snapshots);
+            }
+            // Every path is charged with the whole shared walk
+            long walkDurationMillis = System.currentTimeMillis() - startTime;
+            for (Map.Entry<PathToProcess, PathSnapshot> entry : snapshots.entrySet()) {
+                entry.getValue().setFileMetricsPublished(publishingNanos);
+                entry.getValue().setWalkStatistics(WalkStatistics.get(entry.getKey()).take(walkDurationMillis));
+                uncompletedSchedules.remove(entry.getKey()).complete(entry.getValue());
+            }
+            for (PathToProcess pathToProcess : snapshots.keySet()) {
+                pathSchedules.get(pathToProcess).report(pathToProcess.getDisplayName(), fileMetricsProcessor);
+            }
+        } catch (Exception ex) {
+            LOGGER.error("Task failed for {}", getName(traversals), ex);
+        } finally {
+            for (PathSchedule pathSchedule : uncompletedSchedules.values()) {
+                pathSchedule.release();
+            }
+            fileMetricsProcessor.flush();
+        }
+    }
+
+    private void walk(List<Target> traversal, Map<PathToProcess, PathSnapshot> snapshots) throws IOException {
+        SharedTraversal sharedTraversal = new SharedTraversal(traversal.get(0).walkRoot);
+        Map<Target, Map<String, FileMetric>> fileMetrics = new LinkedHashMap<>();
+        Map<Target, LineCountPool.Batch> lineCountBatches = new HashMap<>();
+        // Targets whose cycles are begun but not ended yet, aborted if the walk fails
+        Set<Target> openTargets = new LinkedHashSet<>();
+        try {
+            for (Target target : traversal) {
+                PathToProcess pathToProcess = target.pathToProcess;
+                BaseDirectoryState baseDirectoryState = getBaseDirectoryState(target);
+                Map<String, FileMetric> targetMetrics = new HashMap<>();
+                if (pathToProcess.getColumnarMetricStore()) {
+                    ColumnarFileMetricStore columnarFileMetricStore = baseDirectoryState.getColumnarFileMetricStore();
+                    columnarFileMetricStore.beginCycle();
+                    targetMetrics = columnarFileMetricStore;
+                }
+                baseDirectoryState.getChangeDetector().beginCycle();
+                fileMetrics.put(target, targetMetrics);
+                openTargets.add(target);
+                LineCountPool.Batch lineCountBatch = lineCountPool != null
+                        ? lineCountPool.begin(pathToProcess, target.baseDirectory) : null;
+                lineCountBatches.put(target, lineCountBatch);
+                sharedTraversal.add(target.walkRoot, getWalkDepth(pathToProcess),
+                        new CustomFileWalker(target.baseDirectory, (GlobPathMatcher) getPathMatcher(pathToProcess),
+                                pathToProcess, targetMetrics, baseDirectoryState.getChangeDetector(),
+                                snapshots.get(pathToProcess).getFileAggregator(), lineCountBatch));
+            }
+            LOGGER.info("Walking {} once for {} base directories of configured paths", traversal.get(0).walkRoot,
+                    traversal.size());
+            sharedTraversal.walk();
+            for (Map.Entry<Target, Map<String, FileMetric>> entry : fileMetrics.entrySet()) {
+                Target target = entry.getKey();
+                BaseDirectoryState baseDirectoryState = getBaseDirectoryState(target);
+                if (lineCountBatches.get(target) != null) {
+                    lineCountBatches.get(target).attach(entry.getValue());
+                }
+                if (entry.getValue() instanceof ColumnarFileMetricStore) {
+                    ((ColumnarFileMetricStore) entry.getValue()).endCycle();
+                }
+                baseDirectoryState.getChangeDetector().endCycle();
+                openTargets.remove(target);
+                PathSnapshot snapshot = snapshots.get(target.pathToProcess);
+                Map<String, FileMetric> collectedMetrics = snapshot.addFileMetrics(entry.getValue(),
+                        baseDirectoryState);
+                long publishingStartTime = System.nanoTime();
+                fileMetricsProcessor.printMetrics(collectedMetrics);
+                publishingNanos += System.nanoTime() - publishingStartTime;
+                snapshot.getChanges().add(baseDirectoryState.getChangeDetector().takeChanges());
+            }
+        } finally {
+            for (Target target : openTargets) {
+                if (fileMetrics.get(target) instanceof ColumnarFileMetricStore) {
+                    ((ColumnarFileMetricStore) fileMetrics.get(target)).endCycle();
+                }
+                getBaseDirectoryState(target).getChangeDetector().abortCycle();
+            }
+        }
+    }
+
+    private BaseDirectoryState getBaseDirectoryState(Target target) {
+        return baseDirectoryStates.get(target.pathToProcess, target.baseDirectory);
+    }
+
+    @Override
+    public void onTaskComplete() {
+        LOGGER.info("Completed shared task for {}", getName(traversals));
+    }
+
+    /*
+     * One base directory of a configured path.
+     */
+    static class Target {
+        private final PathToProcess pathToProcess;
+        private final String baseDirectory;
+        private final Path walkRoot;
+
+        Target(PathToProcess pathToProcess, String baseDirectory) {
+            this.pathToProcess = pathToProcess;
+            this.baseDirectory = baseDirectory;
+            this.walkRoot = getWalkRoot(baseDirectory, pathToProcess);
+        }
+    }
+}
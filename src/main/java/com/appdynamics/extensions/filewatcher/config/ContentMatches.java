@@ -0,0 +1,35 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.config;
+
+/*
+ * The number of lines of a file that match each content pattern of its configured path. The names are shared by all
+ * files of the path.
+ */
+public class ContentMatches {
+    private final String[] names;
+    private final long[] counts;
+
+    public ContentMatches(String[] names, long[] counts) {
+        this.names = names;
+        this.counts = counts;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String getName(int index) {
+        return names[index];
+    }
+
+    public long getCount(int index) {
+        return counts[index];
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.config;
+
+import java.util.regex.Pattern;
+
+/*
+ * A pattern the lines of the matched files of a configured path are counted for. The pattern is a literal unless regex
+ * is set. A regular expression is compiled once, the first time it is asked for, and the compiled form is kept for
+ * every matcher built from the pattern.
+ */
+public class ContentPattern {
+    private String name;
+    private String pattern;
+    private boolean regex;
+    private Pattern compiledPattern;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public void setPattern(String pattern) {
+        this.pattern = pattern;
+        this.compiledPattern = null;
+    }
+
+    public boolean isRegex() {
+        return regex;
+    }
+
+    public void setRegex(boolean regex) {
+        this.regex = regex;
+    }
+
+    /*
+     * The pattern compiled as a regular expression. Throws a PatternSyntaxException if it is not a valid one.
+     */
+    public Pattern getCompiledPattern() {
+        if (compiledPattern == null) {
+            compiledPattern = Pattern.compile(pattern);
+        }
+        return compiledPattern;
+    }
+}
@@ -14,14 +14,21 @@ package com.appdynamics.extensions.filewatcher.config;
 
 public class FileMetric {
     private boolean isModified;
-    private String fileSize;
-    private String recursiveFileSize;
+    private long fileSize = -1;
+    private long recursiveFileSize = -1;
     private int numberOfFiles;
     private long oldestFileAge;
     private long numberOfLines;
     private long lastModifiedTime;
     private boolean isAvailable;
     private long recursiveNumberOfFiles;
+    private long medianFileAge = -1;
+    private long p90FileAge = -1;
+    private long p99FileAge = -1;
+    private long medianFileSize = -1;
+    private long p90FileSize = -1;
+    private long p99FileSize = -1;
+    private ContentMatches contentMatches;
 
     public long getRecursiveNumberOfFiles() { return recursiveNumberOfFiles; }
     public void setRecursiveNumberOfFiles(long recursiveNumberOfFiles) { this.recursiveNumberOfFiles = recursiveNumberOfFiles; }
@@ -47,10 +54,10 @@ public class FileMetric {
         this.isModified = isChanged;
     }
 
-    public String getFileSize() {
+    public long getFileSize() {
         return fileSize;
     }
-    public void setFileSize(String fileSize) {
+    public void setFileSize(long fileSize) {
         this.fileSize = fileSize;
     }
 
@@ -75,6 +82,30 @@ public class FileMetric {
         this.oldestFileAge = oldestFileAge;
     }
 
-    public String getRecursiveFileSize() { return recursiveFileSize; }
-    public void setRecursiveFileSize(String recursiveFileSize) { this.recursiveFileSize = recursiveFileSize; }
+    public long getRecursiveFileSize() { return recursiveFileSize; }
+    public void setRecursiveFileSize(long recursiveFileSize) { this.recursiveFileSize = recursiveFileSize; }
+
+    public long getMedianFileAge() { return medianFileAge; }
+    public void setMedianFileAge(long medianFileAge) { this.medianFileAge = medianFileAge; }
+
+    public long getP90FileAge() { return p90FileAge; }
+    public void setP90FileAge(long p90FileAge) { this.p90FileAge = p90FileAge; }
+
+    public long getP99FileAge() { return p99FileAge; }
+    public void setP99FileAge(long p99FileAge) { this.p99FileAge = p99FileAge; }
+
+    public long getMedianFileSize() { return medianFileSize; }
+    public void setMedianFileSize(long medianFileSize) { this.medianFileSize = medianFileSize; }
+
+    public long getP90FileSize() { return p90FileSize; }
+    public void setP90FileSize(long p90FileSize) { this.p90FileSize = p90FileSize; }
+
+    public long getP99FileSize() { return p99FileSize; }
+    public void setP99FileSize(long p99FileSize) { this.p99FileSize = p99FileSize; }
+
+    /*
+     * Null unless the configured path has content patterns.
+     */
+    public ContentMatches getContentMatches() { return contentMatches; }
+    public void setContentMatches(ContentMatches contentMatches) { this.contentMatches = contentMatches; }
 }
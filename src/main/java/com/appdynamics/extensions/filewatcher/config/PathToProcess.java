@@ -8,6 +8,12 @@
 
 package com.appdynamics.extensions.filewatcher.config;
 
+import java.util.Collections;
+import java.util.List;
+
+import static com.appdynamics.extensions.filewatcher.util.Constants.AGGREGATION_DIRECTORY;
+import static com.appdynamics.extensions.filewatcher.util.Constants.AGGREGATION_PATH;
+
 /*
  * @author Aditya Jagtiani
  */
@@ -19,6 +25,18 @@ public class PathToProcess {
     private boolean enableRecursiveFileCounts;
     private boolean enableRecursiveFileSizes;
     private boolean excludeSubdirectoryCount;
+    private String watchMode;
+    private int walkParallelism = 1;
+    private long maxEntriesPerCycle;
+    private long maxWalkTimeSeconds;
+    private boolean columnarMetricStore;
+    private String aggregation;
+    private int maxSeries;
+    private int topFiles;
+    private long collectionIntervalSeconds;
+    private boolean directoryCache;
+    private long directoryCacheMaxAgeSeconds;
+    private List<ContentPattern> contentPatterns = Collections.emptyList();
 
     public String getDisplayName() {
         return displayName;
@@ -62,4 +80,108 @@ public class PathToProcess {
     public void setEnableRecursiveFileSizes(boolean enableRecursiveFileSizes) {
         this.enableRecursiveFileSizes = enableRecursiveFileSizes;
     }
-}
\ No newline at end of file
+
+    public String getWatchMode() {
+        return watchMode;
+    }
+
+    public void setWatchMode(String watchMode) {
+        this.watchMode = watchMode;
+    }
+
+    public int getWalkParallelism() {
+        return walkParallelism;
+    }
+
+    public void setWalkParallelism(int walkParallelism) {
+        this.walkParallelism = walkParallelism;
+    }
+
+    public long getMaxEntriesPerCycle() {
+        return maxEntriesPerCycle;
+    }
+
+    public void setMaxEntriesPerCycle(long maxEntriesPerCycle) {
+        this.maxEntriesPerCycle = maxEntriesPerCycle;
+    }
+
+    public long getMaxWalkTimeSeconds() {
+        return maxWalkTimeSeconds;
+    }
+
+    public void setMaxWalkTimeSeconds(long maxWalkTimeSeconds) {
+        this.maxWalkTimeSeconds = maxWalkTimeSeconds;
+    }
+
+    public boolean getColumnarMetricStore() {
+        return columnarMetricStore;
+    }
+
+    public void setColumnarMetricStore(boolean columnarMetricStore) {
+        this.columnarMetricStore = columnarMetricStore;
+    }
+
+    public String getAggregation() {
+        return aggregation;
+    }
+
+    public void setAggregation(String aggregation) {
+        this.aggregation = aggregation;
+    }
+
+    public int getMaxSeries() {
+        return maxSeries;
+    }
+
+    public void setMaxSeries(int maxSeries) {
+        this.maxSeries = maxSeries;
+    }
+
+    public int getTopFiles() {
+        return topFiles;
+    }
+
+    public void setTopFiles(int topFiles) {
+        this.topFiles = topFiles;
+    }
+
+    public boolean isAggregated() {
+        return AGGREGATION_DIRECTORY.equalsIgnoreCase(aggregation) || AGGREGATION_PATH.equalsIgnoreCase(aggregation);
+    }
+
+    public long getCollectionIntervalSeconds() {
+        return collectionIntervalSeconds;
+    }
+
+    public void setCollectionIntervalSeconds(long collectionIntervalSeconds) {
+        this.collectionIntervalSeconds = collectionIntervalSeconds;
+    }
+
+    public boolean getDirectoryCache() {
+        return directoryCache;
+    }
+
+    public void setDirectoryCache(boolean directoryCache) {
+        this.directoryCache = directoryCache;
+    }
+
+    public long getDirectoryCacheMaxAgeSeconds() {
+        return directoryCacheMaxAgeSeconds;
+    }
+
+    public void setDirectoryCacheMaxAgeSeconds(long directoryCacheMaxAgeSeconds) {
+        this.directoryCacheMaxAgeSeconds = directoryCacheMaxAgeSeconds;
+    }
+
+    public List<ContentPattern> getContentPatterns() {
+        return contentPatterns;
+    }
+
+    public void setContentPatterns(List<ContentPattern> contentPatterns) {
+        this.contentPatterns = contentPatterns;
+    }
+
+    public boolean isWalkBudgeted() {
+        return maxEntriesPerCycle > 0 || maxWalkTimeSeconds > 0;
+    }
+}
@@ -14,12 +14,63 @@ package com.appdynamics.extensions.filewatcher.helpers;
 import com.appdynamics.extensions.filewatcher.config.PathToProcess;
 
 import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
 
 public class GlobPathMatcher extends AppPathMatcher{
+    private static final String SEPARATOR = "/";
+
+    // One matcher per separator delimited segment of the glob, null for segments containing **
+    private PathMatcher[] segmentMatchers;
+    private String[] segments;
 
     @Override
     public void setMatcher(PathToProcess fileToProcess) {
         this.file = fileToProcess;
         this.matcher= FileSystems.getDefault().getPathMatcher("glob:"+ this.file.getPath());
+        compileSegments(this.file.getPath());
+    }
+
+    /*
+     * Returns false only if neither the directory nor anything below it can match the glob, by matching the
+     * directory's names against the leading segments of the glob. Globs with escapes or groups, which may contain
+     * separators, are never pruned.
+     */
+    public boolean canMatchDescendant(Path directory) {
+        String path = directory.toString();
+        if (segments == null || path.isEmpty()) {
+            return true;
+        }
+        String[] names = SEPARATOR.equals(path) ? new String[]{""} : path.split(SEPARATOR, -1);
+        for (int i = 0; i < names.length; i++) {
+            if (i >= segments.length) {
+                return false;
+            }
+            if (segments[i].contains("**")) {
+                return true;
+            }
+            if (segmentMatchers[i] == null ? !segments[i].equals(names[i])
+                    : names[i].isEmpty() || !segmentMatchers[i].matches(Paths.get(names[i]))) {
+                return false;
+            }
+        }
+        return names.length < segments.length;
+    }
+
+    private void compileSegments(String glob) {
+        if (glob.contains("\\") || glob.contains("{") || !SEPARATOR.equals(FileSystems.getDefault().getSeparator())) {
+            return;
+        }
+        String[] globSegments = glob.split(SEPARATOR, -1);
+        PathMatcher[] matchers = new PathMatcher[globSegments.length];
+        for (int i = 0; i < globSegments.length; i++) {
+            String segment = globSegments[i];
+            if (!segment.contains("**") && (segment.contains("*") || segment.contains("?") || segment.contains("["))) {
+                matchers[i] = FileSystems.getDefault().getPathMatcher("glob:" + segment);
+            }
+        }
+        this.segments = globSegments;
+        this.segmentMatchers = matchers;
     }
-}
\ No newline at end of file
+}
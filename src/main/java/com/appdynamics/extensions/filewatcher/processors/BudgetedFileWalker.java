@@ -0,0 +1,233 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.processors;
+
+import com.appdynamics.extensions.filewatcher.config.FileMetric;
+import com.appdynamics.extensions.filewatcher.config.PathToProcess;
+import com.appdynamics.extensions.filewatcher.helpers.GlobPathMatcher;
+import com.appdynamics.extensions.filewatcher.util.FileWatcherUtil;
+import com.appdynamics.extensions.logging.ExtensionsLoggerFactory;
+import org.slf4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static com.appdynamics.extensions.filewatcher.util.FileWatcherUtil.readAttributes;
+
+/*
+ * Walks a base directory in slices that each fit into a budget of entries and wall time, continuing every cycle where
+ * the previous one stopped. The walk visits entries in the same order and with the same callbacks as
+ * Files.walkFileTree, but keeps its position on an explicit stack of open directory streams so that it can be paused
+ * between any two entries, also in the middle of a large directory. Directories are read only as far as the walk gets,
+ * so every listed entry is charged against the budget. The streams of the directories that are still open stay open
+ * between cycles until the pass completes or the walker is closed.
+ *
+ * Until a pass over the tree completes, each cycle reports the metrics of the last complete pass overlaid with the
+ * entries the current pass has already finished. Directories that are still open keep their previous metrics, since
+ * their counts are only known once all of their children have been visited. A pass is one cycle of the change detector.
+ */
+public class BudgetedFileWalker implements Closeable {
+    private static final Logger LOGGER = ExtensionsLoggerFactory.getLogger(BudgetedFileWalker.class);
+
+    private final String baseDirectory;
+    private final PathToProcess pathToProcess;
+    private final GlobPathMatcher globPathMatcher;
+    private final Path walkRoot;
+    private final int walkDepth;
+    private final ChangeDetector changeDetector;
+
+    private Map<String, FileMetric> lastCompletePass = new HashMap<>();
+    private Map<String, FileMetric> currentPass;
+    private CustomFileWalker walker;
+    private final Deque<DirectoryCursor> cursors = new ArrayDeque<>();
+
+    public BudgetedFileWalker(String baseDirectory, PathToProcess pathToProcess) {
+        this(baseDirectory, pathToProcess, new ChangeDetector());
+    }
+
+    public BudgetedFileWalker(String baseDirectory, PathToProcess pathToProcess, ChangeDetector changeDetector) {
+        this.changeDetector = changeDetector;
+        this.baseDirectory = baseDirectory;
+        this.pathToProcess = pathToProcess;
+        this.globPathMatcher = (GlobPathMatcher) FileWatcherUtil.getPathMatcher(pathToProcess);
+        this.walkRoot = FileWatcherUtil.getWalkRoot(baseDirectory, pathToProcess);
+        this.walkDepth = FileWatcherUtil.getWalkDepth(pathToProcess);
+    }
+
+    public synchronized Map<String, FileMetric> walk() throws IOException {
+        Budget budget = new Budget(pathToProcess.getMaxEntriesPerCycle(), pathToProcess.getMaxWalkTimeSeconds());
+        if (currentPass == null) {
+            startPass();
+        } else {
+            LOGGER.debug("Resuming the walk of {} with {} directories open", walkRoot, cursors.size());
+        }
+        while (!cursors.isEmpty() && !budget.isExhausted()) {
+            step(budget);
+        }
+        if (cursors.isEmpty()) {
+            LOGGER.debug("Completed a pass over {}", walkRoot);
+            changeDetector.endCycle();
+            lastCompletePass = currentPass;
+            currentPass = null;
+            walker = null;
+            return new HashMap<>(lastCompletePass);
+        }
+        LOGGER.info("Budget for {} used up after {} entries, {} directories remain open. The walk continues in the " +
+                "next cycle.", walkRoot, budget.entries, cursors.size());
+        return getPartialMetrics();
+    }
+
+    private void startPass() throws IOException {
+        currentPass = new HashMap<>();
+        changeDetector.beginCycle();
+        walker = new CustomFileWalker(baseDirectory, globPathMatcher, pathToProcess, currentPass, changeDetector);
+        BasicFileAttributes basicFileAttributes;
+        try {
+            basicFileAttributes = readAttributes(walkRoot);
+        } catch (IOException ex) {
+            walker.visitFileFailed(walkRoot, ex);
+            return;
+        }
+        if (!basicFileAttributes.isDirectory() || walkDepth == 0) {
+            walker.visitFile(walkRoot, basicFileAttributes);
+        } else {
+            open(walkRoot, basicFileAttributes, 0);
+        }
+    }
+
+    private void step(Budget budget) throws IOException {
+        DirectoryCursor cursor = cursors.peek();
+        if (!cursor.hasNext()) {
+            cursors.pop();
+            walker.postVisitDirectory(cursor.directory, cursor.listingException);
+            return;
+        }
+        Path entry = cursor.next();
+        budget.entries++;
+        BasicFileAttributes basicFileAttributes;
+        try {
+            basicFileAttributes = readAttributes(entry);
+        } catch (IOException ex) {
+            walker.visitFileFailed(entry, ex);
+            return;
+        }
+        if (basicFileAttributes.isDirectory() && cursor.depth + 1 < walkDepth) {
+            open(entry, basicFileAttributes, cursor.depth + 1);
+        } else {
+            walker.visitFile(entry, basicFileAttributes);
+        }
+    }
+
+    private void open(Path directory, BasicFileAttributes basicFileAttributes, int depth) {
+        if (walker.preVisitDirectory(directory, basicFileAttributes) != FileVisitResult.CONTINUE) {
+            return;
+        }
+        cursors.push(new DirectoryCursor(directory, depth));
+    }
+
+    /*
+     * Closes the directories of the pass in progress. The next walk starts a new pass.
+     */
+    @Override
+    public synchronized void close() {
+        while (!cursors.isEmpty()) {
+            cursors.pop().close();
+        }
+        currentPass = null;
+        walker = null;
+    }
+
+    private Map<String, FileMetric> getPartialMetrics() {
+        Map<String, FileMetric> fileMetrics = new HashMap<>(lastCompletePass);
+        Set<String> openDirectories = new HashSet<>();
+        for (DirectoryAggregate directory : walker.getOpenDirectories()) {
+            if (directory.getMetricSuffix() != null) {
+                openDirectories.add(directory.getMetricSuffix());
+            }
+        }
+        for (Map.Entry<String, FileMetric> entry : currentPass.entrySet()) {
+            if (!openDirectories.contains(entry.getKey())) {
+                fileMetrics.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return fileMetrics;
+    }
+
+    private static class DirectoryCursor implements Closeable {
+        private final Path directory;
+        private final int depth;
+        private DirectoryStream<Path> children;
+        private Iterator<Path> iterator;
+        private IOException listingException;
+
+        private DirectoryCursor(Path directory, int depth) {
+            this.directory = directory;
+            this.depth = depth;
+            try {
+                children = Files.newDirectoryStream(directory);
+                iterator = children.iterator();
+            } catch (IOException ex) {
+                listingException = ex;
+            }
+        }
+
+        // Closes the stream once the directory is read to its end
+        private boolean hasNext() {
+            if (iterator == null) {
+                return false;
+            }
+            try {
+                if (iterator.hasNext()) {
+                    return true;
+                }
+            } catch (DirectoryIteratorException ex) {
+                listingException = ex.getCause();
+            }
+            close();
+            return false;
+        }
+
+        private Path next() {
+            return iterator.next();
+        }
+
+        @Override
+        public void close() {
+            iterator = null;
+            if (children != null) {
+                try {
+                    children.close();
+                } catch (IOException ex) {
+                    LOGGER.debug("Error while closing the listing of {}", directory, ex);
+                }
+                children = null;
+            }
+        }
+    }
+
+    private static class Budget {
+        private final long maxEntries;
+        private final long deadline;
+        private long entries;
+
+        private Budget(long maxEntries, long maxWalkTimeSeconds) {
+            this.maxEntries = maxEntries > 0 ? maxEntries : Long.MAX_VALUE;
+            this.deadline = maxWalkTimeSeconds > 0
+                    ? System.nanoTime() + TimeUnit.SECONDS.toNanos(maxWalkTimeSeconds) : Long.MAX_VALUE;
+        }
+
+        private boolean isExhausted() {
+            return entries >= maxEntries || (deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0);
+        }
+    }
+}
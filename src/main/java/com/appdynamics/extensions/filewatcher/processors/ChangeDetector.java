@@ -0,0 +1,296 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.processors;
+
+import com.appdynamics.extensions.filewatcher.util.PathIdTable;
+import com.appdynamics.extensions.logging.ExtensionsLoggerFactory;
+import org.slf4j.Logger;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/*
+ * Remembers the last modified time, size and file key each path had when it was last seen, to tell whether it was
+ * created, modified or rotated since. A cycle is the span between beginCycle() and endCycle(): a path that was seen in
+ * the previous cycle but not in this one is reported as deleted, and a path that has not been seen for
+ * evictAfterCycles cycles is forgotten, so that the state does not grow with every file that ever existed. A cycle
+ * whose walk failed ends with abortCycle() instead.
+ *
+ * A file is rotated when it has a new file key (inode) or is smaller than before. Bytes appended are the growth of
+ * files that kept their file key plus the full size of rotated and created files. The totals of completed cycles are
+ * collected until takeChanges() is called; the first cycle only establishes the baseline and is not counted.
+ */
+public class ChangeDetector {
+    private static final Logger LOGGER = ExtensionsLoggerFactory.getLogger(ChangeDetector.class);
+    private static final int DEFAULT_EVICT_AFTER_CYCLES = 5;
+
+    public enum Change {
+        CREATED, MODIFIED, ROTATED, UNCHANGED
+    }
+
+    private final int evictAfterCycles;
+    private final PathIdTable pathIds = new PathIdTable();
+    private long[] lastModifiedTimes = new long[0];
+    private long[] sizes = new long[0];
+    private int[] fileKeys = new int[0];
+    private int[] lastSeenCycles = new int[0];
+    private final BitSet regularFiles = new BitSet();
+    private int cycle;
+
+    private int created;
+    private int modified;
+    private List<String> deleted = Collections.emptyList();
+    private final Changes cycleChanges = new Changes();
+    private Changes pendingChanges = new Changes();
+
+    public ChangeDetector() {
+        this(DEFAULT_EVICT_AFTER_CYCLES);
+    }
+
+    public ChangeDetector(int evictAfterCycles) {
+        this.evictAfterCycles = Math.max(evictAfterCycles, 1);
+    }
+
+    public synchronized void beginCycle() {
+        cycle++;
+        created = 0;
+        modified = 0;
+        cycleChanges.clear();
+    }
+
+    public Change observe(String path, long lastModifiedTime) {
+        return observe(path, lastModifiedTime, -1, 0, false);
+    }
+
+    public Change observe(String path, BasicFileAttributes basicFileAttributes) {
+        if (basicFileAttributes == null) {
+            return observe(path, 0, -1, 0, false);
+        }
+        Object fileKey = basicFileAttributes.fileKey();
+        return observe(path, basicFileAttributes.lastModifiedTime().toMillis(), basicFileAttributes.size(),
+                fileKey != null ? fileKey.hashCode() : 0, basicFileAttributes.isRegularFile());
+    }
+
+    private synchronized Change observe(String path, long lastModifiedTime, long size, int fileKey,
+                                        boolean regularFile) {
+        int id = pathIds.getId(path);
+        if (id < 0) {
+            id = pathIds.getOrAddId(path);
+            ensureCapacity(pathIds.getIdLimit());
+            record(id, lastModifiedTime, size, fileKey, regularFile);
+            created++;
+            if (regularFile) {
+                cycleChanges.created++;
+                cycleChanges.bytesAppended += Math.max(size, 0);
+            }
+            return Change.CREATED;
+        }
+        long previousModifiedTime = lastModifiedTimes[id];
+        long previousSize = sizes[id];
+        int previousFileKey = fileKeys[id];
+        if (lastSeenCycles[id] == cycle) {
+            // Seen twice in one cycle, the first observation already accounted for the change
+            record(id, lastModifiedTime, size, fileKey, regularFile);
+            return lastModifiedTime > previousModifiedTime ? Change.MODIFIED : Change.UNCHANGED;
+        }
+        record(id, lastModifiedTime, size, fileKey, regularFile);
+        if (regularFile && previousSize >= 0 && size >= 0) {
+            boolean newFileKey = fileKey != 0 && previousFileKey != 0 && fileKey != previousFileKey;
+            if (newFileKey || size < previousSize) {
+                modified++;
+                cycleChanges.rotated++;
+                cycleChanges.bytesAppended += size;
+                return Change.ROTATED;
+            }
+            cycleChanges.bytesAppended += size - previousSize;
+        }
+        if (lastModifiedTime > previousModifiedTime) {
+            modified++;
+            return Change.MODIFIED;
+        }
+        return Change.UNCHANGED;
+    }
+
+    private void record(int id, long lastModifiedTime, long size, int fileKey, boolean regularFile) {
+        lastModifiedTimes[id] = lastModifiedTime;
+        sizes[id] = size;
+        fileKeys[id] = fileKey;
+        lastSeenCycles[id] = cycle;
+        regularFiles.set(id, regularFile);
+    }
+
+    /*
+     * Marks a path as present in this cycle without a new observation, for entries that are kept from earlier cycles.
+     */
+    public synchronized void retain(String path) {
+        int id = pathIds.getId(path);
+        if (id >= 0) {
+            lastSeenCycles[id] = cycle;
+        }
+    }
+
+    public synchronized void endCycle() {
+        List<String> deleted = new ArrayList<>();
+        int evicted = 0;
+        for (int id = 0; id < pathIds.getIdLimit(); id++) {
+            String path = pathIds.getKey(id);
+            if (path == null) {
+                continue;
+            }
+            int unseenCycles = cycle - lastSeenCycles[id];
+            if (unseenCycles == 1) {
+                deleted.add(path);
+                if (regularFiles.get(id)) {
+                    cycleChanges.deleted++;
+                }
+            }
+            if (unseenCycles >= evictAfterCycles) {
+                pathIds.remove(id);
+                evicted++;
+            }
+        }
+        this.deleted = deleted;
+        if (cycle > 1) {
+            pendingChanges.add(cycleChanges);
+        }
+        LOGGER.debug("{} paths created, {} modified and {} deleted since the previous cycle, {} forgotten", created,
+                modified, deleted.size(), evicted);
+    }
+
+    /*
+     * Ends a cycle whose walk failed part of the way. The paths of the previous cycle it did not get to are carried over
+     * as seen, so that the next cycle still reports them as deleted if they are gone, and nothing is evicted. Changes
+     * the walk did observe are kept, as the observations were already recorded.
+     */
+    public synchronized void abortCycle() {
+        for (int id = 0; id < pathIds.getIdLimit(); id++) {
+            if (pathIds.getKey(id) != null && lastSeenCycles[id] == cycle - 1) {
+                lastSeenCycles[id] = cycle;
+            }
+        }
+        this.deleted = Collections.emptyList();
+        if (cycle > 1) {
+            pendingChanges.add(cycleChanges);
+        }
+        LOGGER.debug("Cycle aborted after {} paths created and {} modified", created, modified);
+    }
+
+    public synchronized int getCreatedCount() {
+        return created;
+    }
+
+    public synchronized int getModifiedCount() {
+        return modified;
+    }
+
+    public synchronized List<String> getDeletedPaths() {
+        return deleted;
+    }
+
+    /*
+     * The changes of all cycles that ended since the previous call.
+     */
+    public synchronized Changes takeChanges() {
+        Changes changes = pendingChanges;
+        pendingChanges = new Changes();
+        return changes;
+    }
+
+    public synchronized int size() {
+        return pathIds.size();
+    }
+
+    /*
+     * Writes the last observation of every remembered path, for a detector that continues where this one stopped.
+     */
+    public synchronized void writeTo(DataOutput output) throws IOException {
+        output.writeInt(pathIds.size());
+        for (int id = 0; id < pathIds.getIdLimit(); id++) {
+            String path = pathIds.getKey(id);
+            if (path != null) {
+                output.writeUTF(path);
+                output.writeLong(lastModifiedTimes[id]);
+                output.writeLong(sizes[id]);
+                output.writeInt(fileKeys[id]);
+                output.writeBoolean(regularFiles.get(id));
+            }
+        }
+    }
+
+    /*
+     * Restores the observations written by writeTo() as if they were made in the previous cycle, so that the next
+     * cycle reports the changes made since they were written instead of only establishing a baseline.
+     */
+    public synchronized void readFrom(DataInput input) throws IOException {
+        if (cycle == 0) {
+            cycle = 1;
+        }
+        int count = input.readInt();
+        for (int i = 0; i < count; i++) {
+            String path = input.readUTF();
+            long lastModifiedTime = input.readLong();
+            long size = input.readLong();
+            int fileKey = input.readInt();
+            boolean regularFile = input.readBoolean();
+            int id = pathIds.getOrAddId(path);
+            ensureCapacity(pathIds.getIdLimit());
+            record(id, lastModifiedTime, size, fileKey, regularFile);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > lastModifiedTimes.length) {
+            int length = Math.max(capacity, lastModifiedTimes.length + (lastModifiedTimes.length >> 1) + 16);
+            lastModifiedTimes = Arrays.copyOf(lastModifiedTimes, length);
+            sizes = Arrays.copyOf(sizes, length);
+            fileKeys = Arrays.copyOf(fileKeys, length);
+            lastSeenCycles = Arrays.copyOf(lastSeenCycles, length);
+        }
+    }
+
+    public static class Changes {
+        private long created;
+        private long deleted;
+        private long rotated;
+        private long bytesAppended;
+
+        public long getCreated() {
+            return created;
+        }
+
+        public long getDeleted() {
+            return deleted;
+        }
+
+        public long getRotated() {
+            return rotated;
+        }
+
+        public long getBytesAppended() {
+            return bytesAppended;
+        }
+
+        public void add(Changes changes) {
+            created += changes.created;
+            deleted += changes.deleted;
+            rotated += changes.rotated;
+            bytesAppended += changes.bytesAppended;
+        }
+
+        private void clear() {
+            created = 0;
+            deleted = 0;
+            rotated = 0;
+            bytesAppended = 0;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.processors;
+
+import com.appdynamics.extensions.filewatcher.config.ContentMatches;
+import com.appdynamics.extensions.filewatcher.config.FileMetric;
+import com.appdynamics.extensions.filewatcher.util.PathIdTable;
+
+import java.util.*;
+
+/*
+ * Keeps the metrics of a base directory in parallel primitive arrays indexed by path id instead of one FileMetric per
+ * path, and updates them in place from cycle to cycle. The walkers fill the store through the Map interface: put copies
+ * the values of the FileMetric it is given into the arrays, so the FileMetric objects of a walk do not outlive it.
+ *
+ * Every cycle starts with beginCycle() and ends with endCycle(), which drops the paths that were not seen in between.
+ * Not thread safe; walkers that use several threads collect into their own map and copy it in at the end of the walk.
+ */
+public class ColumnarFileMetricStore extends AbstractMap<String, FileMetric> {
+    private final PathIdTable pathIds = new PathIdTable();
+    private final BitSet seen = new BitSet();
+    private final BitSet available = new BitSet();
+    private final BitSet modified = new BitSet();
+    private long[] fileSizes = new long[0];
+    private long[] recursiveFileSizes = new long[0];
+    private long[] lastModifiedTimes = new long[0];
+    private long[] oldestFileAges = new long[0];
+    private long[] numbersOfLines = new long[0];
+    private int[] numbersOfFiles = new int[0];
+    private long[] recursiveNumbersOfFiles = new long[0];
+    private long[] medianFileAges = new long[0];
+    private long[] p90FileAges = new long[0];
+    private long[] p99FileAges = new long[0];
+    private long[] medianFileSizes = new long[0];
+    private long[] p90FileSizes = new long[0];
+    private long[] p99FileSizes = new long[0];
+    // Shared with the metrics they were put with, as they are not changed once created
+    private ContentMatches[] contentMatches = new ContentMatches[0];
+
+    public void beginCycle() {
+        seen.clear();
+    }
+
+    public void endCycle() {
+        for (int id = 0; id < pathIds.getIdLimit(); id++) {
+            if (!seen.get(id) && pathIds.getKey(id) != null) {
+                pathIds.remove(id);
+                available.clear(id);
+                modified.clear(id);
+                contentMatches[id] = null;
+            }
+        }
+    }
+
+    @Override
+    public FileMetric put(String key, FileMetric fileMetric) {
+        int id = pathIds.getOrAddId(key);
+        ensureCapacity(pathIds.getIdLimit());
+        seen.set(id);
+        fileSizes[id] = fileMetric.getFileSize();
+        recursiveFileSizes[id] = fileMetric.getRecursiveFileSize();
+        lastModifiedTimes[id] = fileMetric.getLastModifiedTime();
+        oldestFileAges[id] = fileMetric.getOldestFileAge();
+        numbersOfLines[id] = fileMetric.getNumberOfLines();
+        numbersOfFiles[id] = fileMetric.getNumberOfFiles();
+        recursiveNumbersOfFiles[id] = fileMetric.getRecursiveNumberOfFiles();
+        medianFileAges[id] = fileMetric.getMedianFileAge();
+        p90FileAges[id] = fileMetric.getP90FileAge();
+        p99FileAges[id] = fileMetric.getP99FileAge();
+        medianFileSizes[id] = fileMetric.getMedianFileSize();
+        p90FileSizes[id] = fileMetric.getP90FileSize();
+        p99FileSizes[id] = fileMetric.getP99FileSize();
+        contentMatches[id] = fileMetric.getContentMatches();
+        available.set(id, fileMetric.getAvailable());
+        modified.set(id, fileMetric.getModified());
+        return null;
+    }
+
+    @Override
+    public FileMetric get(Object key) {
+        int id = key instanceof String ? pathIds.getId((String) key) : -1;
+        return id >= 0 && seen.get(id) ? load(id, new FileMetric()) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int id = key instanceof String ? pathIds.getId((String) key) : -1;
+        return id >= 0 && seen.get(id);
+    }
+
+    @Override
+    public int size() {
+        return seen.cardinality();
+    }
+
+    /*
+     * A copy of the entries seen in the current cycle. FileMetricsProcessor reads the arrays through nextSeen and load
+     * instead, which do not create an object per entry.
+     */
+    @Override
+    public Set<Entry<String, FileMetric>> entrySet() {
+        Map<String, FileMetric> entries = new HashMap<>();
+        for (int id = seen.nextSetBit(0); id >= 0; id = seen.nextSetBit(id + 1)) {
+            entries.put(pathIds.getKey(id), load(id, new FileMetric()));
+        }
+        return entries.entrySet();
+    }
+
+    int nextSeen(int id) {
+        return seen.nextSetBit(id);
+    }
+
+    String getKey(int id) {
+        return pathIds.getKey(id);
+    }
+
+    FileMetric load(int id, FileMetric fileMetric) {
+        fileMetric.setFileSize(fileSizes[id]);
+        fileMetric.setRecursiveFileSize(recursiveFileSizes[id]);
+        fileMetric.setLastModifiedTime(lastModifiedTimes[id]);
+        fileMetric.setOldestFileAge(oldestFileAges[id]);
+        fileMetric.setNumberOfLines(numbersOfLines[id]);
+        fileMetric.setNumberOfFiles(numbersOfFiles[id]);
+        fileMetric.setRecursiveNumberOfFiles(recursiveNumbersOfFiles[id]);
+        fileMetric.setMedianFileAge(medianFileAges[id]);
+        fileMetric.setP90FileAge(p90FileAges[id]);
+        fileMetric.setP99FileAge(p99FileAges[id]);
+        fileMetric.setMedianFileSize(medianFileSizes[id]);
+        fileMetric.setP90FileSize(p90FileSizes[id]);
+        fileMetric.setP99FileSize(p99FileSizes[id]);
+        fileMetric.setContentMatches(contentMatches[id]);
+        fileMetric.setAvailable(available.get(id));
+        fileMetric.setModified(modified.get(id));
+        return fileMetric;
+    }
+
+    void resetModified() {
+        modified.clear();
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > fileSizes.length) {
+            int length = Math.max(capacity, fileSizes.length + (fileSizes.length >> 1) + 16);
+            fileSizes = Arrays.copyOf(fileSizes, length);
+            recursiveFileSizes = Arrays.copyOf(recursiveFileSizes, length);
+            lastModifiedTimes = Arrays.copyOf(lastModifiedTimes, length);
+            oldestFileAges = Arrays.copyOf(oldestFileAges, length);
+            numbersOfLines = Arrays.copyOf(numbersOfLines, length);
+            numbersOfFiles = Arrays.copyOf(numbersOfFiles, length);
+            recursiveNumbersOfFiles = Arrays.copyOf(recursiveNumbersOfFiles, length);
+            medianFileAges = Arrays.copyOf(medianFileAges, length);
+            p90FileAges = Arrays.copyOf(p90FileAges, length);
+            p99FileAges = Arrays.copyOf(p99FileAges, length);
+            medianFileSizes = Arrays.copyOf(medianFileSizes, length);
+            p90FileSizes = Arrays.copyOf(p90FileSizes, length);
+            p99FileSizes = Arrays.copyOf(p99FileSizes, length);
+            contentMatches = Arrays.copyOf(contentMatches, length);
+        }
+    }
+}
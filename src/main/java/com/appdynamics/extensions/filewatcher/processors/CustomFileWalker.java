@@ -14,18 +14,21 @@ package com.appdynamics.extensions.filewatcher.processors;
 import com.appdynamics.extensions.filewatcher.config.FileMetric;
 import com.appdynamics.extensions.filewatcher.config.PathToProcess;
 import com.appdynamics.extensions.filewatcher.helpers.GlobPathMatcher;
-import com.appdynamics.extensions.filewatcher.util.Constants;
+import com.appdynamics.extensions.filewatcher.util.ContentMatchCache;
+import com.appdynamics.extensions.filewatcher.util.LineCountCache;
+import com.appdynamics.extensions.filewatcher.util.LogHistogram;
+import com.appdynamics.extensions.filewatcher.util.WalkStatistics;
 import com.appdynamics.extensions.logging.ExtensionsLoggerFactory;
-import com.appdynamics.extensions.metrics.PerMinValueCalculator;
-import org.apache.commons.io.FileUtils;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 
-import java.io.File;
 import java.io.IOException;
-import java.math.BigDecimal;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.Map;
 
 import static com.appdynamics.extensions.filewatcher.util.FileWatcherUtil.*;
@@ -37,33 +40,103 @@ public class CustomFileWalker extends SimpleFileVisitor<Path> {
 	private PathToProcess pathToProcess;
 	private Map<String, FileMetric> fileMetrics;
 	private String baseDirectory;
+	private Deque<DirectoryAggregate> openDirectories = new ArrayDeque<>();
+	private DirectoryAggregate lastClosedDirectory;
 
-	private static PerMinValueCalculator perMinValueCalculator = new PerMinValueCalculator();
+	private ChangeDetector changeDetector;
+	private FileAggregator fileAggregator;
+	private WalkStatistics walkStatistics;
+	private DirectoryTreeCache directoryTreeCache;
+	private LineCountPool.Batch lineCountBatch;
+	private ContentMatchCache contentMatchCache;
+	private boolean lineCountsPrecomputed;
+	private boolean insideRecursivelyCountedDirectory;
+	private Map<String, Boolean> directoryTreeChecks = new HashMap<>();
+	private boolean entryShared;
+	private static LineCountCache lineCountCache = new LineCountCache();
 
+	/*
+	 * A walker without a change detector of its own never reports an entry as modified, as it has no previous state to
+	 * compare with.
+	 */
 	public CustomFileWalker(String baseDirectory, GlobPathMatcher globPathMatcher, PathToProcess pathToProcess,
 			Map<String, FileMetric> fileMetrics) {
+		this(baseDirectory, globPathMatcher, pathToProcess, fileMetrics, new ChangeDetector());
+	}
+
+	public CustomFileWalker(String baseDirectory, GlobPathMatcher globPathMatcher, PathToProcess pathToProcess,
+			Map<String, FileMetric> fileMetrics, ChangeDetector changeDetector) {
+		this(baseDirectory, globPathMatcher, pathToProcess, fileMetrics, changeDetector, null);
+	}
+
+	/*
+	 * With a file aggregator, matching files are added to its rollups instead of getting metrics of their own.
+	 */
+	public CustomFileWalker(String baseDirectory, GlobPathMatcher globPathMatcher, PathToProcess pathToProcess,
+			Map<String, FileMetric> fileMetrics, ChangeDetector changeDetector, FileAggregator fileAggregator) {
+		this(baseDirectory, globPathMatcher, pathToProcess, fileMetrics, changeDetector, fileAggregator, null);
+	}
+
+	/*
+	 * With a line count batch, the lines of matching files are counted on the LineCountPool the batch was begun on, and
+	 * the walker reports their last known counts until the batch is attached.
+	 */
+	public CustomFileWalker(String baseDirectory, GlobPathMatcher globPathMatcher, PathToProcess pathToProcess,
+			Map<String, FileMetric> fileMetrics, ChangeDetector changeDetector, FileAggregator fileAggregator,
+			LineCountPool.Batch lineCountBatch) {
 		this.baseDirectory = baseDirectory;
 		this.globPathMatcher = globPathMatcher;
 		this.pathToProcess = pathToProcess;
 		this.fileMetrics = fileMetrics;
+		this.changeDetector = changeDetector;
+		this.fileAggregator = fileAggregator;
+		this.walkStatistics = WalkStatistics.get(pathToProcess);
+		this.directoryTreeCache = DirectoryTreeCache.get(pathToProcess);
+		this.lineCountBatch = lineCountBatch;
+		this.contentMatchCache = ContentMatchCache.get(pathToProcess);
 	}
 
 	@Override
 	public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes basicFileAttributes) {
 		LOGGER.trace("CustomFileWalker - preVisitDirectory :: previsit directory path " + path);
-		if (pathToProcess.getIgnoreHiddenFiles() && path.toFile().isHidden()) {
+		countVisit();
+		boolean hidden = isHidden(path, basicFileAttributes);
+		DirectoryAggregate directory = new DirectoryAggregate(path, hidden,
+				basicFileAttributes != null ? basicFileAttributes.lastModifiedTime().toMillis() : 0);
+		openDirectories.push(directory);
+		if (!globPathMatcher.getMatcher().matches(path) && !globPathMatcher.canMatchDescendant(path)
+				&& !isRecursivelyCounted()) {
+			LOGGER.debug("Skipping directory {} as nothing under it can match {}", path, pathToProcess.getPath());
+			closeDirectory(openDirectories.pop());
+			return FileVisitResult.SKIP_SUBTREE;
+		}
+		if (directoryTreeCache != null && !globPathMatcher.getMatcher().matches(path)
+				&& !globPathMatcher.canMatchDescendant(path)) {
+			// Only counted into the recursive totals of a matched directory above it
+			DirectoryAggregate cached = directoryTreeCache.lookup(path, basicFileAttributes, directoryTreeChecks);
+			if (cached != null) {
+				LOGGER.debug("Skipping directory {} as its subtree did not change since it was last walked", path);
+				openDirectories.pop();
+				closeDirectory(cached);
+				return FileVisitResult.SKIP_SUBTREE;
+			}
+			directory.setCacheable();
+		}
+		if (pathToProcess.getIgnoreHiddenFiles() && hidden) {
 			LOGGER.debug("Skipping directory {}. Ignore hidden files = true & the path to this directory is hidden.",
 					path.getFileName());
 			return FileVisitResult.CONTINUE;
 		}
 		if (globPathMatcher.getMatcher().matches(path)) {
 			LOGGER.info("Match found for entered path {}. Checking access to directory..", path.getFileName());
-			if (isDirectoryAccessible(path)) {
+			walkStatistics.entryMatched();
+			walkStatistics.statCalls(2);
+			if (isDirectoryAccessible(path, basicFileAttributes)) {
 				LOGGER.info("Path {} accessible. Visiting directory..", path.getFileName());
 				String metricSuffix = getFormattedDisplayName(pathToProcess.getDisplayName(), path, baseDirectory);
-				fileMetrics.put(metricSuffix, generateDirectoryMetrics(path, basicFileAttributes, metricSuffix));
-				LOGGER.info("Directory metrics collected for {}.", path);
-
+				FileMetric fileMetric = generateDirectoryMetrics(path, basicFileAttributes, metricSuffix);
+				directory.setFileMetric(metricSuffix, fileMetric);
+				fileMetrics.put(metricSuffix, fileMetric);
 			} else {
 				LOGGER.error("Directory {} is inaccessible. Assign read & execute permissions to directory to proceed.",
 						path);
@@ -72,36 +145,173 @@ public class CustomFileWalker extends SimpleFileVisitor<Path> {
 		return FileVisitResult.CONTINUE;
 	}
 
+	@Override
+	public FileVisitResult postVisitDirectory(Path path, IOException exc) {
+		LOGGER.trace("CustomFileWalker - postVisitDirectory :: postvisit directory path " + path);
+		if (exc != null) {
+			LOGGER.warn("Listing of directory {} did not complete, its counts may be partial", path, exc);
+		}
+		DirectoryAggregate directory = openDirectories.pop();
+		if (directory.getFileMetric() != null) {
+			setOtherDirectoryAttributes(directory);
+			// Stores that copy the metric when it is put need the completed counts as well
+			fileMetrics.put(directory.getMetricSuffix(), directory.getFileMetric());
+			LOGGER.info("Directory metrics collected for {}.", path);
+		}
+		if (directoryTreeCache != null && exc == null) {
+			directoryTreeCache.put(directory);
+		}
+		closeDirectory(directory);
+		return FileVisitResult.CONTINUE;
+	}
+
+	private void closeDirectory(DirectoryAggregate directory) {
+		lastClosedDirectory = directory;
+		DirectoryAggregate parent = openDirectories.peek();
+		if (parent != null) {
+			parent.mergeChildDirectory(pathToProcess, directory);
+		}
+	}
+
+	/*
+	 * The recursive totals of a matched directory include every entry below it, so nothing below it can be skipped.
+	 */
+	boolean isRecursivelyCounted() {
+		if (!pathToProcess.getEnableRecursiveFileCounts() && !pathToProcess.getEnableRecursiveFileSizes()) {
+			return false;
+		}
+		if (insideRecursivelyCountedDirectory) {
+			return true;
+		}
+		for (DirectoryAggregate directory : openDirectories) {
+			if (directory.getFileMetric() != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * The walker starts below a directory that is open in another walker and counts every entry below it recursively,
+	 * for walkers that continue the walk of another walker from a subdirectory.
+	 */
+	void setInsideRecursivelyCountedDirectory(boolean insideRecursivelyCountedDirectory) {
+		this.insideRecursivelyCountedDirectory = insideRecursivelyCountedDirectory;
+	}
+
+	/*
+	 * The next entry is handed to this walker by a shared traversal that already handed it to another walker.
+	 */
+	void setEntryShared(boolean entryShared) {
+		this.entryShared = entryShared;
+	}
+
+	private void countVisit() {
+		if (entryShared) {
+			walkStatistics.sharedEntryVisited();
+		} else {
+			walkStatistics.entryVisited();
+		}
+	}
+
+	/*
+	 * Shares the results of the DirectoryTreeCache checks with the other walkers of the same walk, so that no subtree is
+	 * checked twice in a walk. They have to be thread safe if the walkers run concurrently.
+	 */
+	void setDirectoryTreeChecks(Map<String, Boolean> directoryTreeChecks) {
+		this.directoryTreeChecks = directoryTreeChecks;
+	}
+
+	static LineCountCache getLineCountCache() {
+		return lineCountCache;
+	}
+
+	/*
+	 * The lines of the files this walker visits were already counted into the line count cache, and into the walk
+	 * statistics, by whoever created it.
+	 */
+	void setLineCountsPrecomputed() {
+		lineCountsPrecomputed = true;
+		lineCountBatch = null;
+	}
+
+	DirectoryAggregate getOpenDirectory() {
+		return openDirectories.peek();
+	}
+
+	Collection<DirectoryAggregate> getOpenDirectories() {
+		return openDirectories;
+	}
+
+	/*
+	 * The directory that was completed or skipped last, for walkers that merge directories across walker instances.
+	 */
+	DirectoryAggregate getLastClosedDirectory() {
+		return lastClosedDirectory;
+	}
+
+	/*
+	 * Merges the counts of a subdirectory that was walked by another walker into the currently open directory.
+	 */
+	void mergeChildDirectory(DirectoryAggregate child) {
+		DirectoryAggregate parent = openDirectories.peek();
+		if (parent != null) {
+			parent.mergeChildDirectory(pathToProcess, child);
+		}
+	}
+
+	/*
+	 * Counts an entry towards the currently open directory without matching it or generating metrics for it.
+	 */
+	void recordChild(Path path, BasicFileAttributes basicFileAttributes) {
+		recordChild(basicFileAttributes, isHidden(path, basicFileAttributes));
+	}
+
+	private void recordChild(BasicFileAttributes basicFileAttributes, boolean hidden) {
+		DirectoryAggregate parent = openDirectories.peek();
+		if (parent != null && basicFileAttributes != null) {
+			parent.addChild(pathToProcess, basicFileAttributes.isRegularFile(), basicFileAttributes.isDirectory(),
+					hidden, basicFileAttributes.size(), basicFileAttributes.lastModifiedTime().toMillis());
+		}
+	}
+
 	private FileMetric generateDirectoryMetrics(Path path, BasicFileAttributes basicFileAttributes,
 			String metricSuffix) {
 		LOGGER.info("Generating directory metrics for {}", path);
 		FileMetric fileMetric = new FileMetric();
 		setBasicAttributes(path, basicFileAttributes, fileMetric);
 
-		BigDecimal prevTs = perMinValueCalculator.getPerMinuteValue(
-				metricSuffix + Constants.METRIC_SEPARATOR + Constants.MODIFIED,
-				new BigDecimal(fileMetric.getLastModifiedTime()));
-		if (prevTs != null && (prevTs.compareTo(BigDecimal.ZERO) > 0)) {
-			fileMetric.setModified(true);
-		}
+		ChangeDetector.Change change = changeDetector.observe(metricSuffix, basicFileAttributes);
+		fileMetric.setModified(change == ChangeDetector.Change.MODIFIED || change == ChangeDetector.Change.ROTATED);
 
-		setOtherDirectoryAttributes(path, fileMetric);
-		LOGGER.info("For directory {}, Size = {}, File Count = {} & Oldest File Age = {} ms", path.getFileName(),
-				fileMetric.getFileSize(), fileMetric.getNumberOfFiles(), fileMetric.getOldestFileAge());
+		fileMetric.setAvailable(true);
+		fileMetric.setNumberOfLines(-1);
 		return fileMetric;
 	}
 
 	@Override
 	public FileVisitResult visitFile(Path path, BasicFileAttributes basicFileAttributes) throws IOException {
 		LOGGER.trace("CustomFileWalker - visitFile :: visitFile path " + path);
-		if (pathToProcess.getIgnoreHiddenFiles() && path.toFile().isHidden()) {
+		countVisit();
+		boolean hidden = isHidden(path, basicFileAttributes);
+		recordChild(basicFileAttributes, hidden);
+		if (pathToProcess.getIgnoreHiddenFiles() && hidden) {
 			LOGGER.debug("Skipping file {} as it is hidden ", path.getFileName());
 			return FileVisitResult.CONTINUE;
 		}
 
+		if (fileAggregator != null && basicFileAttributes != null && basicFileAttributes.isRegularFile()) {
+			if (globPathMatcher.getMatcher().matches(path)) {
+				walkStatistics.entryMatched();
+				fileAggregator.add(getRollup(path), path, basicFileAttributes, baseDirectory);
+			}
+			return FileVisitResult.CONTINUE;
+		}
 		if (globPathMatcher.getMatcher().matches(path)) {
 			LOGGER.info("Match found for entered path {}. Checking access to file..", path.getFileName());
-			if (isFileAccessible(path)) {
+			walkStatistics.entryMatched();
+			walkStatistics.statCalls(1);
+			if (isFileAccessible(path, basicFileAttributes)) {
 				LOGGER.info("Path {} accessible. Visiting file..", path.getFileName());
 				String metricSuffix = getFormattedDisplayName(pathToProcess.getDisplayName(), path, baseDirectory);
 				fileMetrics.put(metricSuffix, generateFileMetrics(path, basicFileAttributes, metricSuffix));
@@ -124,6 +334,17 @@ public class CustomFileWalker extends SimpleFileVisitor<Path> {
 		return FileVisitResult.CONTINUE;
 	}
 
+	private FileAggregator.Rollup getRollup(Path path) {
+		DirectoryAggregate directory = openDirectories.peek();
+		if (directory == null || !directory.getPath().equals(path.getParent())) {
+			return fileAggregator.getRollup(path.getParent(), baseDirectory);
+		}
+		if (directory.getRollup() == null) {
+			directory.setRollup(fileAggregator.getRollup(directory.getPath(), baseDirectory));
+		}
+		return directory.getRollup();
+	}
+
 	@NotNull
 	private FileMetric generateFileMetrics(Path path, BasicFileAttributes basicFileAttributes, String metricSuffix)
 			throws IOException {
@@ -131,19 +352,18 @@ public class CustomFileWalker extends SimpleFileVisitor<Path> {
 		FileMetric fileMetric = new FileMetric();
 		setBasicAttributes(path, basicFileAttributes, fileMetric);
 
-		BigDecimal prevTs = perMinValueCalculator.getPerMinuteValue(
-				metricSuffix + Constants.METRIC_SEPARATOR + Constants.MODIFIED,
-				new BigDecimal(fileMetric.getLastModifiedTime()));
-		if (prevTs != null && (prevTs.compareTo(BigDecimal.ZERO) > 0)) {
-			fileMetric.setModified(true);
-		}
+		ChangeDetector.Change change = changeDetector.observe(metricSuffix, basicFileAttributes);
+		fileMetric.setModified(change == ChangeDetector.Change.MODIFIED || change == ChangeDetector.Change.ROTATED);
 
 		fileMetric.setNumberOfFiles(-1);
 		fileMetric.setOldestFileAge(-1);
 		fileMetric.setRecursiveNumberOfFiles(-1);
-		fileMetric.setRecursiveFileSize("-1");
+		fileMetric.setRecursiveFileSize(-1);
 		fileMetric.setAvailable(true);
-		fileMetric.setNumberOfLines(getNumberOfLinesFromFile(path));
+		fileMetric.setNumberOfLines(getNumberOfLines(path, basicFileAttributes, metricSuffix));
+		if (contentMatchCache != null) {
+			fileMetric.setContentMatches(contentMatchCache.getMatches(path, basicFileAttributes));
+		}
 		LOGGER.info("For file {}, File Size = {} & Last Modified Time = {} ms, Number of Lines " + "= {}",
 				path.getFileName(), fileMetric.getFileSize(), fileMetric.getLastModifiedTime(),
 				fileMetric.getNumberOfLines());
@@ -152,9 +372,27 @@ public class CustomFileWalker extends SimpleFileVisitor<Path> {
 	
 	
 
+	/*
+	 * With a line count batch, lines that are not cached yet are counted off the walk, and the last known count is
+	 * reported until the batch is attached.
+	 */
+	private long getNumberOfLines(Path path, BasicFileAttributes basicFileAttributes, String metricSuffix) {
+		if (lineCountBatch != null && basicFileAttributes != null
+				&& !lineCountCache.isCurrent(path, basicFileAttributes)) {
+			return lineCountBatch.submit(path, basicFileAttributes, metricSuffix, walkStatistics);
+		}
+		return lineCountCache.getNumberOfLines(path, basicFileAttributes, lineCountsPrecomputed ? null : walkStatistics);
+	}
+
 	@Override
 	public FileVisitResult visitFileFailed(Path path, IOException exc) {
 		LOGGER.trace("CustomFileWalker - visitFileFailed :: path " + path + " is failed to visit,Exception is ", exc);
+		walkStatistics.statCalls(1);
+		DirectoryAggregate parent = openDirectories.peek();
+		if (parent != null) {
+			// An entry that could not be read cannot be checked for changes later
+			parent.setUncacheable();
+		}
 		if (Files.isDirectory(path)) {
 			LOGGER.error("Error occurred while visiting directory at path " + path, exc);
 		} else {
@@ -166,20 +404,14 @@ public class CustomFileWalker extends SimpleFileVisitor<Path> {
 			FileMetric fileMetric = new FileMetric();
 //			setBasicAttributes(path, null, fileMetric);
 
-			BigDecimal prevTs = perMinValueCalculator.getPerMinuteValue(
-					metricSuffix + Constants.METRIC_SEPARATOR + Constants.MODIFIED,
-					new BigDecimal(fileMetric.getLastModifiedTime()));
-			if (prevTs != null && (prevTs.compareTo(BigDecimal.ZERO) > 0)) {
-				fileMetric.setModified(true);
-			}
-		
+			// Not observed by the change detector, so that it is reported as deleted
 			fileMetric.setNumberOfFiles(-1);
 			fileMetric.setOldestFileAge(-1);
 			fileMetric.setRecursiveNumberOfFiles(-1);
-			fileMetric.setRecursiveFileSize("-1");
+			fileMetric.setRecursiveFileSize(-1);
 			fileMetric.setAvailable(false);
 			fileMetric.setNumberOfLines(-1);
-			fileMetric.setFileSize("-1");
+			fileMetric.setFileSize(-1);
 			fileMetrics.put(metricSuffix, fileMetric);
 			
 			
@@ -191,79 +423,39 @@ public class CustomFileWalker extends SimpleFileVisitor<Path> {
 		if (basicFileAttributes != null) {
 			LOGGER.debug("Setting Basic Directory Attributes for {}", path.getFileName());
 			fileMetric.setLastModifiedTime(basicFileAttributes.lastModifiedTime().toMillis());
-			fileMetric.setFileSize(String.valueOf(basicFileAttributes.size()));
+			fileMetric.setFileSize(basicFileAttributes.size());
 		} else {
 			LOGGER.debug("Couldn't find basic file attributes for {}", path.getFileName());
 		}
 	}
 
-	private void setOtherDirectoryAttributes(@NotNull Path path, FileMetric fileMetric) {
-		LOGGER.debug("Setting other directory attributes for {}", path.getFileName());
-		int fileCount = 0;
-		long oldestFile = 0L;
-
-		File[] filesInDir = path.toFile().listFiles();
-
-		if (filesInDir != null && filesInDir.length > 0) {
-			oldestFile = filesInDir[0].lastModified();
-			for (File f : filesInDir) {
-				if (pathToProcess.getIgnoreHiddenFiles()) {
-					if (!f.isHidden()) {
-						if (f.isFile() || !pathToProcess.getExcludeSubdirectoryCount()) {
-							fileCount++;
-						}
-						if (f.lastModified() < oldestFile) {
-							oldestFile = f.lastModified();
-						}
-					} else {
-						LOGGER.info("Skipping directory {} as it is hidden", f);
-					}
-				} else {
-					fileCount++;
-					if (f.lastModified() < oldestFile) {
-						oldestFile = f.lastModified();
-					}
-				}
-			}
-		}
-		fileMetric.setNumberOfFiles(fileCount);
+	private void setOtherDirectoryAttributes(@NotNull DirectoryAggregate directory) {
+		LOGGER.debug("Setting other directory attributes for {}", directory.getPath().getFileName());
+		FileMetric fileMetric = directory.getFileMetric();
+		fileMetric.setNumberOfFiles(directory.getFileCount());
+		long oldestFile = directory.getOldestModifiedTime();
 		long currentTimeInMillis = System.currentTimeMillis();
 		long oldestFileAge = -1;
 		if (oldestFile > 0 && oldestFile < currentTimeInMillis) {
 			oldestFileAge = (currentTimeInMillis - oldestFile) / 1000;
 		}
 		fileMetric.setOldestFileAge(oldestFileAge);
-		fileMetric.setAvailable(true);
-		fileMetric.setNumberOfLines(-1);
 		fileMetric.setRecursiveNumberOfFiles(
-				pathToProcess.getEnableRecursiveFileCounts() ? evaluateRecursiveFileCounts(path) : -1);
-//        fileMetric.setRecursiveFileSize(pathToProcess.getEnableRecursiveFileSizes() ?
-//                String.valueOf(FileUtils.sizeOfDirectoryAsBigInteger(path.toFile())) : "-1");
-		fileMetric.setRecursiveFileSize(evaluateRecursiveFileSize(path));
-	}
-
-	private long evaluateRecursiveFileCounts(Path path) {
-		try {
-			LOGGER.debug("Calculating recursive file count for {}", path);
-			return calculateRecursiveFileCount(path, pathToProcess.getIgnoreHiddenFiles(),
-					pathToProcess.getExcludeSubdirectoryCount());
-		} catch (Exception ex) {
-			LOGGER.error("Error encountered while calculating recursive file count for directory {}",
-					path.getFileName(), ex);
-		}
-		return -1;
-	}
-
-	private String evaluateRecursiveFileSize(Path path) {
-		try {
-			LOGGER.debug("Calculating recursive file size for {}", path);
-			if (pathToProcess.getEnableRecursiveFileSizes()) {
-				return String.valueOf(FileUtils.sizeOfDirectoryAsBigInteger(path.toFile()));
-			}
-		} catch (Exception ex) {
-			LOGGER.error("Error encountered while calculating recursive File Size for directory {}", path.getFileName(),
-					ex);
+				pathToProcess.getEnableRecursiveFileCounts() ? directory.getRecursiveFileCount() : -1);
+		fileMetric.setRecursiveFileSize(
+				pathToProcess.getEnableRecursiveFileSizes() ? directory.getRecursiveFileSize() : -1);
+		LogHistogram fileAges = directory.getFileAges();
+		if (fileAges != null) {
+			fileMetric.setMedianFileAge(fileAges.getPercentile(50));
+			fileMetric.setP90FileAge(fileAges.getPercentile(90));
+			fileMetric.setP99FileAge(fileAges.getPercentile(99));
+			LogHistogram fileSizes = directory.getFileSizes();
+			fileMetric.setMedianFileSize(fileSizes.getPercentile(50));
+			fileMetric.setP90FileSize(fileSizes.getPercentile(90));
+			fileMetric.setP99FileSize(fileSizes.getPercentile(99));
 		}
-		return "-1";
+		LOGGER.info("For directory {}, Size = {}, File Count = {} & Oldest File Age = {} ms",
+				directory.getPath().getFileName(), fileMetric.getFileSize(), fileMetric.getNumberOfFiles(),
+				fileMetric.getOldestFileAge());
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,179 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.processors;
+
+import com.appdynamics.extensions.filewatcher.config.FileMetric;
+import com.appdynamics.extensions.filewatcher.config.PathToProcess;
+import com.appdynamics.extensions.filewatcher.util.LogHistogram;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Running counts for a directory that is currently open in a walk. Direct children are added as they are visited and
+ * completed subdirectories are merged in, so the recursive totals of every ancestor come out of a single traversal.
+ *
+ * Matched directories also keep histograms of the ages and sizes of their files. With recursive file counts, every
+ * directory keeps them and merges them into its parent, so that the percentiles of a directory cover all files below it.
+ *
+ * Directories whose subtree goes into the DirectoryTreeCache also remember the names of their subdirectories. A cached
+ * aggregate may be merged into a parent in a later walk, in which case the ages of its files are moved forward by the
+ * time that passed since it was counted.
+ */
+class DirectoryAggregate {
+    private final Path path;
+    private final boolean hidden;
+    private final long lastModifiedTime;
+
+    private FileMetric fileMetric;
+    private String metricSuffix;
+    private FileAggregator.Rollup rollup;
+
+    private int fileCount;
+    private long oldestModifiedTime = Long.MAX_VALUE;
+    private long recursiveFileCount;
+    private long recursiveFileSize;
+    private final long currentTimeMillis = System.currentTimeMillis();
+    private LogHistogram fileAges;
+    private LogHistogram fileSizes;
+    private List<String> childDirectories;
+
+    DirectoryAggregate(Path path, boolean hidden, long lastModifiedTime) {
+        this.path = path;
+        this.hidden = hidden;
+        this.lastModifiedTime = lastModifiedTime;
+    }
+
+    void addChild(PathToProcess pathToProcess, boolean isRegularFile, boolean isDirectory, boolean isHidden,
+                  long size, long lastModified) {
+        boolean ignoreHiddenFiles = pathToProcess.getIgnoreHiddenFiles();
+        boolean excludeSubdirectories = pathToProcess.getExcludeSubdirectoryCount();
+        if (!ignoreHiddenFiles || !isHidden) {
+            if (!ignoreHiddenFiles || isRegularFile || !excludeSubdirectories) {
+                fileCount++;
+            }
+            if (lastModified < oldestModifiedTime) {
+                oldestModifiedTime = lastModified;
+            }
+            if (excludeSubdirectories ? !isDirectory : (isRegularFile || isDirectory)) {
+                recursiveFileCount++;
+            }
+            if (isRegularFile && (fileMetric != null || pathToProcess.getEnableRecursiveFileCounts())) {
+                createHistograms();
+                fileAges.record((currentTimeMillis - lastModified) / 1000);
+                fileSizes.record(size);
+            }
+        }
+        if (isRegularFile) {
+            recursiveFileSize += size;
+        }
+    }
+
+    void mergeChildDirectory(PathToProcess pathToProcess, DirectoryAggregate child) {
+        addChild(pathToProcess, false, true, child.hidden, 0, child.lastModifiedTime);
+        recursiveFileCount += child.recursiveFileCount;
+        recursiveFileSize += child.recursiveFileSize;
+        if (child.fileAges != null && pathToProcess.getEnableRecursiveFileCounts()) {
+            createHistograms();
+            fileAges.add(child.fileAges, (currentTimeMillis - child.currentTimeMillis) / 1000);
+            fileSizes.add(child.fileSizes);
+        }
+        if (childDirectories != null) {
+            Path name = child.path.getFileName();
+            if (name != null) {
+                childDirectories.add(name.toString());
+            }
+        }
+    }
+
+    private void createHistograms() {
+        if (fileAges == null) {
+            fileAges = new LogHistogram();
+            fileSizes = new LogHistogram();
+        }
+    }
+
+    /*
+     * Starts remembering the names of the subdirectories merged in, for the DirectoryTreeCache.
+     */
+    void setCacheable() {
+        childDirectories = new ArrayList<>();
+    }
+
+    void setUncacheable() {
+        childDirectories = null;
+    }
+
+    /*
+     * Null unless the directory is cacheable.
+     */
+    List<String> getChildDirectories() {
+        return childDirectories;
+    }
+
+    long getLastModifiedTime() {
+        return lastModifiedTime;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    FileMetric getFileMetric() {
+        return fileMetric;
+    }
+
+    String getMetricSuffix() {
+        return metricSuffix;
+    }
+
+    void setFileMetric(String metricSuffix, FileMetric fileMetric) {
+        this.metricSuffix = metricSuffix;
+        this.fileMetric = fileMetric;
+    }
+
+    /*
+     * The rollup the matching files of this directory are aggregated into, looked up once for all of them.
+     */
+    FileAggregator.Rollup getRollup() {
+        return rollup;
+    }
+
+    void setRollup(FileAggregator.Rollup rollup) {
+        this.rollup = rollup;
+    }
+
+    int getFileCount() {
+        return fileCount;
+    }
+
+    long getOldestModifiedTime() {
+        return oldestModifiedTime == Long.MAX_VALUE ? 0 : oldestModifiedTime;
+    }
+
+    long getRecursiveFileCount() {
+        return recursiveFileCount;
+    }
+
+    long getRecursiveFileSize() {
+        return recursiveFileSize;
+    }
+
+    /*
+     * Null while no file was recorded.
+     */
+    LogHistogram getFileAges() {
+        return fileAges;
+    }
+
+    LogHistogram getFileSizes() {
+        return fileSizes;
+    }
+}
@@ -0,0 +1,394 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.processors;
+
+import com.appdynamics.extensions.filewatcher.config.FileMetric;
+import com.appdynamics.extensions.filewatcher.config.PathToProcess;
+import com.appdynamics.extensions.filewatcher.helpers.GlobPathMatcher;
+import com.appdynamics.extensions.filewatcher.util.FileWatcherUtil;
+import com.appdynamics.extensions.logging.ExtensionsLoggerFactory;
+import org.slf4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+import static com.appdynamics.extensions.filewatcher.util.FileWatcherUtil.getFormattedDisplayName;
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/*
+ * Keeps the metrics of one base directory in memory and refreshes them from WatchService events. The first refresh
+ * walks the base directory and registers every directory whose children are visited. Later refreshes re-stat only the
+ * entries that received events, re-list the directories they live in and re-walk subtrees that overflowed or were
+ * newly created. With recursive file counts or sizes, every change re-walks the whole tree, which is why FileMonitor
+ * walks such paths instead of watching them.
+ *
+ * If the watch service cannot be created, or not every directory can be registered with it, the watcher falls back to
+ * walking the base directory on every refresh for as long as it lives, without trying to watch it again.
+ */
+public class DirectoryChangeWatcher implements Closeable {
+    private static final Logger LOGGER = ExtensionsLoggerFactory.getLogger(DirectoryChangeWatcher.class);
+
+    private final String baseDirectory;
+    private final PathToProcess pathToProcess;
+    private final GlobPathMatcher globPathMatcher;
+    private final Path walkRoot;
+    private final int walkDepth;
+    private final boolean recursiveMetrics;
+    private final ChangeDetector changeDetector;
+
+    private WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    private final Map<Path, WatchKey> watchKeys = new HashMap<>();
+    private boolean registrationFailed;
+    private boolean watchUnavailable;
+
+    private Map<String, FileMetric> index;
+    private long agesUpdatedAt;
+
+    public DirectoryChangeWatcher(String baseDirectory, PathToProcess pathToProcess) {
+        this(baseDirectory, pathToProcess, new ChangeDetector());
+    }
+
+    public DirectoryChangeWatcher(String baseDirectory, PathToProcess pathToProcess, ChangeDetector changeDetector) {
+        this.changeDetector = changeDetector;
+        this.baseDirectory = baseDirectory;
+        this.pathToProcess = pathToProcess;
+        this.globPathMatcher = (GlobPathMatcher) FileWatcherUtil.getPathMatcher(pathToProcess);
+        this.walkRoot = FileWatcherUtil.getWalkRoot(baseDirectory, pathToProcess);
+        this.walkDepth = FileWatcherUtil.getWalkDepth(pathToProcess);
+        this.recursiveMetrics = pathToProcess.getEnableRecursiveFileCounts()
+                || pathToProcess.getEnableRecursiveFileSizes();
+    }
+
+    public synchronized Map<String, FileMetric> refresh() throws IOException {
+        changeDetector.beginCycle();
+        if (index == null || watchService == null) {
+            rescanAll();
+        } else {
+            adjustAges();
+            applyChanges();
+        }
+        // Entries without events are unchanged but still present
+        for (String key : index.keySet()) {
+            changeDetector.retain(key);
+        }
+        changeDetector.endCycle();
+        return new HashMap<>(index);
+    }
+
+    private void rescanAll() throws IOException {
+        closeWatchService();
+        if (watchUnavailable) {
+            LOGGER.debug("Walking {} as it cannot be watched", walkRoot);
+        } else {
+            LOGGER.debug("Walking {} and registering its directories with the watch service", walkRoot);
+            registrationFailed = false;
+            try {
+                watchService = walkRoot.getFileSystem().newWatchService();
+            } catch (IOException | UnsupportedOperationException ex) {
+                LOGGER.warn("Unable to create a watch service for {}, the path will be walked every cycle", walkRoot,
+                        ex);
+                watchUnavailable = true;
+            }
+        }
+        index = new HashMap<>();
+        agesUpdatedAt = System.currentTimeMillis();
+        if (!Files.isDirectory(walkRoot) && walkRoot.getParent() != null) {
+            register(walkRoot.getParent());
+        }
+        FileWatcherUtil.walk(baseDirectory, pathToProcess, new RegisteringFileWalker());
+        if (registrationFailed) {
+            LOGGER.warn("Not all directories under {} could be watched, the path will be walked every cycle. " +
+                    "Consider raising the limit of watches per user.", walkRoot);
+            closeWatchService();
+            watchUnavailable = true;
+        }
+    }
+
+    private void applyChanges() throws IOException {
+        Set<Path> rescans = new HashSet<>();
+        Set<Path> changedEntries = new HashSet<>();
+        Set<Path> changedDirectories = new HashSet<>();
+        Set<Path> removedDirectories = new HashSet<>();
+        boolean rootInvalidated = false;
+
+        WatchKey key;
+        while ((key = watchService.poll()) != null) {
+            Path directory = watchedDirectories.get(key);
+            if (directory == null) {
+                continue;
+            }
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW) {
+                    LOGGER.debug("Events overflowed for {}, rescanning it", directory);
+                    rescans.add(isInScope(directory) ? directory : walkRoot);
+                    continue;
+                }
+                Path child = directory.resolve((Path) event.context());
+                if (isInScope(child)) {
+                    changedEntries.add(child);
+                }
+                if (isInScope(directory)) {
+                    changedDirectories.add(directory);
+                }
+            }
+            if (!key.reset()) {
+                LOGGER.debug("Directory {} is no longer watchable", directory);
+                rootInvalidated |= directory.equals(walkRoot) || walkRoot.startsWith(directory);
+                unregister(directory);
+                removedDirectories.add(directory);
+            }
+        }
+
+        if (rootInvalidated) {
+            rescanAll();
+            return;
+        }
+        if (rescans.isEmpty() && changedEntries.isEmpty() && changedDirectories.isEmpty()) {
+            LOGGER.debug("No changes under {} since the last cycle", walkRoot);
+            return;
+        }
+        for (Path directory : removedDirectories) {
+            removeIndexed(directory, true);
+        }
+        if (recursiveMetrics) {
+            // Recursive totals of every ancestor depend on the change, so the whole tree is summed up again
+            rescans.add(walkRoot);
+        }
+
+        for (Path entry : changedEntries) {
+            BasicFileAttributes attributes = readAttributes(entry);
+            if (attributes != null && attributes.isDirectory() && depth(entry) < walkDepth) {
+                if (watchKeys.containsKey(entry)) {
+                    changedDirectories.add(entry);
+                } else {
+                    rescans.add(entry);
+                }
+            }
+        }
+
+        List<Path> subtrees = topmost(rescans);
+        for (Path subtree : subtrees) {
+            rescanSubtree(subtree);
+            Path parent = subtree.getParent();
+            if (parent != null && isInScope(parent) && depth(parent) < walkDepth) {
+                changedDirectories.add(parent);
+            }
+        }
+        for (Path entry : changedEntries) {
+            if (!isUnder(entry, subtrees) && !watchKeys.containsKey(entry)) {
+                refreshEntry(entry);
+            }
+        }
+        for (Path directory : changedDirectories) {
+            if (!isUnder(directory, subtrees)) {
+                refreshDirectory(directory);
+            }
+        }
+        LOGGER.debug("Applied changes under {}: {} subtrees rescanned, {} entries and {} directories refreshed",
+                walkRoot, subtrees.size(), changedEntries.size(), changedDirectories.size());
+    }
+
+    private void rescanSubtree(Path subtree) throws IOException {
+        if (subtree.equals(walkRoot)) {
+            index.clear();
+        } else {
+            removeIndexed(subtree, true);
+        }
+        if (!Files.exists(subtree, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        int depth = walkDepth == Integer.MAX_VALUE ? Integer.MAX_VALUE : walkDepth - depth(subtree);
+        RegisteringFileWalker walker = new RegisteringFileWalker();
+        walker.setInsideRecursivelyCountedDirectory(hasIndexedAncestor(subtree));
+        Files.walkFileTree(subtree, new HashSet<>(), depth, walker);
+    }
+
+    private void refreshEntry(Path entry) throws IOException {
+        removeIndexed(entry, hasWatchedDirectoryUnder(entry));
+        BasicFileAttributes attributes = readAttributes(entry);
+        if (attributes != null) {
+            new CustomFileWalker(baseDirectory, globPathMatcher, pathToProcess, index, changeDetector).visitFile(entry, attributes);
+        }
+    }
+
+    private void refreshDirectory(Path directory) {
+        BasicFileAttributes attributes = readAttributes(directory);
+        if (attributes == null || !attributes.isDirectory()) {
+            return;
+        }
+        CustomFileWalker walker = new CustomFileWalker(baseDirectory, globPathMatcher, pathToProcess, index,
+                changeDetector);
+        walker.setInsideRecursivelyCountedDirectory(hasIndexedAncestor(directory));
+        if (walker.preVisitDirectory(directory, attributes) != FileVisitResult.CONTINUE) {
+            return;
+        }
+        IOException listingException = null;
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+            for (Path child : children) {
+                walker.recordChild(child, readAttributes(child));
+            }
+        } catch (IOException | DirectoryIteratorException ex) {
+            listingException = ex instanceof IOException ? (IOException) ex : ((DirectoryIteratorException) ex).getCause();
+        }
+        walker.postVisitDirectory(directory, listingException);
+    }
+
+    /*
+     * Whether a directory above the path has metrics of its own, whose recursive totals the path is part of.
+     */
+    private boolean hasIndexedAncestor(Path path) {
+        for (Path ancestor = path.getParent(); ancestor != null && ancestor.startsWith(walkRoot);
+             ancestor = ancestor.getParent()) {
+            if (index.containsKey(getFormattedDisplayName(pathToProcess.getDisplayName(), ancestor, baseDirectory))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void removeIndexed(Path path, boolean subtree) {
+        String key = getFormattedDisplayName(pathToProcess.getDisplayName(), path, baseDirectory);
+        index.remove(key);
+        if (subtree) {
+            String prefix = key + "|";
+            index.keySet().removeIf(indexedKey -> indexedKey.startsWith(prefix));
+        }
+    }
+
+    private void adjustAges() {
+        long elapsedSeconds = (System.currentTimeMillis() - agesUpdatedAt) / 1000;
+        if (elapsedSeconds <= 0) {
+            return;
+        }
+        agesUpdatedAt += elapsedSeconds * 1000;
+        for (FileMetric fileMetric : index.values()) {
+            if (fileMetric.getOldestFileAge() >= 0) {
+                fileMetric.setOldestFileAge(fileMetric.getOldestFileAge() + elapsedSeconds);
+            }
+            if (fileMetric.getMedianFileAge() >= 0) {
+                fileMetric.setMedianFileAge(fileMetric.getMedianFileAge() + elapsedSeconds);
+                fileMetric.setP90FileAge(fileMetric.getP90FileAge() + elapsedSeconds);
+                fileMetric.setP99FileAge(fileMetric.getP99FileAge() + elapsedSeconds);
+            }
+        }
+    }
+
+    private void register(Path directory) {
+        if (watchService == null || watchKeys.containsKey(directory)) {
+            return;
+        }
+        try {
+            WatchKey key = directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+            watchedDirectories.put(key, directory);
+            watchKeys.put(directory, key);
+        } catch (IOException ex) {
+            LOGGER.debug("Unable to watch directory {}", directory, ex);
+            registrationFailed = true;
+        }
+    }
+
+    private void unregister(Path directory) {
+        Iterator<Map.Entry<Path, WatchKey>> iterator = watchKeys.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, WatchKey> entry = iterator.next();
+            if (entry.getKey().startsWith(directory)) {
+                entry.getValue().cancel();
+                watchedDirectories.remove(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    private boolean hasWatchedDirectoryUnder(Path path) {
+        if (watchKeys.containsKey(path)) {
+            return true;
+        }
+        for (Path directory : watchKeys.keySet()) {
+            if (directory.startsWith(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isInScope(Path path) {
+        return path.startsWith(walkRoot) && depth(path) <= walkDepth;
+    }
+
+    private int depth(Path path) {
+        return path.getNameCount() - walkRoot.getNameCount();
+    }
+
+    private static List<Path> topmost(Set<Path> paths) {
+        List<Path> sorted = new ArrayList<>(paths);
+        sorted.sort(Comparator.comparingInt(Path::getNameCount));
+        List<Path> topmost = new ArrayList<>();
+        for (Path path : sorted) {
+            if (!isUnder(path, topmost)) {
+                topmost.add(path);
+            }
+        }
+        return topmost;
+    }
+
+    private static boolean isUnder(Path path, List<Path> subtrees) {
+        for (Path subtree : subtrees) {
+            if (path.startsWith(subtree)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static BasicFileAttributes readAttributes(Path path) {
+        try {
+            return FileWatcherUtil.readAttributes(path);
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    private void closeWatchService() {
+        watchedDirectories.clear();
+        watchKeys.clear();
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ex) {
+                LOGGER.debug("Error while closing the watch service for {}", walkRoot, ex);
+            }
+            watchService = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closeWatchService();
+        index = null;
+    }
+
+    private class RegisteringFileWalker extends CustomFileWalker {
+        RegisteringFileWalker() {
+            super(baseDirectory, globPathMatcher, pathToProcess, index, changeDetector);
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes basicFileAttributes) {
+            FileVisitResult result = super.preVisitDirectory(path, basicFileAttributes);
+            if (result == FileVisitResult.CONTINUE) {
+                register(path);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.processors;
+
+import com.appdynamics.extensions.filewatcher.config.PathToProcess;
+import com.appdynamics.extensions.logging.ExtensionsLoggerFactory;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.appdynamics.extensions.filewatcher.util.Constants.DEFAULT_DIRECTORY_CACHE_MAX_AGE_SECONDS;
+import static com.appdynamics.extensions.filewatcher.util.FileWatcherUtil.readAttributes;
+
+/*
+ * The aggregates of the directories of a configured path that are only walked for the recursive counts and sizes of a
+ * matched directory above them, as nothing in them can match. Each aggregate covers the whole subtree of its directory
+ * and is kept with the last modified time of the directory and the names of its subdirectories.
+ *
+ * A directory gains or loses entries only by changing its last modified time, so a subtree whose directories all still
+ * have the times they had when it was walked has the same entries, and its aggregate is reused without listing it:
+ * checking that takes one stat per directory instead of a listing and a stat per file. A subtree with a changed
+ * directory is walked again, and its unchanged branches are reused from their own aggregates, so only the changed
+ * branches are listed again and summed up. Files changed in place do not change the time of their directory, their new
+ * sizes are only picked up once their directory changes or its aggregate expires, directoryCacheMaxAgeSeconds after it
+ * was put.
+ *
+ * The result of checking a directory is kept for the rest of the walk that checked it. Once a check fails somewhere
+ * deep in a subtree, the walk descends into every directory above the change and looks each of them up again, and
+ * their unchanged branches have already been checked as part of the first lookup. Without the kept results, a chain of
+ * d directories would take O(d^2) stats instead of O(d).
+ */
+public class DirectoryTreeCache {
+    private static final Logger LOGGER = ExtensionsLoggerFactory.getLogger(DirectoryTreeCache.class);
+    private static final Map<String, DirectoryTreeCache> CACHES = new ConcurrentHashMap<>();
+
+    private final Cache<String, DirectoryAggregate> aggregates;
+
+    public DirectoryTreeCache(long expireAfterWrite, TimeUnit timeUnit) {
+        aggregates = CacheBuilder.newBuilder().expireAfterWrite(expireAfterWrite, timeUnit).build();
+    }
+
+    /*
+     * The cache of the configured path, or null if it does not use one.
+     */
+    public static DirectoryTreeCache get(PathToProcess pathToProcess) {
+        if (!pathToProcess.getDirectoryCache()) {
+            return null;
+        }
+        return CACHES.computeIfAbsent(pathToProcess.getDisplayName() + "|" + pathToProcess.getPath(),
+                key -> new DirectoryTreeCache(pathToProcess.getDirectoryCacheMaxAgeSeconds() > 0
+                        ? pathToProcess.getDirectoryCacheMaxAgeSeconds() : DEFAULT_DIRECTORY_CACHE_MAX_AGE_SECONDS,
+                        TimeUnit.SECONDS));
+    }
+
+    public static void clear() {
+        CACHES.clear();
+    }
+
+    /*
+     * The aggregate of the subtree of the directory, if neither it nor any directory below it changed since it was put.
+     * The checks hold the results of the directories checked so far in the same walk, and take those of this lookup.
+     */
+    DirectoryAggregate lookup(Path directory, BasicFileAttributes basicFileAttributes, Map<String, Boolean> checks) {
+        if (basicFileAttributes == null) {
+            return null;
+        }
+        DirectoryAggregate aggregate = aggregates.getIfPresent(directory.toString());
+        if (aggregate == null || !isUnchanged(aggregate, basicFileAttributes, checks)) {
+            return null;
+        }
+        LOGGER.trace("Reusing the aggregate of {}", directory);
+        return aggregate;
+    }
+
+    private boolean isUnchanged(DirectoryAggregate aggregate, BasicFileAttributes basicFileAttributes,
+                                Map<String, Boolean> checks) {
+        String key = aggregate.getPath().toString();
+        Boolean checked = checks.get(key);
+        if (checked == null) {
+            checked = isSubtreeUnchanged(aggregate, basicFileAttributes, checks);
+            checks.put(key, checked);
+        }
+        return checked;
+    }
+
+    private boolean isSubtreeUnchanged(DirectoryAggregate aggregate, BasicFileAttributes basicFileAttributes,
+                                       Map<String, Boolean> checks) {
+        if (aggregate.getLastModifiedTime() != basicFileAttributes.lastModifiedTime().toMillis()) {
+            return false;
+        }
+        for (String name : aggregate.getChildDirectories()) {
+            Path child = aggregate.getPath().resolve(name);
+            DirectoryAggregate childAggregate = aggregates.getIfPresent(child.toString());
+            if (childAggregate == null) {
+                return false;
+            }
+            // Checked before, so there is no need to stat it again
+            Boolean checked = checks.get(child.toString());
+            if (checked != null) {
+                if (!checked) {
+                    return false;
+                }
+                continue;
+            }
+            try {
+                if (!isUnchanged(childAggregate, readAttributes(child), checks)) {
+                    return false;
+                }
+            } catch (IOException ex) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Keeps the aggregate of a cacheable directory once its whole subtree was walked.
+     */
+    void put(DirectoryAggregate aggregate) {
+        List<String> childDirectories = aggregate.getChildDirectories();
+        if (childDirectories != null) {
+            aggregates.put(aggregate.getPath().toString(), aggregate);
+        }
+    }
+
+    public long size() {
+        return aggregates.size();
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.processors;
+
+import com.appdynamics.extensions.filewatcher.config.FileMetric;
+import com.appdynamics.extensions.filewatcher.config.PathToProcess;
+import com.appdynamics.extensions.filewatcher.util.LogHistogram;
+import com.appdynamics.extensions.logging.ExtensionsLoggerFactory;
+import org.slf4j.Logger;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+import static com.appdynamics.extensions.filewatcher.util.Constants.AGGREGATION_DIRECTORY;
+import static com.appdynamics.extensions.filewatcher.util.Constants.METRIC_SEPARATOR;
+import static com.appdynamics.extensions.filewatcher.util.FileWatcherUtil.getFormattedDisplayName;
+
+/*
+ * Rolls the matching files of a configured path up into one rollup per directory, or one for the whole path, while it
+ * is walked, instead of keeping a FileMetric per file. Only the topFiles largest and oldest files are remembered
+ * individually, in two bounded heaps.
+ *
+ * The number of series reported for the path is capped by maxSeries: the rollup of every directory takes
+ * metricsPerRollup series and every top file metricsPerFile. Directories found once the cap is reached are rolled up
+ * into a single Other rollup, which always has room. Safe for concurrent walkers.
+ */
+public class FileAggregator {
+    private static final Logger LOGGER = ExtensionsLoggerFactory.getLogger(FileAggregator.class);
+    private static final String OTHER = "Other";
+    private static final long KB = 1024;
+    private static final long MB = KB * 1024;
+    private static final long GB = MB * 1024;
+
+    private final String displayName;
+    private final boolean perDirectory;
+    private final int maxRollups;
+    private final int topFiles;
+    private final long currentTimeMillis;
+    private final Map<String, Rollup> rollups = new LinkedHashMap<>();
+    private Rollup otherRollup;
+    // The root of each heap is the file that is dropped first once it is full
+    private final PriorityQueue<TopFile> largestFiles =
+            new PriorityQueue<>(Comparator.comparingLong((TopFile topFile) -> topFile.size));
+    private final PriorityQueue<TopFile> oldestFiles =
+            new PriorityQueue<>(Comparator.comparingLong((TopFile topFile) -> -topFile.lastModifiedTime));
+
+    public FileAggregator(PathToProcess pathToProcess, int metricsPerRollup, int metricsPerFile) {
+        this.displayName = pathToProcess.getDisplayName();
+        this.perDirectory = AGGREGATION_DIRECTORY.equalsIgnoreCase(pathToProcess.getAggregation());
+        this.currentTimeMillis = System.currentTimeMillis();
+        metricsPerRollup = Math.max(metricsPerRollup, 1);
+        metricsPerFile = Math.max(metricsPerFile, 1);
+        int maxSeries = pathToProcess.getMaxSeries();
+        if (maxSeries > 0) {
+            // The Other rollup comes first, then the top files, then the rollups of directories
+            int remainingSeries = Math.max(maxSeries - metricsPerRollup, 0);
+            this.topFiles = Math.min(Math.max(pathToProcess.getTopFiles(), 0), remainingSeries / (2 * metricsPerFile));
+            remainingSeries -= 2 * topFiles * metricsPerFile;
+            this.maxRollups = remainingSeries / metricsPerRollup;
+        } else {
+            this.topFiles = Math.max(pathToProcess.getTopFiles(), 0);
+            this.maxRollups = Integer.MAX_VALUE;
+        }
+    }
+
+    /*
+     * The rollup the matching files in the given directory are added to.
+     */
+    public synchronized Rollup getRollup(Path directory, String baseDirectory) {
+        String key = displayName;
+        if (perDirectory) {
+            key = getFormattedDisplayName(displayName, directory, baseDirectory);
+            if (key.endsWith(METRIC_SEPARATOR)) {
+                key = key.substring(0, key.length() - 1);
+            }
+        }
+        Rollup rollup = rollups.get(key);
+        if (rollup == null) {
+            if (rollups.size() < maxRollups || !perDirectory) {
+                rollup = new Rollup(key);
+                rollups.put(key, rollup);
+            } else {
+                if (otherRollup == null) {
+                    LOGGER.warn("{} has more directories than its series cap allows, rolling the remaining ones up " +
+                            "into {}", displayName, OTHER);
+                    otherRollup = new Rollup(displayName + METRIC_SEPARATOR + OTHER);
+                }
+                rollup = otherRollup;
+            }
+        }
+        return rollup;
+    }
+
+    public void add(Rollup rollup, Path path, BasicFileAttributes basicFileAttributes, String baseDirectory) {
+        long size = basicFileAttributes.size();
+        long lastModifiedTime = basicFileAttributes.lastModifiedTime().toMillis();
+        rollup.add(size, Math.max(currentTimeMillis - lastModifiedTime, 0) / 1000);
+        if (topFiles > 0) {
+            addTopFile(path, size, lastModifiedTime, baseDirectory);
+        }
+    }
+
+    private synchronized void addTopFile(Path path, long size, long lastModifiedTime, String baseDirectory) {
+        boolean large = largestFiles.size() < topFiles || size > largestFiles.peek().size;
+        boolean old = oldestFiles.size() < topFiles || lastModifiedTime < oldestFiles.peek().lastModifiedTime;
+        if (!large && !old) {
+            return;
+        }
+        TopFile topFile = new TopFile(getFormattedDisplayName(displayName, path, baseDirectory), size,
+                lastModifiedTime);
+        if (large) {
+            offer(largestFiles, topFile);
+        }
+        if (old) {
+            offer(oldestFiles, topFile);
+        }
+    }
+
+    private void offer(PriorityQueue<TopFile> heap, TopFile topFile) {
+        heap.add(topFile);
+        if (heap.size() > topFiles) {
+            heap.poll();
+        }
+    }
+
+    public synchronized List<Rollup> getRollups() {
+        List<Rollup> rollups = new ArrayList<>(this.rollups.values());
+        if (otherRollup != null) {
+            rollups.add(otherRollup);
+        }
+        return rollups;
+    }
+
+    /*
+     * The metrics of the largest and oldest files, a file that is both being reported once.
+     */
+    public synchronized Map<String, FileMetric> getTopFiles() {
+        Map<String, FileMetric> topFileMetrics = new LinkedHashMap<>();
+        for (TopFile topFile : largestFiles) {
+            topFileMetrics.put(topFile.key, topFile.toFileMetric());
+        }
+        for (TopFile topFile : oldestFiles) {
+            topFileMetrics.put(topFile.key, topFile.toFileMetric());
+        }
+        return topFileMetrics;
+    }
+
+    public static class Rollup {
+        private final String key;
+        private final LogHistogram ages = new LogHistogram();
+        private final LogHistogram sizes = new LogHistogram();
+        private long totalBytes;
+        private long filesUnder1KB;
+        private long filesUnder1MB;
+        private long filesUnder1GB;
+        private long filesOver1GB;
+
+        private Rollup(String key) {
+            this.key = key;
+        }
+
+        private synchronized void add(long size, long ageSeconds) {
+            ages.record(ageSeconds);
+            sizes.record(size);
+            totalBytes += size;
+            if (size < KB) {
+                filesUnder1KB++;
+            } else if (size < MB) {
+                filesUnder1MB++;
+            } else if (size < GB) {
+                filesUnder1GB++;
+            } else {
+                filesOver1GB++;
+            }
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public synchronized long getCount() {
+            return ages.getCount();
+        }
+
+        public synchronized long getTotalBytes() {
+            return totalBytes;
+        }
+
+        public synchronized long getMinAge() {
+            return ages.getMin();
+        }
+
+        public synchronized long getMaxAge() {
+            return ages.getMax();
+        }
+
+        public synchronized long getAgePercentile(double percentile) {
+            return ages.getPercentile(percentile);
+        }
+
+        public synchronized long getSizePercentile(double percentile) {
+            return sizes.getPercentile(percentile);
+        }
+
+        public synchronized long getFilesUnder1KB() {
+            return filesUnder1KB;
+        }
+
+        public synchronized long getFilesUnder1MB() {
+            return filesUnder1MB;
+        }
+
+        public synchronized long getFilesUnder1GB() {
+            return filesUnder1GB;
+        }
+
+        public synchronized long getFilesOver1GB() {
+            return filesOver1GB;
+        }
+    }
+
+    private static class TopFile {
+        private final String key;
+        private final long size;
+        private final long lastModifiedTime;
+
+        private TopFile(String key, long size, long lastModifiedTime) {
+            this.key = key;
+            this.size = size;
+            this.lastModifiedTime = lastModifiedTime;
+        }
+
+        private FileMetric toFileMetric() {
+            FileMetric fileMetric = new FileMetric();
+            fileMetric.setFileSize(size);
+            fileMetric.setLastModifiedTime(lastModifiedTime);
+            fileMetric.setNumberOfFiles(-1);
+            fileMetric.setOldestFileAge(-1);
+            fileMetric.setRecursiveNumberOfFiles(-1);
+            fileMetric.setRecursiveFileSize(-1);
+            fileMetric.setNumberOfLines(-1);
+            fileMetric.setAvailable(true);
+            return fileMetric;
+        }
+    }
+}
@@ -14,83 +14,200 @@ package com.appdynamics.extensions.filewatcher.processors;
 
 import com.appdynamics.extensions.MetricWriteHelper;
 import com.appdynamics.extensions.filewatcher.config.FileMetric;
+import com.appdynamics.extensions.filewatcher.util.WalkStatistics;
 import com.appdynamics.extensions.logging.ExtensionsLoggerFactory;
 import com.appdynamics.extensions.metrics.Metric;
-import com.google.common.collect.Lists;
 import org.slf4j.Logger;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
-import static com.appdynamics.extensions.filewatcher.util.Constants.*;
-
+/*
+ * Publishes the metrics of one task without a lock. The task fills a batch of its own, which is handed over once it
+ * holds batchSize metrics or lingerMillis have passed since its first metric was added. A batch that is neither full nor
+ * old enough at the end of printMetrics is kept for the next call, so that the metrics of several small base directories
+ * go out together; flush() publishes it right away.
+ *
+ * With an emitter, batches are handed to the MetricWriteHelper on the emitter's threads, so that the task goes on
+ * walking, or filling the next batch, while a batch is published. At most MAX_PENDING_BATCHES batches of a task are
+ * waiting to be published at any time; the task waits for one of them to be published before it hands over another.
+ * flush() waits until all batches of the task are published.
+ */
 public class FileMetricsProcessor {
     private static final Logger LOGGER = ExtensionsLoggerFactory.getLogger(FileMetricsProcessor.class);
-    private String metricPrefix;
-    private Map<String, Map<String, ?>> metricsFromConfig;
-    private List<Metric> metrics;
-    private MetricWriteHelper metricWriteHelper;
+    private static final int MAX_PENDING_BATCHES = 4;
+
+    private final MetricEmissionPlan metricEmissionPlan;
+    private final Consumer<List<Metric>> metricPublisher;
+    private final Executor emitter;
+    private final Semaphore pendingBatches = new Semaphore(MAX_PENDING_BATCHES);
+    private final Batch batch = new Batch();
+    private final AtomicInteger largestBatchSize = new AtomicInteger();
 
     public FileMetricsProcessor(String metricPrefix, Map<String, Map<String, ?>> metricsFromConfig,
                                 MetricWriteHelper metricWriteHelper) {
-        this.metricPrefix = metricPrefix.trim();
-        this.metricsFromConfig = metricsFromConfig;
-        this.metricWriteHelper = metricWriteHelper;
-        metrics = Lists.newArrayList();
+        this(new MetricEmissionPlan(metricPrefix, metricsFromConfig), metricWriteHelper);
+    }
+
+    /*
+     * Publishes every batch on the calling thread.
+     */
+    public FileMetricsProcessor(MetricEmissionPlan metricEmissionPlan, MetricWriteHelper metricWriteHelper) {
+        this(metricEmissionPlan, metricWriteHelper, null);
+    }
+
+    public FileMetricsProcessor(MetricEmissionPlan metricEmissionPlan, MetricWriteHelper metricWriteHelper,
+                                Executor emitter) {
+        this(metricEmissionPlan, metrics -> metricWriteHelper.transformAndPrintMetrics(metrics), emitter);
     }
 
-    public synchronized void printMetrics(Map<String, FileMetric> fileMetrics) {
-        List<Metric> metrics = getMetricList(fileMetrics);
-        metricWriteHelper.transformAndPrintMetrics(metrics);
-        metrics.clear();
-        resetFileModifiedFlag(fileMetrics);
+    /*
+     * Hands every batch to the given publisher instead of a MetricWriteHelper.
+     */
+    public FileMetricsProcessor(MetricEmissionPlan metricEmissionPlan, Consumer<List<Metric>> metricPublisher,
+                                Executor emitter) {
+        this.metricEmissionPlan = metricEmissionPlan;
+        this.metricPublisher = metricPublisher;
+        this.emitter = emitter;
     }
 
-    private List<Metric> getMetricList(Map<String, FileMetric> fileMetrics) {
+    public void printMetrics(Map<String, FileMetric> fileMetrics) {
+        if (fileMetrics instanceof ColumnarFileMetricStore) {
+            printMetrics((ColumnarFileMetricStore) fileMetrics);
+            return;
+        }
+        int batchSize = metricEmissionPlan.getBatchSize();
         for (Map.Entry<String, FileMetric> entry : fileMetrics.entrySet()) {
-            if (metricsFromConfig.containsKey(FILE_COUNT)) {
-                addToMetricList(FILE_COUNT, entry.getValue().getNumberOfFiles(), entry.getKey());
-            }
-            if (metricsFromConfig.containsKey(FILE_SIZE)) {
-                addToMetricList(FILE_SIZE, entry.getValue().getFileSize(), entry.getKey());
-            }
-            if (metricsFromConfig.containsKey(OLDEST_FILE_AGE)) {
-                addToMetricList(OLDEST_FILE_AGE, entry.getValue().getOldestFileAge(), entry.getKey());
-            }
-            if (metricsFromConfig.containsKey(NUMBER_OF_LINES)) {
-                addToMetricList(NUMBER_OF_LINES, entry.getValue().getNumberOfLines(), entry.getKey());
-            }
-            if (metricsFromConfig.containsKey(AVAILABLE)) {
-                addToMetricList(AVAILABLE, entry.getValue().getAvailable(), entry.getKey());
-            }
-            if (metricsFromConfig.containsKey(MODIFIED)) {
-                addToMetricList(MODIFIED, entry.getValue().getModified(), entry.getKey());
-            }
-            if (metricsFromConfig.containsKey(LAST_MODIFIED_TIME)) {
-                addToMetricList(LAST_MODIFIED_TIME, entry.getValue().getLastModifiedTime(), entry.getKey());
+            batch.add(metricEmissionPlan, entry.getKey(), entry.getValue());
+            entry.getValue().setModified(false);
+            if (batchSize > 0 && batch.metrics.size() >= batchSize) {
+                publish(batch);
             }
-            if (metricsFromConfig.containsKey(RECURSIVE_FILE_COUNT)) {
-                addToMetricList(RECURSIVE_FILE_COUNT, entry.getValue().getRecursiveNumberOfFiles(), entry.getKey());
+        }
+        publishIfLingered(batch);
+    }
+
+    // Reads every entry into the same FileMetric, so that no object is created per entry
+    private void printMetrics(ColumnarFileMetricStore fileMetrics) {
+        int batchSize = metricEmissionPlan.getBatchSize();
+        FileMetric fileMetric = new FileMetric();
+        for (int id = fileMetrics.nextSeen(0); id >= 0; id = fileMetrics.nextSeen(id + 1)) {
+            batch.add(metricEmissionPlan, fileMetrics.getKey(id), fileMetrics.load(id, fileMetric));
+            if (batchSize > 0 && batch.metrics.size() >= batchSize) {
+                publish(batch);
             }
-            if (metricsFromConfig.containsKey(RECURSIVE_FILE_SIZE)) {
-                addToMetricList(RECURSIVE_FILE_SIZE, entry.getValue().getRecursiveFileSize(), entry.getKey());
+        }
+        fileMetrics.resetModified();
+        publishIfLingered(batch);
+    }
+
+    public void printChangeMetrics(String displayName, ChangeDetector.Changes changes) {
+        batch.markStart();
+        metricEmissionPlan.addChangeMetrics(displayName, changes, batch.metrics);
+        publishIfLingered(batch);
+    }
+
+    public void printAggregates(FileAggregator fileAggregator) {
+        int batchSize = metricEmissionPlan.getBatchSize();
+        for (FileAggregator.Rollup rollup : fileAggregator.getRollups()) {
+            batch.markStart();
+            metricEmissionPlan.addRollupMetrics(rollup, batch.metrics);
+            if (batchSize > 0 && batch.metrics.size() >= batchSize) {
+                publish(batch);
             }
         }
-        return metrics;
+        printMetrics(fileAggregator.getTopFiles());
+    }
+
+    public void printStatisticMetrics(String displayName, WalkStatistics walkStatistics) {
+        batch.markStart();
+        metricEmissionPlan.addStatisticMetrics(displayName, walkStatistics, batch.metrics);
+        publishIfLingered(batch);
     }
 
-    private void addToMetricList(String name, Object value, String path) {
-        Map<String, ?> metricProps = metricsFromConfig.get(name);
-        if (!String.valueOf(value).equals("-1")) {
-            Metric metric = new Metric(name, String.valueOf(value), metricPrefix + METRIC_SEPARATOR +
-                    path + METRIC_SEPARATOR + metricProps.get("alias"), metricProps);
-            metrics.add(metric);
+    /*
+     * The most metrics handed to the MetricWriteHelper at once since the last call.
+     */
+    public int takeLargestBatchSize() {
+        return largestBatchSize.getAndSet(0);
+    }
+
+    /*
+     * Publishes the partly filled batch and waits until every batch handed over so far is published.
+     */
+    public void flush() {
+        publish(batch);
+        if (emitter != null) {
+            pendingBatches.acquireUninterruptibly(MAX_PENDING_BATCHES);
+            pendingBatches.release(MAX_PENDING_BATCHES);
         }
     }
 
-    private void resetFileModifiedFlag(Map<String, FileMetric> fileMetrics) {
-        for (Map.Entry<String, FileMetric> entry : fileMetrics.entrySet()) {
-            entry.getValue().setModified(false);
+    private void publishIfLingered(Batch batch) {
+        if (metricEmissionPlan.getLingerMillis() <= 0 || batch.getAgeMillis() >= metricEmissionPlan.getLingerMillis()) {
+            publish(batch);
+        }
+    }
+
+    private void publish(Batch batch) {
+        if (batch.metrics.isEmpty()) {
+            return;
+        }
+        List<Metric> metrics = batch.take();
+        LOGGER.debug("Publishing a batch of {} metrics", metrics.size());
+        largestBatchSize.accumulateAndGet(metrics.size(), Math::max);
+        if (emitter == null) {
+            metricPublisher.accept(metrics);
+            return;
+        }
+        pendingBatches.acquireUninterruptibly();
+        try {
+            emitter.execute(() -> {
+                try {
+                    metricPublisher.accept(metrics);
+                } finally {
+                    pendingBatches.release();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            pendingBatches.release();
+            metricPublisher.accept(metrics);
+        }
+    }
+
+    private static class Batch {
+        private ArrayList<Metric> metrics = new ArrayList<>();
+        private long startTime;
+
+        private void add(MetricEmissionPlan metricEmissionPlan, String key, FileMetric fileMetric) {
+            markStart();
+            metricEmissionPlan.addMetrics(key, fileMetric, metrics);
+        }
+
+        private void markStart() {
+            if (metrics.isEmpty()) {
+                startTime = System.nanoTime();
+            }
+        }
+
+        private long getAgeMillis() {
+            return metrics.isEmpty() ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        }
+
+        /*
+         * The metrics of the batch, which starts over empty, as the metrics may still be published on another thread.
+         */
+        private List<Metric> take() {
+            List<Metric> taken = metrics;
+            metrics = new ArrayList<>(taken.size());
+            return taken;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,189 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.processors;
+
+import com.appdynamics.extensions.filewatcher.config.FileMetric;
+import com.appdynamics.extensions.filewatcher.config.PathToProcess;
+import com.appdynamics.extensions.filewatcher.util.LineCountCache;
+import com.appdynamics.extensions.filewatcher.util.WalkStatistics;
+import com.appdynamics.extensions.logging.ExtensionsLoggerFactory;
+import org.slf4j.Logger;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Counts the lines of files on a bounded pool of worker threads instead of in the walk, so that a single large file no
+ * longer holds up the walk and every metric behind it. Files wait in a queue ordered by the number of bytes they need
+ * read, smallest first, so small files and files that only had a few lines appended are counted before large new ones.
+ *
+ * Walkers of a base directory submit their files to the batch they are given, and report the last known line
+ * count of each file in the meantime. Once the walk is done, the batch is attached to the metrics of the base directory:
+ * the count of every file that is ready by its deadline replaces the last known one. Counts that miss their deadline
+ * still complete into the line count cache, where the next walk finds them. Files that do not fit into the queue are
+ * left for the next walk as well.
+ */
+public class LineCountPool {
+    private static final Logger LOGGER = ExtensionsLoggerFactory.getLogger(LineCountPool.class);
+
+    private final LineCountCache lineCountCache;
+    private final ThreadPoolExecutor executor;
+    private final int maxQueuedFiles;
+    private final long deadlineMillis;
+    private final AtomicInteger queuedFiles = new AtomicInteger();
+
+    public LineCountPool(int threads, int maxQueuedFiles, long deadlineMillis) {
+        this(CustomFileWalker.getLineCountCache(), threads, maxQueuedFiles, deadlineMillis);
+    }
+
+    LineCountPool(LineCountCache lineCountCache, int threads, int maxQueuedFiles, long deadlineMillis) {
+        this.lineCountCache = lineCountCache;
+        this.maxQueuedFiles = Math.max(maxQueuedFiles, 1);
+        this.deadlineMillis = Math.max(deadlineMillis, 0);
+        threads = Math.max(threads, 1);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "FileWatcher-LineCount");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /*
+     * Starts collecting the files that the walkers of the base directory, which are given the batch, submit. Counts of
+     * a batch that is never attached still complete into the line count cache.
+     */
+    public Batch begin(PathToProcess pathToProcess, String baseDirectory) {
+        return new Batch(pathToProcess.getDisplayName() + "|" + pathToProcess.getPath() + "|" + baseDirectory);
+    }
+
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    public class Batch {
+        private final String key;
+        private final List<Request> requests = new ArrayList<>();
+
+        private Batch(String key) {
+            this.key = key;
+        }
+
+        /*
+         * Queues the file to be counted and returns its last known line count.
+         */
+        long submit(Path file, BasicFileAttributes basicFileAttributes, String metricSuffix,
+                    WalkStatistics walkStatistics) {
+            if (queuedFiles.incrementAndGet() > maxQueuedFiles) {
+                queuedFiles.decrementAndGet();
+                LOGGER.debug("Line count queue is full, {} is counted in a later walk", file);
+            } else {
+                Request request = new Request(file, basicFileAttributes, metricSuffix, walkStatistics,
+                        lineCountCache.getBytesToCount(file, basicFileAttributes));
+                try {
+                    executor.execute(request);
+                    synchronized (this) {
+                        requests.add(request);
+                    }
+                } catch (RejectedExecutionException ex) {
+                    queuedFiles.decrementAndGet();
+                    LOGGER.debug("Line count pool is closed, {} is counted in a later walk", file);
+                }
+            }
+            return lineCountCache.getLastNumberOfLines(file);
+        }
+
+        /*
+         * Sets the line counts that are ready by their deadlines on the metrics of the files.
+         */
+        public void attach(Map<String, FileMetric> fileMetrics) {
+            List<Request> requests;
+            synchronized (this) {
+                requests = new ArrayList<>(this.requests);
+            }
+            int late = 0;
+            for (Request request : requests) {
+                if (!request.await()) {
+                    late++;
+                    continue;
+                }
+                FileMetric fileMetric = fileMetrics.get(request.metricSuffix);
+                if (fileMetric != null && request.numberOfLines >= 0) {
+                    fileMetric.setNumberOfLines(request.numberOfLines);
+                    // Stores that copy the metric when it is put need the count as well
+                    fileMetrics.put(request.metricSuffix, fileMetric);
+                }
+            }
+            if (late > 0) {
+                LOGGER.info("{} of {} line counts of {} missed their deadline, reporting their last known values", late,
+                        requests.size(), key);
+            }
+        }
+    }
+
+    private class Request implements Runnable, Comparable<Request> {
+        private final Path file;
+        private final BasicFileAttributes basicFileAttributes;
+        private final String metricSuffix;
+        private final WalkStatistics walkStatistics;
+        private final long bytesToCount;
+        private final long deadline;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile long numberOfLines = -1;
+
+        private Request(Path file, BasicFileAttributes basicFileAttributes, String metricSuffix,
+                        WalkStatistics walkStatistics, long bytesToCount) {
+            this.file = file;
+            this.basicFileAttributes = basicFileAttributes;
+            this.metricSuffix = metricSuffix;
+            this.walkStatistics = walkStatistics;
+            this.bytesToCount = bytesToCount;
+            this.deadline = System.currentTimeMillis() + deadlineMillis;
+        }
+
+        @Override
+        public void run() {
+            queuedFiles.decrementAndGet();
+            try {
+                numberOfLines = lineCountCache.getNumberOfLines(file, basicFileAttributes, walkStatistics);
+            } finally {
+                done.countDown();
+            }
+        }
+
+        /*
+         * Waits for the count until the deadline, false if it is not ready by then.
+         */
+        private boolean await() {
+            try {
+                return done.await(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return done.getCount() == 0;
+            }
+        }
+
+        @Override
+        public int compareTo(Request other) {
+            int order = Long.compare(bytesToCount, other.bytesToCount);
+            // Recently modified files first among those of the same size
+            return order != 0 ? order : Long.compare(other.basicFileAttributes.lastModifiedTime().toMillis(),
+                    basicFileAttributes.lastModifiedTime().toMillis());
+        }
+    }
+}
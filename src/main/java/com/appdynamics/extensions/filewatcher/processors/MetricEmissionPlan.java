@@ -0,0 +1,347 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.processors;
+
+import com.appdynamics.extensions.filewatcher.config.ContentMatches;
+import com.appdynamics.extensions.filewatcher.config.FileMetric;
+import com.appdynamics.extensions.filewatcher.util.WalkStatistics;
+import com.appdynamics.extensions.metrics.Metric;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.appdynamics.extensions.filewatcher.util.Constants.*;
+
+/*
+ * The metrics configured in config.yml, resolved once per configuration load. Each FileMetric key has the full metric
+ * paths of all configured metrics built the first time it is emitted, so that later cycles only format the values.
+ * Values of -1 are not reported. The change and walk statistics metrics of a configured path are reported under its
+ * display name and the metrics of a rollup under its key. The matching lines of a file are reported under its key and
+ * the alias of the matchingLines metric, one metric per content pattern. The plan also carries the batch size and
+ * linger time metrics are published with.
+ *
+ * The Metric objects themselves are created anew every cycle: MetricWriteHelper applies the delta, multiplier and
+ * convert properties to the instances it is given, so an instance cannot be handed to it twice.
+ */
+public class MetricEmissionPlan {
+    private static final String TRUE = String.valueOf(true);
+    private static final String FALSE = String.valueOf(false);
+
+    private final List<Definition<MetricValue>> definitions = new ArrayList<>();
+    private final List<Definition<ChangeValue>> changeDefinitions = new ArrayList<>();
+    private final List<Definition<AggregateValue>> aggregateDefinitions = new ArrayList<>();
+    private final List<Definition<StatisticValue>> statisticDefinitions = new ArrayList<>();
+    private final Definition<String> matchingLinesDefinition;
+    private final Cache<String, String[]> metricPaths;
+    private final String metricPrefix;
+    private final int batchSize;
+    private final long lingerMillis;
+
+    public MetricEmissionPlan(String metricPrefix, Map<String, Map<String, ?>> metricsFromConfig) {
+        this(metricPrefix, metricsFromConfig, 0, 0);
+    }
+
+    public MetricEmissionPlan(String metricPrefix, Map<String, Map<String, ?>> metricsFromConfig, int batchSize,
+                              long lingerMillis) {
+        this.batchSize = batchSize;
+        this.lingerMillis = lingerMillis;
+        this.metricPrefix = metricPrefix.trim() + METRIC_SEPARATOR;
+        for (MetricValue value : MetricValue.values()) {
+            if (metricsFromConfig != null && metricsFromConfig.containsKey(value.name)) {
+                definitions.add(new Definition<>(value, metricsFromConfig.get(value.name)));
+            }
+        }
+        for (ChangeValue value : ChangeValue.values()) {
+            if (metricsFromConfig != null && metricsFromConfig.containsKey(value.name)) {
+                changeDefinitions.add(new Definition<>(value, metricsFromConfig.get(value.name)));
+            }
+        }
+        for (AggregateValue value : AggregateValue.values()) {
+            if (metricsFromConfig != null && metricsFromConfig.containsKey(value.name)) {
+                aggregateDefinitions.add(new Definition<>(value, metricsFromConfig.get(value.name)));
+            }
+        }
+        for (StatisticValue value : StatisticValue.values()) {
+            if (metricsFromConfig != null && metricsFromConfig.containsKey(value.name)) {
+                statisticDefinitions.add(new Definition<>(value, metricsFromConfig.get(value.name)));
+            }
+        }
+        this.matchingLinesDefinition = metricsFromConfig != null && metricsFromConfig.containsKey(MATCHING_LINES) ?
+                new Definition<>(MATCHING_LINES, metricsFromConfig.get(MATCHING_LINES)) : null;
+        this.metricPaths = CacheBuilder.newBuilder().expireAfterAccess(1, TimeUnit.HOURS).build();
+    }
+
+    public int getMetricsPerEntry() {
+        return definitions.size();
+    }
+
+    public int getMetricsPerRollup() {
+        return aggregateDefinitions.size();
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public long getLingerMillis() {
+        return lingerMillis;
+    }
+
+    public void addMetrics(String key, FileMetric fileMetric, List<Metric> metrics) {
+        String[] paths = getMetricPaths(key);
+        for (int i = 0; i < definitions.size(); i++) {
+            Definition<MetricValue> definition = definitions.get(i);
+            String value = definition.value.format(fileMetric);
+            if (value != null) {
+                metrics.add(new Metric(definition.value.name, value, paths[i], definition.metricProps));
+            }
+        }
+        ContentMatches contentMatches = fileMetric.getContentMatches();
+        if (contentMatches != null && matchingLinesDefinition != null) {
+            String keyPrefix = metricPrefix + key + METRIC_SEPARATOR + matchingLinesDefinition.alias + METRIC_SEPARATOR;
+            for (int i = 0; i < contentMatches.size(); i++) {
+                metrics.add(new Metric(MATCHING_LINES, Long.toString(contentMatches.getCount(i)),
+                        keyPrefix + contentMatches.getName(i), matchingLinesDefinition.metricProps));
+            }
+        }
+    }
+
+    public void addChangeMetrics(String displayName, ChangeDetector.Changes changes, List<Metric> metrics) {
+        for (Definition<ChangeValue> definition : changeDefinitions) {
+            metrics.add(new Metric(definition.value.name, Long.toString(definition.value.get(changes)),
+                    metricPrefix + displayName + METRIC_SEPARATOR + definition.alias, definition.metricProps));
+        }
+    }
+
+    public void addStatisticMetrics(String displayName, WalkStatistics walkStatistics, List<Metric> metrics) {
+        for (Definition<StatisticValue> definition : statisticDefinitions) {
+            String value = formatValue(definition.value.get(walkStatistics));
+            if (value != null) {
+                metrics.add(new Metric(definition.value.name, value,
+                        metricPrefix + displayName + METRIC_SEPARATOR + definition.alias, definition.metricProps));
+            }
+        }
+    }
+
+    public void addRollupMetrics(FileAggregator.Rollup rollup, List<Metric> metrics) {
+        String keyPrefix = metricPrefix + rollup.getKey() + METRIC_SEPARATOR;
+        for (Definition<AggregateValue> definition : aggregateDefinitions) {
+            String value = formatValue(definition.value.get(rollup));
+            if (value != null) {
+                metrics.add(new Metric(definition.value.name, value, keyPrefix + definition.alias,
+                        definition.metricProps));
+            }
+        }
+    }
+
+    private String[] getMetricPaths(String key) {
+        String[] paths = metricPaths.getIfPresent(key);
+        if (paths == null) {
+            paths = new String[definitions.size()];
+            String keyPrefix = metricPrefix + key + METRIC_SEPARATOR;
+            for (int i = 0; i < paths.length; i++) {
+                paths[i] = keyPrefix + definitions.get(i).alias;
+            }
+            metricPaths.put(key, paths);
+        }
+        return paths;
+    }
+
+    private static String formatValue(long value) {
+        return value != -1 ? Long.toString(value) : null;
+    }
+
+    private static String formatValue(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
+    private static class Definition<V> {
+        private final V value;
+        private final Map<String, ?> metricProps;
+        private final Object alias;
+
+        private Definition(V value, Map<String, ?> metricProps) {
+            this.value = value;
+            this.metricProps = metricProps;
+            this.alias = metricProps != null ? metricProps.get("alias") : null;
+        }
+    }
+
+    private enum ChangeValue {
+        FILES_CREATED_VALUE(FILES_CREATED) {
+            long get(ChangeDetector.Changes changes) { return changes.getCreated(); }
+        },
+        FILES_DELETED_VALUE(FILES_DELETED) {
+            long get(ChangeDetector.Changes changes) { return changes.getDeleted(); }
+        },
+        FILES_ROTATED_VALUE(FILES_ROTATED) {
+            long get(ChangeDetector.Changes changes) { return changes.getRotated(); }
+        },
+        BYTES_APPENDED_VALUE(BYTES_APPENDED) {
+            long get(ChangeDetector.Changes changes) { return changes.getBytesAppended(); }
+        };
+
+        private final String name;
+
+        ChangeValue(String name) {
+            this.name = name;
+        }
+
+        abstract long get(ChangeDetector.Changes changes);
+    }
+
+    private enum StatisticValue {
+        WALK_DURATION_VALUE(WALK_DURATION) {
+            long get(WalkStatistics walkStatistics) { return walkStatistics.getWalkDurationMillis(); }
+        },
+        ENTRIES_VISITED_VALUE(ENTRIES_VISITED) {
+            long get(WalkStatistics walkStatistics) { return walkStatistics.getEntriesVisited(); }
+        },
+        ENTRIES_MATCHED_VALUE(ENTRIES_MATCHED) {
+            long get(WalkStatistics walkStatistics) { return walkStatistics.getEntriesMatched(); }
+        },
+        STAT_CALLS_VALUE(STAT_CALLS) {
+            long get(WalkStatistics walkStatistics) { return walkStatistics.getStatCalls(); }
+        },
+        LINE_COUNT_BYTES_READ_VALUE(LINE_COUNT_BYTES_READ) {
+            long get(WalkStatistics walkStatistics) { return walkStatistics.getLineCountBytesRead(); }
+        },
+        LINE_COUNT_CACHE_HIT_RATIO_VALUE(LINE_COUNT_CACHE_HIT_RATIO) {
+            long get(WalkStatistics walkStatistics) { return walkStatistics.getLineCountCacheHitRatio(); }
+        },
+        EMISSION_LATENCY_VALUE(EMISSION_LATENCY) {
+            long get(WalkStatistics walkStatistics) { return walkStatistics.getEmissionLatencyMillis(); }
+        },
+        EMISSION_QUEUE_DEPTH_VALUE(EMISSION_QUEUE_DEPTH) {
+            long get(WalkStatistics walkStatistics) { return walkStatistics.getEmissionQueueDepth(); }
+        };
+
+        private final String name;
+
+        StatisticValue(String name) {
+            this.name = name;
+        }
+
+        abstract long get(WalkStatistics walkStatistics);
+    }
+
+    private enum AggregateValue {
+        MATCHED_FILE_COUNT_VALUE(MATCHED_FILE_COUNT) {
+            long get(FileAggregator.Rollup rollup) { return rollup.getCount(); }
+        },
+        MATCHED_FILE_SIZE_VALUE(MATCHED_FILE_SIZE) {
+            long get(FileAggregator.Rollup rollup) { return rollup.getTotalBytes(); }
+        },
+        MIN_FILE_AGE_VALUE(MIN_FILE_AGE) {
+            long get(FileAggregator.Rollup rollup) { return rollup.getMinAge(); }
+        },
+        MAX_FILE_AGE_VALUE(MAX_FILE_AGE) {
+            long get(FileAggregator.Rollup rollup) { return rollup.getMaxAge(); }
+        },
+        MEDIAN_FILE_AGE_VALUE(MEDIAN_FILE_AGE) {
+            long get(FileAggregator.Rollup rollup) { return rollup.getAgePercentile(50); }
+        },
+        P90_FILE_AGE_VALUE(P90_FILE_AGE) {
+            long get(FileAggregator.Rollup rollup) { return rollup.getAgePercentile(90); }
+        },
+        P99_FILE_AGE_VALUE(P99_FILE_AGE) {
+            long get(FileAggregator.Rollup rollup) { return rollup.getAgePercentile(99); }
+        },
+        MEDIAN_FILE_SIZE_VALUE(MEDIAN_FILE_SIZE) {
+            long get(FileAggregator.Rollup rollup) { return rollup.getSizePercentile(50); }
+        },
+        P90_FILE_SIZE_VALUE(P90_FILE_SIZE) {
+            long get(FileAggregator.Rollup rollup) { return rollup.getSizePercentile(90); }
+        },
+        P99_FILE_SIZE_VALUE(P99_FILE_SIZE) {
+            long get(FileAggregator.Rollup rollup) { return rollup.getSizePercentile(99); }
+        },
+        FILES_UNDER_1KB_VALUE(FILES_UNDER_1KB) {
+            long get(FileAggregator.Rollup rollup) { return rollup.getFilesUnder1KB(); }
+        },
+        FILES_UNDER_1MB_VALUE(FILES_UNDER_1MB) {
+            long get(FileAggregator.Rollup rollup) { return rollup.getFilesUnder1MB(); }
+        },
+        FILES_UNDER_1GB_VALUE(FILES_UNDER_1GB) {
+            long get(FileAggregator.Rollup rollup) { return rollup.getFilesUnder1GB(); }
+        },
+        FILES_OVER_1GB_VALUE(FILES_OVER_1GB) {
+            long get(FileAggregator.Rollup rollup) { return rollup.getFilesOver1GB(); }
+        };
+
+        private final String name;
+
+        AggregateValue(String name) {
+            this.name = name;
+        }
+
+        abstract long get(FileAggregator.Rollup rollup);
+    }
+
+    // In the order the metrics have always been reported in
+    private enum MetricValue {
+        FILE_COUNT_VALUE(FILE_COUNT) {
+            String format(FileMetric fileMetric) { return formatValue(fileMetric.getNumberOfFiles()); }
+        },
+        FILE_SIZE_VALUE(FILE_SIZE) {
+            String format(FileMetric fileMetric) { return formatValue(fileMetric.getFileSize()); }
+        },
+        OLDEST_FILE_AGE_VALUE(OLDEST_FILE_AGE) {
+            String format(FileMetric fileMetric) { return formatValue(fileMetric.getOldestFileAge()); }
+        },
+        NUMBER_OF_LINES_VALUE(NUMBER_OF_LINES) {
+            String format(FileMetric fileMetric) { return formatValue(fileMetric.getNumberOfLines()); }
+        },
+        AVAILABLE_VALUE(AVAILABLE) {
+            String format(FileMetric fileMetric) { return formatValue(fileMetric.getAvailable()); }
+        },
+        MODIFIED_VALUE(MODIFIED) {
+            String format(FileMetric fileMetric) { return formatValue(fileMetric.getModified()); }
+        },
+        LAST_MODIFIED_TIME_VALUE(LAST_MODIFIED_TIME) {
+            String format(FileMetric fileMetric) { return formatValue(fileMetric.getLastModifiedTime()); }
+        },
+        RECURSIVE_FILE_COUNT_VALUE(RECURSIVE_FILE_COUNT) {
+            String format(FileMetric fileMetric) { return formatValue(fileMetric.getRecursiveNumberOfFiles()); }
+        },
+        RECURSIVE_FILE_SIZE_VALUE(RECURSIVE_FILE_SIZE) {
+            String format(FileMetric fileMetric) { return formatValue(fileMetric.getRecursiveFileSize()); }
+        },
+        MEDIAN_FILE_AGE_VALUE(MEDIAN_FILE_AGE) {
+            String format(FileMetric fileMetric) { return formatValue(fileMetric.getMedianFileAge()); }
+        },
+        P90_FILE_AGE_VALUE(P90_FILE_AGE) {
+            String format(FileMetric fileMetric) { return formatValue(fileMetric.getP90FileAge()); }
+        },
+        P99_FILE_AGE_VALUE(P99_FILE_AGE) {
+            String format(FileMetric fileMetric) { return formatValue(fileMetric.getP99FileAge()); }
+        },
+        MEDIAN_FILE_SIZE_VALUE(MEDIAN_FILE_SIZE) {
+            String format(FileMetric fileMetric) { return formatValue(fileMetric.getMedianFileSize()); }
+        },
+        P90_FILE_SIZE_VALUE(P90_FILE_SIZE) {
+            String format(FileMetric fileMetric) { return formatValue(fileMetric.getP90FileSize()); }
+        },
+        P99_FILE_SIZE_VALUE(P99_FILE_SIZE) {
+            String format(FileMetric fileMetric) { return formatValue(fileMetric.getP99FileSize()); }
+        };
+
+        private final String name;
+
+        MetricValue(String name) {
+            this.name = name;
+        }
+
+        abstract String format(FileMetric fileMetric);
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.processors;
+
+import com.appdynamics.extensions.filewatcher.config.FileMetric;
+import com.appdynamics.extensions.filewatcher.config.PathToProcess;
+import com.appdynamics.extensions.filewatcher.helpers.GlobPathMatcher;
+import com.appdynamics.extensions.logging.ExtensionsLoggerFactory;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static com.appdynamics.extensions.filewatcher.util.FileWatcherUtil.readAttributes;
+
+/*
+ * Walks a tree with one fork/join task per directory, so that the listing and stat calls of sibling directories
+ * overlap. Every task visits its directory with its own CustomFileWalker, in the same order Files.walkFileTree would,
+ * and the counts of completed subdirectories are merged into their parent when the parent task joins them. Each task
+ * is told whether a directory above it is counted recursively, which its walker cannot see on its own stack. The
+ * resulting metrics are the same as those of a sequential walk.
+ */
+public class ParallelFileWalker {
+    private static final Logger LOGGER = ExtensionsLoggerFactory.getLogger(ParallelFileWalker.class);
+    private static final Map<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+
+    private final String baseDirectory;
+    private final GlobPathMatcher globPathMatcher;
+    private final PathToProcess pathToProcess;
+    private final ChangeDetector changeDetector;
+    private final FileAggregator fileAggregator;
+    private final LineCountPool.Batch lineCountBatch;
+    private final Map<String, Boolean> directoryTreeChecks = new ConcurrentHashMap<>();
+
+    public ParallelFileWalker(String baseDirectory, GlobPathMatcher globPathMatcher, PathToProcess pathToProcess,
+                              ChangeDetector changeDetector, FileAggregator fileAggregator) {
+        this(baseDirectory, globPathMatcher, pathToProcess, changeDetector, fileAggregator, null);
+    }
+
+    public ParallelFileWalker(String baseDirectory, GlobPathMatcher globPathMatcher, PathToProcess pathToProcess,
+                              ChangeDetector changeDetector, FileAggregator fileAggregator,
+                              LineCountPool.Batch lineCountBatch) {
+        this.baseDirectory = baseDirectory;
+        this.globPathMatcher = globPathMatcher;
+        this.pathToProcess = pathToProcess;
+        this.changeDetector = changeDetector;
+        this.fileAggregator = fileAggregator;
+        this.lineCountBatch = lineCountBatch;
+    }
+
+    public void walk(Path walkRoot, int maxDepth, Map<String, FileMetric> fileMetrics) throws IOException {
+        Map<String, FileMetric> collectedMetrics = new ConcurrentHashMap<>();
+        CustomFileWalker rootWalker = newWalker(collectedMetrics);
+        BasicFileAttributes basicFileAttributes;
+        try {
+            basicFileAttributes = readAttributes(walkRoot);
+        } catch (IOException ex) {
+            rootWalker.visitFileFailed(walkRoot, ex);
+            fileMetrics.putAll(collectedMetrics);
+            return;
+        }
+        if (!basicFileAttributes.isDirectory() || maxDepth == 0) {
+            rootWalker.visitFile(walkRoot, basicFileAttributes);
+        } else {
+            int parallelism = pathToProcess.getWalkParallelism();
+            LOGGER.debug("Walking {} with a parallelism of {}", walkRoot, parallelism);
+            try {
+                getPool(parallelism).invoke(new DirectoryTask(walkRoot, basicFileAttributes, 0, maxDepth, false,
+                        collectedMetrics));
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+        }
+        fileMetrics.putAll(collectedMetrics);
+    }
+
+    private CustomFileWalker newWalker(Map<String, FileMetric> fileMetrics) {
+        CustomFileWalker walker = new CustomFileWalker(baseDirectory, globPathMatcher, pathToProcess, fileMetrics,
+                changeDetector, fileAggregator, lineCountBatch);
+        walker.setDirectoryTreeChecks(directoryTreeChecks);
+        return walker;
+    }
+
+    private static ForkJoinPool getPool(int parallelism) {
+        return POOLS.computeIfAbsent(parallelism, ForkJoinPool::new);
+    }
+
+    private class DirectoryTask extends RecursiveTask<DirectoryAggregate> {
+        private final Path directory;
+        private final BasicFileAttributes basicFileAttributes;
+        private final int depth;
+        private final int maxDepth;
+        private final boolean insideRecursivelyCountedDirectory;
+        private final Map<String, FileMetric> fileMetrics;
+
+        private DirectoryTask(Path directory, BasicFileAttributes basicFileAttributes, int depth, int maxDepth,
+                              boolean insideRecursivelyCountedDirectory, Map<String, FileMetric> fileMetrics) {
+            this.directory = directory;
+            this.basicFileAttributes = basicFileAttributes;
+            this.depth = depth;
+            this.maxDepth = maxDepth;
+            this.insideRecursivelyCountedDirectory = insideRecursivelyCountedDirectory;
+            this.fileMetrics = fileMetrics;
+        }
+
+        @Override
+        protected DirectoryAggregate compute() {
+            CustomFileWalker walker = newWalker(fileMetrics);
+            walker.setInsideRecursivelyCountedDirectory(insideRecursivelyCountedDirectory);
+            if (walker.preVisitDirectory(directory, basicFileAttributes) != FileVisitResult.CONTINUE) {
+                return walker.getLastClosedDirectory();
+            }
+            DirectoryAggregate aggregate = walker.getOpenDirectory();
+            boolean recursivelyCounted = walker.isRecursivelyCounted();
+            List<DirectoryTask> subdirectories = new ArrayList<>();
+            IOException listingException = null;
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    BasicFileAttributes entryAttributes;
+                    try {
+                        entryAttributes = readAttributes(entry);
+                    } catch (IOException ex) {
+                        walker.visitFileFailed(entry, ex);
+                        continue;
+                    }
+                    if (entryAttributes.isDirectory() && depth + 1 < maxDepth) {
+                        DirectoryTask subdirectory = new DirectoryTask(entry, entryAttributes, depth + 1, maxDepth,
+                                recursivelyCounted, fileMetrics);
+                        subdirectory.fork();
+                        subdirectories.add(subdirectory);
+                    } else {
+                        visitFile(walker, entry, entryAttributes);
+                    }
+                }
+            } catch (DirectoryIteratorException ex) {
+                listingException = ex.getCause();
+            } catch (IOException ex) {
+                listingException = ex;
+            }
+            for (DirectoryTask subdirectory : subdirectories) {
+                DirectoryAggregate child = subdirectory.join();
+                if (child != null) {
+                    walker.mergeChildDirectory(child);
+                }
+            }
+            walker.postVisitDirectory(directory, listingException);
+            return aggregate;
+        }
+
+        private void visitFile(CustomFileWalker walker, Path entry, BasicFileAttributes entryAttributes) {
+            try {
+                walker.visitFile(entry, entryAttributes);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.processors;
+
+import com.appdynamics.extensions.logging.ExtensionsLoggerFactory;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.function.Function;
+
+/*
+ * Walks a tree once for several walkers whose walk roots lie inside it. Every entry is handed to the walkers whose root
+ * it is under and whose walk depth it is within, in the order Files.walkFileTree would have visited it for each of them
+ * alone: a directory at exactly the walk depth of a walker is visited as a file, and a subtree a walker skipped is not
+ * handed to it again. The traversal skips a subtree itself once no walker needs it, so the result for every walker is
+ * the same as that of its own walk while every directory is listed and every entry is read only once. The walk
+ * statistics count the read of an entry for the first walker it is handed to only.
+ */
+public class SharedTraversal implements FileVisitor<Path> {
+    private static final Logger LOGGER = ExtensionsLoggerFactory.getLogger(SharedTraversal.class);
+
+    private final Path root;
+    private final List<Member> members = new ArrayList<>();
+    private int maxDepth;
+
+    public SharedTraversal(Path root) {
+        this.root = root;
+    }
+
+    /*
+     * Groups targets whose walk roots are nested: every group is headed by the outermost walk root of its targets,
+     * which all other walk roots of the group are under.
+     */
+    public static <T> List<List<T>> plan(Collection<T> targets, Function<T, Path> walkRoots) {
+        List<T> sortedTargets = new ArrayList<>(targets);
+        sortedTargets.sort(Comparator.comparingInt((T target) -> walkRoots.apply(target).getNameCount())
+                .thenComparing(target -> walkRoots.apply(target).toString()));
+        Map<Path, List<T>> groups = new LinkedHashMap<>();
+        for (T target : sortedTargets) {
+            Path walkRoot = walkRoots.apply(target);
+            List<T> group = null;
+            for (Map.Entry<Path, List<T>> entry : groups.entrySet()) {
+                if (walkRoot.startsWith(entry.getKey())) {
+                    group = entry.getValue();
+                    break;
+                }
+            }
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(walkRoot, group);
+            }
+            group.add(target);
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    public void add(Path walkRoot, int walkDepth, CustomFileWalker walker) {
+        if (!walkRoot.startsWith(root)) {
+            throw new IllegalArgumentException(walkRoot + " is not under the root " + root + " of the traversal");
+        }
+        Member member = new Member(walkRoot, walkDepth, walker);
+        members.add(member);
+        int offset = walkRoot.getNameCount() - root.getNameCount();
+        maxDepth = Math.max(maxDepth, walkDepth > Integer.MAX_VALUE - offset ? Integer.MAX_VALUE : offset + walkDepth);
+    }
+
+    public void walk() throws IOException {
+        LOGGER.debug("Walking {} once for {} walkers to a depth of {}", root, members.size(), maxDepth);
+        Files.walkFileTree(root, new HashSet<>(), maxDepth, this);
+        for (Member member : members) {
+            if (!member.visited) {
+                // A walk of its own would have failed on its root
+                member.walker.visitFileFailed(member.walkRoot, new NoSuchFileException(member.walkRoot.toString()));
+            }
+        }
+    }
+
+    @Override
+    public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes basicFileAttributes)
+            throws IOException {
+        boolean needed = false;
+        boolean shared = false;
+        for (Member member : members) {
+            int depth = member.getDepth(directory);
+            if (depth < 0) {
+                // Walkers whose root is further down still need the traversal to enter this directory
+                needed |= member.walkRoot.startsWith(directory);
+                continue;
+            }
+            member.walker.setEntryShared(shared);
+            shared = true;
+            if (depth == member.walkDepth) {
+                member.walker.visitFile(directory, basicFileAttributes);
+            } else if (member.walker.preVisitDirectory(directory, basicFileAttributes) == FileVisitResult.CONTINUE) {
+                needed = true;
+            } else {
+                member.skippedDirectory = directory;
+            }
+        }
+        return needed ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+    }
+
+    @Override
+    public FileVisitResult visitFile(Path file, BasicFileAttributes basicFileAttributes) throws IOException {
+        boolean shared = false;
+        for (Member member : members) {
+            if (member.getDepth(file) >= 0) {
+                member.walker.setEntryShared(shared);
+                shared = true;
+                member.walker.visitFile(file, basicFileAttributes);
+            }
+        }
+        return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult visitFileFailed(Path file, IOException exc) {
+        for (Member member : members) {
+            if (member.getDepth(file) >= 0) {
+                member.walker.visitFileFailed(file, exc);
+            }
+        }
+        return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult postVisitDirectory(Path directory, IOException exc) {
+        for (Member member : members) {
+            int depth = member.getDepth(directory);
+            if (depth >= 0 && depth < member.walkDepth) {
+                member.walker.postVisitDirectory(directory, exc);
+            }
+        }
+        return FileVisitResult.CONTINUE;
+    }
+
+    private static class Member {
+        private final Path walkRoot;
+        private final int walkDepth;
+        private final CustomFileWalker walker;
+        private Path skippedDirectory;
+        private boolean visited;
+
+        private Member(Path walkRoot, int walkDepth, CustomFileWalker walker) {
+            this.walkRoot = walkRoot;
+            this.walkDepth = walkDepth;
+            this.walker = walker;
+        }
+
+        /*
+         * The depth of the path below the walk root of this walker, or -1 if the walker does not visit it.
+         */
+        private int getDepth(Path path) {
+            if (!path.startsWith(walkRoot) || (skippedDirectory != null && path.startsWith(skippedDirectory))) {
+                return -1;
+            }
+            int depth = path.getNameCount() - walkRoot.getNameCount();
+            visited = true;
+            return depth <= walkDepth ? depth : -1;
+        }
+    }
+}
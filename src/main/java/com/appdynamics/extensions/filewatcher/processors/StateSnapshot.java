@@ -0,0 +1,146 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.processors;
+
+import com.appdynamics.extensions.logging.ExtensionsLoggerFactory;
+import org.slf4j.Logger;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * Keeps the state that makes a cycle incremental on disk, so that the first cycle after the machine agent restarts
+ * still reports modified entries and changes and counts only appended lines instead of starting over: how far every
+ * file has been line counted, and the last observation of every path by the change detector of each base directory.
+ *
+ * The file is binary: a header, the line counts, then the state of each change detector under the key of its base
+ * directory. It is read the first time a change detector is restored, and the state of a change detector is only
+ * decoded once its base directory is used. Every write goes to a temporary file that is then moved over the previous
+ * one, so that a crash while writing leaves the previous snapshot in place. States that were read but not restored yet
+ * are written back as they are, as long as their base directory is still configured.
+ */
+public class StateSnapshot {
+    private static final Logger LOGGER = ExtensionsLoggerFactory.getLogger(StateSnapshot.class);
+    private static final int MAGIC = 0x46575353;
+    private static final int VERSION = 1;
+
+    private final Path file;
+    private boolean loaded;
+    private final Map<String, byte[]> changeDetectorStates = new HashMap<>();
+
+    public StateSnapshot(Path file) {
+        this.file = file;
+    }
+
+    public synchronized void restore(String key, ChangeDetector changeDetector) {
+        load();
+        byte[] state = changeDetectorStates.remove(key);
+        if (state == null) {
+            return;
+        }
+        try {
+            changeDetector.readFrom(new DataInputStream(new ByteArrayInputStream(state)));
+            LOGGER.debug("Restored {} paths of {} from {}", changeDetector.size(), key, file);
+        } catch (IOException ex) {
+            LOGGER.warn("Could not restore the state of {} from {}", key, file, ex);
+        }
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!Files.isRegularFile(file)) {
+            LOGGER.info("No state snapshot at {}, the first cycle starts from a full walk", file);
+            return;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                LOGGER.warn("{} is not a state snapshot of this version, ignoring it", file);
+                return;
+            }
+            CustomFileWalker.getLineCountCache().readFrom(input);
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = input.readUTF();
+                byte[] state = new byte[input.readInt()];
+                input.readFully(state);
+                changeDetectorStates.put(key, state);
+            }
+            LOGGER.info("Loaded the state snapshot {} with {} base directories", file, count);
+        } catch (IOException ex) {
+            LOGGER.warn("Could not read the state snapshot {}, the first cycle starts from a full walk", file, ex);
+            changeDetectorStates.clear();
+        }
+    }
+
+    /*
+     * Writes the line counts and the given change detectors, keyed by base directory.
+     */
+    public void write(Map<String, ChangeDetector> changeDetectors) throws IOException {
+        write(changeDetectors, null);
+    }
+
+    /*
+     * Same as write(changeDetectors), but drops the states not restored yet whose keys are not among configuredKeys,
+     * as no base directory will ever restore them.
+     */
+    public synchronized void write(Map<String, ChangeDetector> changeDetectors, Set<String> configuredKeys)
+            throws IOException {
+        load();
+        if (configuredKeys != null) {
+            Iterator<String> keys = changeDetectorStates.keySet().iterator();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                if (!configuredKeys.contains(key)) {
+                    LOGGER.debug("Dropping the state of {}, which is no longer configured", key);
+                    keys.remove();
+                }
+            }
+        }
+        Map<String, byte[]> states = new HashMap<>(changeDetectorStates);
+        for (Map.Entry<String, ChangeDetector> entry : changeDetectors.entrySet()) {
+            ByteArrayOutputStream state = new ByteArrayOutputStream();
+            DataOutputStream output = new DataOutputStream(state);
+            entry.getValue().writeTo(output);
+            output.flush();
+            states.put(entry.getKey(), state.toByteArray());
+        }
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        if (file.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        }
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(temporaryFile)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            CustomFileWalker.getLineCountCache().writeTo(output);
+            output.writeInt(states.size());
+            for (Map.Entry<String, byte[]> entry : states.entrySet()) {
+                output.writeUTF(entry.getKey());
+                output.writeInt(entry.getValue().length);
+                output.write(entry.getValue());
+            }
+        }
+        try {
+            Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        LOGGER.debug("Wrote the state of {} base directories to {}", states.size(), file);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.processors;
+
+import com.appdynamics.extensions.logging.ExtensionsLoggerFactory;
+import org.slf4j.Logger;
+
+import java.io.Closeable;
+import java.lang.reflect.Method;
+import java.util.concurrent.*;
+
+/*
+ * Runs walker tasks on virtual threads (Java 21+) and limits how many blocking file system operations run at the same
+ * time across all paths. Waiting for other tasks does not hold a permit, only the file system calls themselves do, so
+ * nested tasks can never starve each other. The extension is built for Java 8, so the executor is looked up
+ * reflectively.
+ */
+public class VirtualThreadExecutor implements Closeable {
+    private static final Logger LOGGER = ExtensionsLoggerFactory.getLogger(VirtualThreadExecutor.class);
+
+    private final ExecutorService executorService;
+    private final Semaphore permits;
+
+    private VirtualThreadExecutor(ExecutorService executorService, int maxConcurrentOperations) {
+        this.executorService = executorService;
+        this.permits = new Semaphore(maxConcurrentOperations);
+    }
+
+    /*
+     * Returns null if the running JVM has no virtual threads.
+     */
+    public static VirtualThreadExecutor create(int maxConcurrentOperations) {
+        try {
+            Method newVirtualThreadPerTaskExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            ExecutorService executorService = (ExecutorService) newVirtualThreadPerTaskExecutor.invoke(null);
+            LOGGER.info("Walking paths on virtual threads with at most {} concurrent file operations",
+                    maxConcurrentOperations);
+            return new VirtualThreadExecutor(executorService, Math.max(1, maxConcurrentOperations));
+        } catch (NoSuchMethodException ex) {
+            LOGGER.warn("Virtual threads require Java 21 or later, running on Java {}. Paths are walked as configured " +
+                    "by walkParallelism.", System.getProperty("java.version"));
+        } catch (ReflectiveOperationException ex) {
+            LOGGER.warn("Unable to create a virtual thread executor. Paths are walked as configured by " +
+                    "walkParallelism.", ex);
+        }
+        return null;
+    }
+
+    <T> Future<T> submit(Callable<T> task) {
+        return executorService.submit(task);
+    }
+
+    /*
+     * Runs a blocking file system operation once a permit is available.
+     */
+    <T> T runLimited(Callable<T> operation) throws Exception {
+        permits.acquire();
+        try {
+            return operation.call();
+        } finally {
+            permits.release();
+        }
+    }
+
+    @Override
+    public void close() {
+        executorService.shutdown();
+    }
+}
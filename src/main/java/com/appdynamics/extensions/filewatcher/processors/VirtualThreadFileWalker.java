@@ -0,0 +1,217 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.processors;
+
+import com.appdynamics.extensions.filewatcher.config.FileMetric;
+import com.appdynamics.extensions.filewatcher.config.PathToProcess;
+import com.appdynamics.extensions.filewatcher.helpers.GlobPathMatcher;
+import com.appdynamics.extensions.filewatcher.util.ContentMatchCache;
+import com.appdynamics.extensions.filewatcher.util.WalkStatistics;
+import com.appdynamics.extensions.logging.ExtensionsLoggerFactory;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static com.appdynamics.extensions.filewatcher.util.FileWatcherUtil.isHidden;
+import static com.appdynamics.extensions.filewatcher.util.FileWatcherUtil.readAttributes;
+
+/*
+ * Walks a tree with one virtual thread per directory and one per counted file. Every directory is visited with its own
+ * CustomFileWalker like in ParallelFileWalker, which is told whether a directory above it is counted recursively. The
+ * lines and content matches of the matching files of a directory are counted concurrently into their caches before the
+ * directory's files are visited, so visiting them only reads the caches. Every file system call, and the visit of each
+ * file, holds a permit of the global limiter of the VirtualThreadExecutor only while it runs.
+ */
+public class VirtualThreadFileWalker {
+    private static final Logger LOGGER = ExtensionsLoggerFactory.getLogger(VirtualThreadFileWalker.class);
+
+    private final String baseDirectory;
+    private final GlobPathMatcher globPathMatcher;
+    private final PathToProcess pathToProcess;
+    private final VirtualThreadExecutor virtualThreadExecutor;
+    private final ChangeDetector changeDetector;
+    private final FileAggregator fileAggregator;
+    private final WalkStatistics walkStatistics;
+    private final ContentMatchCache contentMatchCache;
+    private final Map<String, Boolean> directoryTreeChecks = new ConcurrentHashMap<>();
+
+    public VirtualThreadFileWalker(String baseDirectory, GlobPathMatcher globPathMatcher, PathToProcess pathToProcess,
+                                   VirtualThreadExecutor virtualThreadExecutor, ChangeDetector changeDetector,
+                                   FileAggregator fileAggregator) {
+        this.baseDirectory = baseDirectory;
+        this.globPathMatcher = globPathMatcher;
+        this.pathToProcess = pathToProcess;
+        this.virtualThreadExecutor = virtualThreadExecutor;
+        this.changeDetector = changeDetector;
+        this.fileAggregator = fileAggregator;
+        this.walkStatistics = WalkStatistics.get(pathToProcess);
+        this.contentMatchCache = ContentMatchCache.get(pathToProcess);
+    }
+
+    public void walk(Path walkRoot, int maxDepth, Map<String, FileMetric> fileMetrics) throws IOException {
+        Map<String, FileMetric> collectedMetrics = new ConcurrentHashMap<>();
+        CustomFileWalker rootWalker = newWalker(collectedMetrics);
+        BasicFileAttributes basicFileAttributes;
+        try {
+            basicFileAttributes = readAttributes(walkRoot);
+        } catch (IOException ex) {
+            rootWalker.visitFileFailed(walkRoot, ex);
+            fileMetrics.putAll(collectedMetrics);
+            return;
+        }
+        if (!basicFileAttributes.isDirectory() || maxDepth == 0) {
+            rootWalker.visitFile(walkRoot, basicFileAttributes);
+        } else {
+            LOGGER.debug("Walking {} on virtual threads", walkRoot);
+            try {
+                visitDirectory(walkRoot, basicFileAttributes, 0, maxDepth, false, collectedMetrics);
+            } catch (IOException | RuntimeException ex) {
+                throw ex;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while walking " + walkRoot);
+            } catch (Exception ex) {
+                throw new IOException("Error while walking " + walkRoot, ex);
+            }
+        }
+        fileMetrics.putAll(collectedMetrics);
+    }
+
+    private DirectoryAggregate visitDirectory(Path directory, BasicFileAttributes basicFileAttributes, int depth,
+                                              int maxDepth, boolean insideRecursivelyCountedDirectory,
+                                              Map<String, FileMetric> fileMetrics) throws Exception {
+        CustomFileWalker walker = newWalker(fileMetrics);
+        walker.setInsideRecursivelyCountedDirectory(insideRecursivelyCountedDirectory);
+        FileVisitResult result = virtualThreadExecutor.runLimited(() ->
+                walker.preVisitDirectory(directory, basicFileAttributes));
+        if (result != FileVisitResult.CONTINUE) {
+            return walker.getLastClosedDirectory();
+        }
+        DirectoryAggregate aggregate = walker.getOpenDirectory();
+        boolean recursivelyCounted = walker.isRecursivelyCounted();
+        Listing listing = virtualThreadExecutor.runLimited(() -> list(directory));
+
+        List<Future<DirectoryAggregate>> subdirectories = new ArrayList<>();
+        List<Future<Void>> fileCounts = new ArrayList<>();
+        List<Entry> files = new ArrayList<>();
+        for (Entry entry : listing.entries) {
+            BasicFileAttributes attributes = entry.basicFileAttributes;
+            if (attributes != null && attributes.isDirectory() && depth + 1 < maxDepth) {
+                subdirectories.add(virtualThreadExecutor.submit(() ->
+                        visitDirectory(entry.path, attributes, depth + 1, maxDepth, recursivelyCounted, fileMetrics)));
+                continue;
+            }
+            if (isCounted(entry)) {
+                fileCounts.add(virtualThreadExecutor.submit(() -> count(entry)));
+            }
+            files.add(entry);
+        }
+        for (Future<Void> fileCount : fileCounts) {
+            get(fileCount);
+        }
+        for (Entry file : files) {
+            virtualThreadExecutor.runLimited(() -> {
+                if (file.basicFileAttributes == null) {
+                    walker.visitFileFailed(file.path, file.exception);
+                } else {
+                    walker.visitFile(file.path, file.basicFileAttributes);
+                }
+                return null;
+            });
+        }
+        for (Future<DirectoryAggregate> subdirectory : subdirectories) {
+            DirectoryAggregate child = get(subdirectory);
+            if (child != null) {
+                walker.mergeChildDirectory(child);
+            }
+        }
+        walker.postVisitDirectory(directory, listing.exception);
+        return aggregate;
+    }
+
+    /*
+     * Whether the walker reads the lines and content of the file when it visits it.
+     */
+    private boolean isCounted(Entry entry) {
+        BasicFileAttributes attributes = entry.basicFileAttributes;
+        return fileAggregator == null && attributes != null && attributes.isRegularFile()
+                && !(pathToProcess.getIgnoreHiddenFiles() && isHidden(entry.path, attributes))
+                && globPathMatcher.getMatcher().matches(entry.path);
+    }
+
+    private Void count(Entry entry) throws Exception {
+        virtualThreadExecutor.runLimited(() -> CustomFileWalker.getLineCountCache().getNumberOfLines(entry.path,
+                entry.basicFileAttributes, walkStatistics));
+        if (contentMatchCache != null) {
+            virtualThreadExecutor.runLimited(() -> contentMatchCache.getMatches(entry.path,
+                    entry.basicFileAttributes));
+        }
+        return null;
+    }
+
+    private static Listing list(Path directory) {
+        Listing listing = new Listing();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+            for (Path child : children) {
+                try {
+                    listing.entries.add(new Entry(child, readAttributes(child), null));
+                } catch (IOException ex) {
+                    listing.entries.add(new Entry(child, null, ex));
+                }
+            }
+        } catch (DirectoryIteratorException ex) {
+            listing.exception = ex.getCause();
+        } catch (IOException ex) {
+            listing.exception = ex;
+        }
+        return listing;
+    }
+
+    private static <T> T get(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+        }
+    }
+
+    private CustomFileWalker newWalker(Map<String, FileMetric> fileMetrics) {
+        CustomFileWalker walker = new CustomFileWalker(baseDirectory, globPathMatcher, pathToProcess, fileMetrics,
+                changeDetector, fileAggregator);
+        walker.setLineCountsPrecomputed();
+        walker.setDirectoryTreeChecks(directoryTreeChecks);
+        return walker;
+    }
+
+    private static class Listing {
+        private final List<Entry> entries = new ArrayList<>();
+        private IOException exception;
+    }
+
+    private static class Entry {
+        private final Path path;
+        private final BasicFileAttributes basicFileAttributes;
+        private final IOException exception;
+
+        private Entry(Path path, BasicFileAttributes basicFileAttributes, IOException exception) {
+            this.path = path;
+            this.basicFileAttributes = basicFileAttributes;
+            this.exception = exception;
+        }
+    }
+}
@@ -26,4 +26,46 @@ public class Constants {
     public static final String LAST_MODIFIED_TIME = "lastModifiedTime";
     public static final String RECURSIVE_FILE_COUNT = "recursiveFileCount";
     public static final String RECURSIVE_FILE_SIZE = "recursiveFileSize";
+    public static final String FILES_CREATED = "filesCreated";
+    public static final String FILES_DELETED = "filesDeleted";
+    public static final String FILES_ROTATED = "filesRotated";
+    public static final String BYTES_APPENDED = "bytesAppended";
+    public static final String MATCHED_FILE_COUNT = "matchedFileCount";
+    public static final String MATCHED_FILE_SIZE = "matchedFileSize";
+    public static final String MIN_FILE_AGE = "minFileAge";
+    public static final String MAX_FILE_AGE = "maxFileAge";
+    public static final String MEDIAN_FILE_AGE = "medianFileAge";
+    public static final String P90_FILE_AGE = "p90FileAge";
+    public static final String P99_FILE_AGE = "p99FileAge";
+    public static final String MEDIAN_FILE_SIZE = "medianFileSize";
+    public static final String P90_FILE_SIZE = "p90FileSize";
+    public static final String P99_FILE_SIZE = "p99FileSize";
+    public static final String FILES_UNDER_1KB = "filesUnder1KB";
+    public static final String FILES_UNDER_1MB = "filesUnder1MB";
+    public static final String FILES_UNDER_1GB = "filesUnder1GB";
+    public static final String FILES_OVER_1GB = "filesOver1GB";
+    public static final String WALK_DURATION = "walkDuration";
+    public static final String ENTRIES_VISITED = "entriesVisited";
+    public static final String ENTRIES_MATCHED = "entriesMatched";
+    public static final String STAT_CALLS = "statCalls";
+    public static final String LINE_COUNT_BYTES_READ = "lineCountBytesRead";
+    public static final String LINE_COUNT_CACHE_HIT_RATIO = "lineCountCacheHitRatio";
+    public static final String EMISSION_LATENCY = "emissionLatency";
+    public static final String EMISSION_QUEUE_DEPTH = "emissionQueueDepth";
+    public static final String MATCHING_LINES = "matchingLines";
+    public static final String WATCH_MODE_WALK = "walk";
+    public static final String WATCH_MODE_EVENTS = "events";
+    public static final String AGGREGATION_DIRECTORY = "directory";
+    public static final String AGGREGATION_PATH = "path";
+    public static final int DEFAULT_MAX_SERIES = 1000;
+    public static final long DEFAULT_DIRECTORY_CACHE_MAX_AGE_SECONDS = 300;
+    public static final String VIRTUAL_THREADS = "virtualThreads";
+    public static final int DEFAULT_MAX_CONCURRENT_FILE_OPERATIONS = 256;
+    public static final String METRIC_PUBLISHING = "metricPublishing";
+    public static final String SHARED_TRAVERSAL = "sharedTraversal";
+    public static final String STATE_SNAPSHOT = "stateSnapshot";
+    public static final String LINE_COUNTING = "lineCounting";
+    public static final int DEFAULT_LINE_COUNT_THREADS = 2;
+    public static final int DEFAULT_MAX_QUEUED_FILES = 10000;
+    public static final long DEFAULT_LINE_COUNT_DEADLINE_MILLIS = 1000;
 }
\ No newline at end of file
@@ -0,0 +1,148 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.util;
+
+import com.appdynamics.extensions.filewatcher.config.ContentMatches;
+import com.appdynamics.extensions.filewatcher.config.PathToProcess;
+import com.appdynamics.extensions.logging.ExtensionsLoggerFactory;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Remembers how far each file has been scanned for the content patterns of a configured path, the same way
+ * LineCountCache does for line counts: a file that only grew has just its appended bytes scanned, from the start of its
+ * last line that had not ended yet, and anything else is scanned again from the start. Gzip files are not scanned.
+ */
+public class ContentMatchCache {
+    private static final Logger LOGGER = ExtensionsLoggerFactory.getLogger(ContentMatchCache.class);
+    private static final Map<String, ContentMatchCache> CACHES = new ConcurrentHashMap<>();
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final ObjectPool<ByteBuffer> BUFFERS = new ObjectPool<>(() ->
+            ByteBuffer.allocateDirect(BUFFER_SIZE), null);
+
+    private final ContentMatcher contentMatcher;
+    private final Cache<String, ScannedFile> scannedFiles;
+
+    public ContentMatchCache(ContentMatcher contentMatcher) {
+        this.contentMatcher = contentMatcher;
+        this.scannedFiles = CacheBuilder.newBuilder().expireAfterAccess(1, TimeUnit.HOURS).build();
+    }
+
+    /*
+     * The cache of the configured path, or null if it has no content patterns.
+     */
+    public static ContentMatchCache get(PathToProcess pathToProcess) {
+        if (pathToProcess.getContentPatterns() == null || pathToProcess.getContentPatterns().isEmpty()) {
+            return null;
+        }
+        return CACHES.computeIfAbsent(pathToProcess.getDisplayName() + "|" + pathToProcess.getPath(),
+                key -> new ContentMatchCache(new ContentMatcher(pathToProcess.getContentPatterns())));
+    }
+
+    public static void clear() {
+        CACHES.clear();
+    }
+
+    /*
+     * The matches of the file, or null if it cannot be scanned.
+     */
+    public ContentMatches getMatches(Path file, BasicFileAttributes basicFileAttributes) {
+        if (basicFileAttributes == null || GzipLineCounter.isGzip(file)) {
+            return null;
+        }
+        String key = file.toString();
+        long fileKey = basicFileAttributes.fileKey() != null ? basicFileAttributes.fileKey().hashCode() : 0;
+        long size = basicFileAttributes.size();
+        long lastModifiedTime = basicFileAttributes.lastModifiedTime().toMillis();
+
+        ScannedFile previous = scannedFiles.getIfPresent(key);
+        if (previous != null && previous.fileKey == fileKey && previous.size == size
+                && previous.lastModifiedTime == lastModifiedTime) {
+            return previous.contentMatches;
+        }
+        boolean appended = previous != null && previous.fileKey == fileKey && size > previous.size
+                && lastModifiedTime >= previous.lastModifiedTime;
+        ContentMatcher.Scan scan = appended
+                ? contentMatcher.newScan(previous.completeLineCounts.clone(), previous.lineStart, previous.previousByte)
+                : contentMatcher.newScan(new long[contentMatcher.getNames().length], 0, -1);
+        try {
+            if (appended) {
+                LOGGER.trace("Scanning {} for content patterns from byte {}", file, previous.lineStart);
+            }
+            size = scan(file, scan, size);
+        } catch (IOException e) {
+            LOGGER.warn("IOException Occurred trying to read the file, possible permissions issue", e);
+            scannedFiles.invalidate(key);
+            return null;
+        }
+        ScannedFile scannedFile = new ScannedFile(fileKey, size, lastModifiedTime, scan.getLineStart(),
+                scan.getPreviousByteOfLine(), scan.getCompleteLineCounts(),
+                new ContentMatches(contentMatcher.getNames(), scan.getCounts()));
+        scannedFiles.put(key, scannedFile);
+        return scannedFile.contentMatches;
+    }
+
+    /*
+     * Scans up to the given end and returns the position scanning stopped at, which is before the end if the file was
+     * truncated in the meantime.
+     */
+    private static long scan(Path file, ContentMatcher.Scan scan, long end) throws IOException {
+        ByteBuffer buffer = BUFFERS.acquire();
+        long position = scan.getLineStart();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (position < end) {
+                buffer.clear();
+                if (end - position < buffer.capacity()) {
+                    buffer.limit((int) (end - position));
+                }
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                scan.scan(buffer, read);
+                position += read;
+            }
+        } finally {
+            BUFFERS.release(buffer);
+        }
+        return position;
+    }
+
+    private static class ScannedFile {
+        private final long fileKey;
+        private final long size;
+        private final long lastModifiedTime;
+        private final long lineStart;
+        private final int previousByte;
+        private final long[] completeLineCounts;
+        private final ContentMatches contentMatches;
+
+        private ScannedFile(long fileKey, long size, long lastModifiedTime, long lineStart, int previousByte,
+                            long[] completeLineCounts, ContentMatches contentMatches) {
+            this.fileKey = fileKey;
+            this.size = size;
+            this.lastModifiedTime = lastModifiedTime;
+            this.lineStart = lineStart;
+            this.previousByte = previousByte;
+            this.completeLineCounts = completeLineCounts;
+            this.contentMatches = contentMatches;
+        }
+    }
+}
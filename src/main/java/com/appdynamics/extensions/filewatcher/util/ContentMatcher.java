@@ -0,0 +1,260 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.util;
+
+import com.appdynamics.extensions.filewatcher.config.ContentPattern;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/*
+ * Counts the lines that contain each of a set of patterns in a single pass over the bytes of a file, however many
+ * patterns there are. Literal patterns are searched for all at once with an Aho-Corasick automaton over their UTF-8
+ * bytes, fed one byte at a time, so a line is never decoded for them. Only when there are regular expressions is each
+ * line also decoded and run through them, up to its first MAX_REGEX_LINE_LENGTH bytes. Lines are split like
+ * BufferedReader.readLine() splits them, and a line that contains a pattern several times counts once for it.
+ *
+ * Thread safe once built: every scan keeps its state in a Scan of its own. Regular expressions are taken compiled from
+ * their ContentPattern, so that FileMonitor, which drops the invalid ones when it loads the configuration, and the
+ * matcher share one compile. Building throws a PatternSyntaxException for a regular expression that does not compile.
+ */
+public class ContentMatcher {
+    private static final int MAX_REGEX_LINE_LENGTH = 64 * 1024;
+
+    private final String[] names;
+    // The automaton as a full transition table, state by state, and the literal patterns each state ends
+    private final int[] transitions;
+    private final int[][] outputs;
+    private final int[] regexIndexes;
+    private final Pattern[] regexes;
+
+    public ContentMatcher(List<ContentPattern> contentPatterns) {
+        names = new String[contentPatterns.size()];
+        List<byte[]> literals = new ArrayList<>();
+        List<Integer> literalIndexes = new ArrayList<>();
+        List<Integer> regexIndexes = new ArrayList<>();
+        List<Pattern> regexes = new ArrayList<>();
+        for (int i = 0; i < names.length; i++) {
+            ContentPattern contentPattern = contentPatterns.get(i);
+            names[i] = contentPattern.getName() != null ? contentPattern.getName() : contentPattern.getPattern();
+            if (contentPattern.isRegex()) {
+                regexIndexes.add(i);
+                regexes.add(contentPattern.getCompiledPattern());
+            } else if (!contentPattern.getPattern().isEmpty()) {
+                literalIndexes.add(i);
+                literals.add(contentPattern.getPattern().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        this.regexIndexes = regexIndexes.stream().mapToInt(Integer::intValue).toArray();
+        this.regexes = regexes.toArray(new Pattern[0]);
+
+        // The trie of the literals, with -1 for missing transitions
+        List<int[]> trie = new ArrayList<>();
+        List<int[]> trieOutputs = new ArrayList<>();
+        trie.add(newState());
+        trieOutputs.add(new int[0]);
+        for (int i = 0; i < literals.size(); i++) {
+            int state = 0;
+            for (byte b : literals.get(i)) {
+                int next = trie.get(state)[b & 0xFF];
+                if (next < 0) {
+                    next = trie.size();
+                    trie.get(state)[b & 0xFF] = next;
+                    trie.add(newState());
+                    trieOutputs.add(new int[0]);
+                }
+                state = next;
+            }
+            trieOutputs.set(state, append(trieOutputs.get(state), literalIndexes.get(i)));
+        }
+
+        // Turns the trie into the automaton breadth first, following failure links for the missing transitions
+        int[] failures = new int[trie.size()];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int b = 0; b < 256; b++) {
+            int next = trie.get(0)[b];
+            if (next < 0) {
+                trie.get(0)[b] = 0;
+            } else {
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            trieOutputs.set(state, merge(trieOutputs.get(state), trieOutputs.get(failures[state])));
+            for (int b = 0; b < 256; b++) {
+                int next = trie.get(state)[b];
+                if (next < 0) {
+                    trie.get(state)[b] = trie.get(failures[state])[b];
+                } else {
+                    failures[next] = trie.get(failures[state])[b];
+                    queue.add(next);
+                }
+            }
+        }
+        transitions = new int[trie.size() * 256];
+        for (int state = 0; state < trie.size(); state++) {
+            System.arraycopy(trie.get(state), 0, transitions, state * 256, 256);
+        }
+        outputs = trieOutputs.toArray(new int[0][]);
+    }
+
+    private static int[] newState() {
+        int[] state = new int[256];
+        Arrays.fill(state, -1);
+        return state;
+    }
+
+    private static int[] append(int[] patterns, int pattern) {
+        int[] appended = Arrays.copyOf(patterns, patterns.length + 1);
+        appended[patterns.length] = pattern;
+        return appended;
+    }
+
+    private static int[] merge(int[] patterns, int[] inherited) {
+        int[] merged = patterns;
+        for (int pattern : inherited) {
+            merged = append(merged, pattern);
+        }
+        return merged;
+    }
+
+    public String[] getNames() {
+        return names;
+    }
+
+    /*
+     * A scan that continues the given counts from the start of a line at the given position, after the given byte.
+     */
+    Scan newScan(long[] counts, long position, int previousByte) {
+        return new Scan(counts, position, previousByte);
+    }
+
+    /*
+     * The state of a scan over consecutive chunks of a file.
+     */
+    class Scan {
+        private final long[] counts;
+        private final int[] lastMatchedLines = new int[names.length];
+        private final byte[] line = regexes.length > 0 ? new byte[MAX_REGEX_LINE_LENGTH] : null;
+        private int lineLength;
+        private int lineNumber = 1;
+        private int state;
+        private int previousByte;
+        private long lineStart;
+        private long position;
+
+        private Scan(long[] counts, long position, int previousByte) {
+            this.counts = counts;
+            this.lineStart = position;
+            this.position = position;
+            this.previousByte = previousByte;
+        }
+
+        /*
+         * Scans the first bytes of the buffer, which continue the file where the last ones ended.
+         */
+        void scan(ByteBuffer buffer, int length) {
+            long position = this.position;
+            int state = this.state;
+            int previous = previousByte;
+            for (int i = 0; i < length; i++) {
+                int b = buffer.get(i) & 0xFF;
+                if (b == '\n' || b == '\r') {
+                    if (b == '\r' || previous != '\r') {
+                        endLine(position + i + 1);
+                        state = 0;
+                    } else {
+                        // The \n of a \r\n, whose line already ended
+                        lineStart = position + i + 1;
+                    }
+                } else {
+                    state = transitions[state * 256 + b];
+                    for (int pattern : outputs[state]) {
+                        if (lastMatchedLines[pattern] != lineNumber) {
+                            lastMatchedLines[pattern] = lineNumber;
+                            counts[pattern]++;
+                        }
+                    }
+                    if (line != null && lineLength < line.length) {
+                        line[lineLength++] = (byte) b;
+                    }
+                }
+                previous = b;
+            }
+            this.state = state;
+            previousByte = previous;
+            this.position = position + length;
+        }
+
+        private void endLine(long nextLineStart) {
+            matchRegexes(counts, true);
+            lineNumber++;
+            lineLength = 0;
+            lineStart = nextLineStart;
+        }
+
+        private void matchRegexes(long[] counts, boolean lineEnded) {
+            if (line == null) {
+                return;
+            }
+            String text = new String(line, 0, lineLength, StandardCharsets.UTF_8);
+            for (int i = 0; i < regexes.length; i++) {
+                int pattern = regexIndexes[i];
+                if (lastMatchedLines[pattern] != lineNumber && regexes[i].matcher(text).find()) {
+                    if (lineEnded) {
+                        lastMatchedLines[pattern] = lineNumber;
+                    }
+                    counts[pattern]++;
+                }
+            }
+        }
+
+        /*
+         * The counts of the lines that were ended so far, which a later scan can continue from at getLineStart().
+         */
+        long[] getCompleteLineCounts() {
+            long[] complete = counts.clone();
+            for (int pattern = 0; pattern < complete.length; pattern++) {
+                if (lastMatchedLines[pattern] == lineNumber) {
+                    complete[pattern]--;
+                }
+            }
+            return complete;
+        }
+
+        /*
+         * The counts including the last line, if it has not ended yet.
+         */
+        long[] getCounts() {
+            long[] all = counts.clone();
+            if (position > lineStart) {
+                matchRegexes(all, false);
+            }
+            return all;
+        }
+
+        long getLineStart() {
+            return lineStart;
+        }
+
+        /*
+         * The byte before the start of the last line, which tells whether a \n there ends a line of its own.
+         */
+        int getPreviousByteOfLine() {
+            return lineStart == position ? previousByte : lineStart > 0 ? '\n' : -1;
+        }
+    }
+}
@@ -15,39 +15,98 @@ import com.appdynamics.extensions.filewatcher.config.FileMetric;
 import com.appdynamics.extensions.filewatcher.config.PathToProcess;
 import com.appdynamics.extensions.filewatcher.helpers.AppPathMatcher;
 import com.appdynamics.extensions.filewatcher.helpers.GlobPathMatcher;
+import com.appdynamics.extensions.filewatcher.processors.ChangeDetector;
 import com.appdynamics.extensions.filewatcher.processors.CustomFileWalker;
+import com.appdynamics.extensions.filewatcher.processors.FileAggregator;
+import com.appdynamics.extensions.filewatcher.processors.LineCountPool;
+import com.appdynamics.extensions.filewatcher.processors.ParallelFileWalker;
+import com.appdynamics.extensions.filewatcher.processors.VirtualThreadExecutor;
+import com.appdynamics.extensions.filewatcher.processors.VirtualThreadFileWalker;
 import com.appdynamics.extensions.logging.ExtensionsLoggerFactory;
 import org.slf4j.Logger;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class FileWatcherUtil {
 
     private static final Logger LOGGER = ExtensionsLoggerFactory.getLogger(FileWatcherUtil.class);
+    private static final Map<String, AppPathMatcher> PATH_MATCHERS = new ConcurrentHashMap<>();
 
     public static void walk(String baseDirectory, PathToProcess pathToProcess, Map<String, FileMetric> fileMetrics)
             throws IOException {
+        walk(baseDirectory, pathToProcess, fileMetrics, null);
+    }
+
+    public static void walk(String baseDirectory, PathToProcess pathToProcess, Map<String, FileMetric> fileMetrics,
+                            VirtualThreadExecutor virtualThreadExecutor) throws IOException {
+        walk(baseDirectory, pathToProcess, fileMetrics, virtualThreadExecutor, new ChangeDetector());
+    }
+
+    public static void walk(String baseDirectory, PathToProcess pathToProcess, Map<String, FileMetric> fileMetrics,
+                            VirtualThreadExecutor virtualThreadExecutor, ChangeDetector changeDetector)
+            throws IOException {
+        walk(baseDirectory, pathToProcess, fileMetrics, virtualThreadExecutor, changeDetector, null);
+    }
+    public static void walk(String baseDirectory, PathToProcess pathToProcess, Map<String, FileMetric> fileMetrics,
+                            VirtualThreadExecutor virtualThreadExecutor, ChangeDetector changeDetector,
+                            FileAggregator fileAggregator) throws IOException {
+        walk(baseDirectory, pathToProcess, fileMetrics, virtualThreadExecutor, changeDetector, fileAggregator, null);
+    }
+
+    /*
+     * Walks that run on virtual threads count lines themselves and do not use the line count batch.
+     */
+    public static void walk(String baseDirectory, PathToProcess pathToProcess, Map<String, FileMetric> fileMetrics,
+                            VirtualThreadExecutor virtualThreadExecutor, ChangeDetector changeDetector,
+                            FileAggregator fileAggregator, LineCountPool.Batch lineCountBatch) throws IOException {
         GlobPathMatcher globPathMatcher = (GlobPathMatcher) FileWatcherUtil.getPathMatcher(pathToProcess);
-        if(pathToProcess.getPath().contains("**")){
-            LOGGER.trace("FileWatcherUtil :: walk - feeding basedirectory "+baseDirectory+" path to walkFileTree");
-            Files.walkFileTree(Paths.get(baseDirectory), new HashSet<>(), Integer.MAX_VALUE, new CustomFileWalker(baseDirectory, globPathMatcher, pathToProcess,
-                    fileMetrics));
-        } else if(pathToProcess.getPath().contains("*")) {
-            LOGGER.trace("FileWatcherUtil :: walk - feeding basedirectory "+baseDirectory+" path to walkFileTree");
-            Files.walkFileTree(Paths.get(baseDirectory), new HashSet<>(), 2, new CustomFileWalker(baseDirectory, globPathMatcher, pathToProcess,
-                    fileMetrics));
-        } else{
-            LOGGER.trace("FileWatcherUtil :: walk - feeding basedirectory "+pathToProcess.getPath()+" path to walkFileTree");
-            Files.walkFileTree(Paths.get(pathToProcess.getPath()), new HashSet<>(), 1, new CustomFileWalker(baseDirectory, globPathMatcher, pathToProcess,
-                    fileMetrics));
+        if (virtualThreadExecutor != null) {
+            new VirtualThreadFileWalker(baseDirectory, globPathMatcher, pathToProcess, virtualThreadExecutor,
+                    changeDetector, fileAggregator).walk(getWalkRoot(baseDirectory, pathToProcess),
+                    getWalkDepth(pathToProcess), fileMetrics);
+            return;
+        }
+        if (pathToProcess.getWalkParallelism() > 1) {
+            new ParallelFileWalker(baseDirectory, globPathMatcher, pathToProcess, changeDetector,
+                    fileAggregator, lineCountBatch).walk(getWalkRoot(baseDirectory, pathToProcess), getWalkDepth(pathToProcess),
+                    fileMetrics);
+            return;
+        }
+        walk(baseDirectory, pathToProcess, new CustomFileWalker(baseDirectory, globPathMatcher, pathToProcess,
+                fileMetrics, changeDetector, fileAggregator, lineCountBatch));
+    }
+
+    public static void walk(String baseDirectory, PathToProcess pathToProcess, CustomFileWalker customFileWalker)
+            throws IOException {
+        Path walkRoot = getWalkRoot(baseDirectory, pathToProcess);
+        LOGGER.trace("FileWatcherUtil :: walk - feeding "+walkRoot+" path to walkFileTree");
+        Files.walkFileTree(walkRoot, new HashSet<>(), getWalkDepth(pathToProcess), customFileWalker);
+    }
+
+    public static Path getWalkRoot(String baseDirectory, PathToProcess pathToProcess) {
+        return pathToProcess.getPath().contains("*") ? Paths.get(baseDirectory) : Paths.get(pathToProcess.getPath());
+    }
+
+    public static int getWalkDepth(PathToProcess pathToProcess) {
+        // Recursive counts & sizes are aggregated by the walker itself, so the walk has to reach the leaves
+        boolean recursiveMetrics = pathToProcess.getEnableRecursiveFileCounts()
+                || pathToProcess.getEnableRecursiveFileSizes();
+        if (pathToProcess.getPath().contains("**") || recursiveMetrics) {
+            return Integer.MAX_VALUE;
+        } else if (pathToProcess.getPath().contains("*")) {
+            return 2;
         }
+        return 1;
     }
 
     public static String getFormattedDisplayName(String fileDisplayName, Path path, String baseDir) {
@@ -73,12 +132,12 @@ public class FileWatcherUtil {
 
     public static long getNumberOfLinesFromFile(Path file) {
         if (file.toFile().exists()) {
-        	long lines = 0;
-        	try {
-        		BufferedReader reader = new BufferedReader(new FileReader(file.toFile().getAbsolutePath()));
-                while (reader.readLine() != null) lines++;
-                reader.close();
-        		
+        	long lines;
+        	try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        		LineBreakCounter lineBreakCounter = new LineBreakCounter();
+        		long bytesCounted = GzipLineCounter.isGzip(file) ? GzipLineCounter.count(channel, lineBreakCounter)
+        				: lineBreakCounter.count(channel, 0, channel.size());
+        		lines = lineBreakCounter.getNumberOfLines(bytesCounted);
         	} catch (IOException e) {
         		LOGGER.warn("IOException Occurred trying to read the file, possible permissions issue", e.getCause());
         		lines=-1;
@@ -119,32 +178,63 @@ public class FileWatcherUtil {
         }
     }
 
-    public static long calculateRecursiveDirectoryCount(Path path, boolean ignoreHiddenFiles) throws IOException {
-        int[] count = {0};
-        Files.walkFileTree(path,new SimpleFileVisitor<Path>(){
-            @Override
-            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-                if(ignoreHiddenFiles && dir.toFile().isHidden()){
-                    return FileVisitResult.CONTINUE;
-                } else {
-                    count[0]++;
-                    return FileVisitResult.CONTINUE;
-                }
-            }
+    public static AppPathMatcher getPathMatcher(PathToProcess fileToProcess) {
+        return PATH_MATCHERS.computeIfAbsent(fileToProcess.getPath(), path -> {
+            AppPathMatcher matcher = new GlobPathMatcher();
+            matcher.setMatcher(fileToProcess);
+            return matcher;
+        });
+    }
 
-            @Override
-            public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
-                return FileVisitResult.SKIP_SUBTREE;
-            }
+    /*
+     * Compiled matchers are kept until the configuration is reloaded.
+     */
+    public static void clearPathMatchers() {
+        PATH_MATCHERS.clear();
+    }
 
-        });
-        return count[0]-1;
+    /*
+     * Reads the attributes of a path with a single stat, as the richest attribute class the file system offers: POSIX
+     * attributes on Unix-like systems and DOS attributes (which carry the hidden flag) on Windows.
+     */
+    public static BasicFileAttributes readAttributes(Path path) throws IOException {
+        Set<String> views = path.getFileSystem().supportedFileAttributeViews();
+        Class<? extends BasicFileAttributes> type = views.contains("posix") ? PosixFileAttributes.class
+                : views.contains("dos") ? DosFileAttributes.class : BasicFileAttributes.class;
+        return Files.readAttributes(path, type, LinkOption.NOFOLLOW_LINKS);
     }
 
-    public static AppPathMatcher getPathMatcher(PathToProcess fileToProcess) {
-        AppPathMatcher matcher = new GlobPathMatcher();
-        matcher.setMatcher(fileToProcess);
-        return matcher;
+    /*
+     * Same result as File.isHidden(), derived from attributes that were already read where possible: the DOS hidden
+     * flag on Windows, a leading dot on Unix-like systems.
+     */
+    public static boolean isHidden(Path path, BasicFileAttributes basicFileAttributes) {
+        if (basicFileAttributes instanceof PosixFileAttributes) {
+            Path fileName = path.getFileName();
+            return fileName != null && fileName.toString().startsWith(".");
+        }
+        if (basicFileAttributes instanceof DosFileAttributes) {
+            return ((DosFileAttributes) basicFileAttributes).isHidden();
+        }
+        return path.toFile().isHidden();
+    }
+
+    /*
+     * Existence and type come from the attributes, only the permission checks still go to the file system. Symbolic
+     * links are checked on their target, like the path based check does.
+     */
+    public static boolean isDirectoryAccessible(Path path, BasicFileAttributes basicFileAttributes) {
+        if (basicFileAttributes == null || basicFileAttributes.isSymbolicLink()) {
+            return isDirectoryAccessible(path);
+        }
+        return basicFileAttributes.isDirectory() && Files.isReadable(path) && Files.isExecutable(path);
+    }
+
+    public static boolean isFileAccessible(Path path, BasicFileAttributes basicFileAttributes) {
+        if (basicFileAttributes == null || basicFileAttributes.isSymbolicLink()) {
+            return isFileAccessible(path);
+        }
+        return basicFileAttributes.isRegularFile() && Files.isReadable(path);
     }
 
     public static boolean isDirectoryAccessible(Path path) {
@@ -0,0 +1,182 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/*
+ * Counts the lines of the decompressed content of gzip files, such as rotated logs, the same way LineBreakCounter counts
+ * those of plain files. The content is inflated in chunks and counted as it comes out, without being kept. The Inflater
+ * and both buffers are pooled, so counting allocates nothing per line and no buffers per file, also on virtual threads.
+ * Files made of several concatenated gzip members are counted as their concatenated content.
+ */
+public class GzipLineCounter {
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final int GZIP_MAGIC = 0x8B1F;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private static final ObjectPool<Resources> RESOURCES = new ObjectPool<>(Resources::new,
+            resources -> resources.inflater.end());
+
+    private final FileChannel channel;
+    private final byte[] input;
+    private final ByteBuffer output;
+    private final Inflater inflater;
+    private long position;
+    private int offset;
+    private int limit;
+
+    private GzipLineCounter(FileChannel channel, Resources resources) {
+        this.channel = channel;
+        this.input = resources.input;
+        this.output = resources.output;
+        this.inflater = resources.inflater;
+    }
+
+    public static boolean isGzip(Path file) {
+        Path name = file.getFileName();
+        return name != null && name.toString().toLowerCase().endsWith(".gz");
+    }
+
+    /*
+     * Counts the line breaks of the decompressed content into the counter and returns the number of decompressed bytes.
+     * A file that does not start like a gzip file is counted as it is.
+     */
+    public static long count(FileChannel channel, LineBreakCounter lineBreakCounter) throws IOException {
+        Resources resources = RESOURCES.acquire();
+        try {
+            GzipLineCounter gzipLineCounter = new GzipLineCounter(channel, resources);
+            if (!gzipLineCounter.hasMember()) {
+                return lineBreakCounter.count(channel, 0, channel.size());
+            }
+            long decompressed = 0;
+            do {
+                gzipLineCounter.skipHeader();
+                decompressed += gzipLineCounter.inflate(lineBreakCounter);
+                gzipLineCounter.skip(8);
+            } while (gzipLineCounter.hasMember());
+            return decompressed;
+        } finally {
+            resources.inflater.reset();
+            RESOURCES.release(resources);
+        }
+    }
+
+    private boolean hasMember() throws IOException {
+        if (available() < 2 && !fill(2)) {
+            return false;
+        }
+        return ((input[offset] & 0xFF) | (input[offset + 1] & 0xFF) << 8) == GZIP_MAGIC;
+    }
+
+    private void skipHeader() throws IOException {
+        skip(3);
+        int flags = readByte();
+        // Modification time, extra flags and operating system
+        skip(6);
+        if ((flags & FEXTRA) != 0) {
+            skip(readByte() | readByte() << 8);
+        }
+        if ((flags & FNAME) != 0) {
+            skipZeroTerminated();
+        }
+        if ((flags & FCOMMENT) != 0) {
+            skipZeroTerminated();
+        }
+        if ((flags & FHCRC) != 0) {
+            skip(2);
+        }
+    }
+
+    private long inflate(LineBreakCounter lineBreakCounter) throws IOException {
+        byte[] outputArray = output.array();
+        inflater.reset();
+        inflater.setInput(input, offset, available());
+        long decompressed = 0;
+        try {
+            while (!inflater.finished()) {
+                int inflated = inflater.inflate(outputArray);
+                if (inflated > 0) {
+                    lineBreakCounter.count(output, inflated);
+                    decompressed += inflated;
+                } else if (inflater.needsInput()) {
+                    offset = limit;
+                    if (!fill(1)) {
+                        throw new EOFException("Unexpected end of gzip content");
+                    }
+                    inflater.setInput(input, offset, available());
+                } else if (inflater.needsDictionary()) {
+                    throw new IOException("Gzip content requires a preset dictionary");
+                }
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException("Invalid gzip content", ex);
+        }
+        offset = limit - inflater.getRemaining();
+        return decompressed;
+    }
+
+    private int readByte() throws IOException {
+        if (available() < 1 && !fill(1)) {
+            throw new EOFException("Unexpected end of gzip header");
+        }
+        return input[offset++] & 0xFF;
+    }
+
+    private void skip(int bytes) throws IOException {
+        for (int i = 0; i < bytes; i++) {
+            readByte();
+        }
+    }
+
+    private void skipZeroTerminated() throws IOException {
+        int b;
+        do {
+            b = readByte();
+        } while (b != 0);
+    }
+
+    private int available() {
+        return limit - offset;
+    }
+
+    /*
+     * Reads more of the file behind the unread bytes, false if fewer than the given number of bytes are left.
+     */
+    private boolean fill(int bytes) throws IOException {
+        int remaining = available();
+        System.arraycopy(input, offset, input, 0, remaining);
+        offset = 0;
+        limit = remaining;
+        while (limit < bytes) {
+            int read = channel.read(ByteBuffer.wrap(input, limit, input.length - limit), position);
+            if (read <= 0) {
+                return false;
+            }
+            position += read;
+            limit += read;
+        }
+        return true;
+    }
+
+    private static class Resources {
+        private final Inflater inflater = new Inflater(true);
+        private final byte[] input = new byte[BUFFER_SIZE];
+        private final ByteBuffer output = ByteBuffer.allocate(BUFFER_SIZE);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/*
+ * Counts line breaks directly on bytes, eight at a time. \r, \n and \r\n each count as one line break, which is how
+ * BufferedReader.readLine() splits lines. Reads go through pooled direct buffers, so counting allocates nothing per
+ * line or per file, also on virtual threads. Direct reads are used instead of mapping the file so that log files can
+ * still be deleted or rotated on Windows while they are being counted.
+ */
+public class LineBreakCounter {
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final long LINE_FEEDS = 0x0A0A0A0A0A0A0A0AL;
+    private static final long CARRIAGE_RETURNS = 0x0D0D0D0D0D0D0D0DL;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+    private static final ObjectPool<ByteBuffer> BUFFERS = new ObjectPool<>(() ->
+            ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.BIG_ENDIAN), null);
+
+    private long lineBreaks;
+    private int lastByte;
+
+    public LineBreakCounter() {
+        this(0, -1);
+    }
+
+    public LineBreakCounter(long lineBreaks, int lastByte) {
+        this.lineBreaks = lineBreaks;
+        this.lastByte = lastByte;
+    }
+
+    /*
+     * Counts the line breaks between the two positions and returns the position counting stopped at, which is before
+     * the end position if the file was truncated in the meantime.
+     */
+    public long count(FileChannel channel, long position, long end) throws IOException {
+        ByteBuffer buffer = BUFFERS.acquire();
+        try {
+            while (position < end) {
+                buffer.clear();
+                if (end - position < buffer.capacity()) {
+                    buffer.limit((int) (end - position));
+                }
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                count(buffer, read);
+                position += read;
+            }
+        } finally {
+            BUFFERS.release(buffer);
+        }
+        return position;
+    }
+
+    /*
+     * Counts the line breaks in the first bytes of the buffer, which has to be big-endian.
+     */
+    void count(ByteBuffer buffer, int length) {
+        long breaks = lineBreaks;
+        int previous = lastByte;
+        int i = 0;
+        for (; i + Long.BYTES <= length; i += Long.BYTES) {
+            long word = buffer.getLong(i);
+            long lineFeeds = zeroBytes(word ^ LINE_FEEDS);
+            long carriageReturns = zeroBytes(word ^ CARRIAGE_RETURNS);
+            if ((lineFeeds | carriageReturns) != 0) {
+                breaks += Long.bitCount(lineFeeds) + Long.bitCount(carriageReturns);
+                // A \r directly followed by \n is a single line break; the following byte sits 8 bits lower
+                breaks -= Long.bitCount(carriageReturns & (lineFeeds << 8));
+                if (previous == '\r' && (word >>> 56) == '\n') {
+                    breaks--;
+                }
+            }
+            previous = (int) (word & 0xFF);
+        }
+        for (; i < length; i++) {
+            int b = buffer.get(i) & 0xFF;
+            if (b == '\r' || (b == '\n' && previous != '\r')) {
+                breaks++;
+            }
+            previous = b;
+        }
+        lineBreaks = breaks;
+        lastByte = previous;
+    }
+
+    /*
+     * Sets the high bit of every byte that is zero and clears everything else. Unlike the usual "has zero byte" trick
+     * this is exact for every byte, so the bits can be counted.
+     */
+    private static long zeroBytes(long word) {
+        long lowBitsSet = (word & LOW_BITS) + LOW_BITS;
+        return ~(lowBitsSet | word | LOW_BITS);
+    }
+
+    public long getLineBreaks() {
+        return lineBreaks;
+    }
+
+    public int getLastByte() {
+        return lastByte;
+    }
+
+    /*
+     * Number of lines in the bytes counted so far, including a last line that does not end with a line break.
+     */
+    public long getNumberOfLines(long bytesCounted) {
+        return getNumberOfLines(lineBreaks, lastByte, bytesCounted);
+    }
+
+    public static long getNumberOfLines(long lineBreaks, int lastByte, long bytesCounted) {
+        return bytesCounted > 0 && lastByte != '\n' && lastByte != '\r' ? lineBreaks + 1 : lineBreaks;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.util;
+
+import com.appdynamics.extensions.logging.ExtensionsLoggerFactory;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.slf4j.Logger;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Remembers how far each file has been counted. A file that only grew since the last cycle (same file key, larger
+ * size, newer or equal modified time) has just its appended bytes counted; anything else, such as a truncation or a
+ * rotation to a new file, is counted again from the start. Line breaks are counted the same way as
+ * BufferedReader.readLine() splits lines.
+ *
+ * Gzip files have the lines of their decompressed content counted. They are always counted from the start when they
+ * changed, but rotated archives never change, so each of them is decompressed once and then found in the cache.
+ */
+public class LineCountCache {
+    private static final Logger LOGGER = ExtensionsLoggerFactory.getLogger(LineCountCache.class);
+
+    private final Cache<String, LineCount> lineCounts;
+
+    public LineCountCache() {
+        this(1, TimeUnit.HOURS);
+    }
+
+    public LineCountCache(long expireAfterAccess, TimeUnit timeUnit) {
+        lineCounts = CacheBuilder.newBuilder().expireAfterAccess(expireAfterAccess, timeUnit).build();
+    }
+
+    public long getNumberOfLines(Path file, BasicFileAttributes basicFileAttributes) {
+        return getNumberOfLines(file, basicFileAttributes, null);
+    }
+
+    /*
+     * Counts the lookup and the bytes it read into the given statistics, if any.
+     */
+    public long getNumberOfLines(Path file, BasicFileAttributes basicFileAttributes, WalkStatistics walkStatistics) {
+        if (basicFileAttributes == null) {
+            return FileWatcherUtil.getNumberOfLinesFromFile(file);
+        }
+        String key = file.toString();
+        long fileKey = getFileKey(basicFileAttributes);
+        long size = basicFileAttributes.size();
+        long lastModifiedTime = basicFileAttributes.lastModifiedTime().toMillis();
+
+        LineCount previous = lineCounts.getIfPresent(key);
+        if (previous != null && previous.matches(basicFileAttributes)) {
+            LOGGER.trace("Line count of {} unchanged since the last cycle", file);
+            if (walkStatistics != null) {
+                walkStatistics.lineCountCacheHit();
+            }
+            return previous.getNumberOfLines();
+        }
+        boolean appended = previous != null && previous.fileKey == fileKey && size > previous.size
+                && lastModifiedTime >= previous.lastModifiedTime && !GzipLineCounter.isGzip(file);
+        LineCount lineCount = appended ? previous : new LineCount(fileKey, 0, lastModifiedTime, 0, -1);
+        try {
+            if (appended) {
+                LOGGER.trace("Counting lines appended to {} after byte {}", file, previous.size);
+            }
+            long from = lineCount.size;
+            lineCount = count(file, lineCount, size, lastModifiedTime);
+            lineCounts.put(key, lineCount);
+            if (walkStatistics != null) {
+                walkStatistics.lineCountCacheMiss(lineCount.size - from);
+            }
+            return lineCount.getNumberOfLines();
+        } catch (IOException e) {
+            LOGGER.warn("IOException Occurred trying to read the file, possible permissions issue", e);
+            lineCounts.invalidate(key);
+            return -1;
+        }
+    }
+
+    /*
+     * Whether the line count of the file is cached for exactly these attributes, so that looking it up reads nothing.
+     */
+    public boolean isCurrent(Path file, BasicFileAttributes basicFileAttributes) {
+        LineCount previous = lineCounts.getIfPresent(file.toString());
+        return previous != null && previous.matches(basicFileAttributes);
+    }
+
+    /*
+     * The number of lines the file had when it was counted last, whatever changed since, or -1 if it never was.
+     */
+    public long getLastNumberOfLines(Path file) {
+        LineCount previous = lineCounts.getIfPresent(file.toString());
+        return previous != null ? previous.getNumberOfLines() : -1;
+    }
+
+    /*
+     * The number of bytes a lookup with these attributes would have to read: the appended bytes of a file that only
+     * grew, all of them otherwise.
+     */
+    public long getBytesToCount(Path file, BasicFileAttributes basicFileAttributes) {
+        LineCount previous = lineCounts.getIfPresent(file.toString());
+        long size = basicFileAttributes.size();
+        if (previous != null && previous.fileKey == getFileKey(basicFileAttributes) && size >= previous.size
+                && basicFileAttributes.lastModifiedTime().toMillis() >= previous.lastModifiedTime
+                && !GzipLineCounter.isGzip(file)) {
+            return size - previous.size;
+        }
+        return size;
+    }
+
+    private static long getFileKey(BasicFileAttributes basicFileAttributes) {
+        return basicFileAttributes.fileKey() != null ? basicFileAttributes.fileKey().hashCode() : 0;
+    }
+
+    /*
+     * Writes how far every cached file has been counted, so that a restarted agent only counts what was appended since.
+     */
+    public void writeTo(DataOutput output) throws IOException {
+        // A copy, as walks may change the cache while it is written
+        Map<String, LineCount> entries = new HashMap<>(lineCounts.asMap());
+        output.writeInt(entries.size());
+        for (Map.Entry<String, LineCount> entry : entries.entrySet()) {
+            LineCount lineCount = entry.getValue();
+            output.writeUTF(entry.getKey());
+            output.writeLong(lineCount.fileKey);
+            output.writeLong(lineCount.size);
+            output.writeLong(lineCount.lastModifiedTime);
+            output.writeLong(lineCount.lineBreaks);
+            output.writeInt(lineCount.lastByte);
+        }
+    }
+
+    public void readFrom(DataInput input) throws IOException {
+        int count = input.readInt();
+        for (int i = 0; i < count; i++) {
+            String key = input.readUTF();
+            lineCounts.put(key, new LineCount(input.readLong(), input.readLong(), input.readLong(), input.readLong(),
+                    input.readInt()));
+        }
+    }
+
+    private static LineCount count(Path file, LineCount from, long size, long lastModifiedTime) throws IOException {
+        LineBreakCounter lineBreakCounter = new LineBreakCounter(from.lineBreaks, from.lastByte);
+        long position;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (GzipLineCounter.isGzip(file)) {
+                long decompressed = GzipLineCounter.count(channel, lineBreakCounter);
+                // Kept with the compressed size to find it again, which counts an empty content as a line otherwise
+                int lastByte = decompressed > 0 ? lineBreakCounter.getLastByte() : '\n';
+                return new LineCount(from.fileKey, size, lastModifiedTime, lineBreakCounter.getLineBreaks(), lastByte);
+            }
+            position = lineBreakCounter.count(channel, from.size, size);
+        }
+        return new LineCount(from.fileKey, position, lastModifiedTime, lineBreakCounter.getLineBreaks(),
+                lineBreakCounter.getLastByte());
+    }
+
+    private static class LineCount {
+        private final long fileKey;
+        private final long size;
+        private final long lastModifiedTime;
+        private final long lineBreaks;
+        private final int lastByte;
+
+        private LineCount(long fileKey, long size, long lastModifiedTime, long lineBreaks, int lastByte) {
+            this.fileKey = fileKey;
+            this.size = size;
+            this.lastModifiedTime = lastModifiedTime;
+            this.lineBreaks = lineBreaks;
+            this.lastByte = lastByte;
+        }
+
+        private boolean matches(BasicFileAttributes basicFileAttributes) {
+            return fileKey == getFileKey(basicFileAttributes) && size == basicFileAttributes.size()
+                    && lastModifiedTime == basicFileAttributes.lastModifiedTime().toMillis();
+        }
+
+        private long getNumberOfLines() {
+            return LineBreakCounter.getNumberOfLines(lineBreaks, lastByte, size);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.util;
+
+import java.util.Arrays;
+
+/*
+ * A histogram of non-negative longs in buckets that grow exponentially: every power of two is split into
+ * SUB_BUCKETS equal buckets, so a percentile is off by at most 1 / SUB_BUCKETS of its value whatever the range of the
+ * recorded values. Values below SUB_BUCKETS are counted exactly. The buckets only grow up to the largest value recorded,
+ * so a histogram takes at most 4 KB however many values it counts, and far less for ages and sizes of files. Histograms
+ * can be merged. Not thread safe.
+ */
+public class LogHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private long[] counts = new long[0];
+    private long count;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        int bucket = getBucket(value);
+        if (bucket >= counts.length) {
+            grow(bucket + 1);
+        }
+        counts[bucket]++;
+        count++;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    public void add(LogHistogram histogram) {
+        if (histogram.counts.length > counts.length) {
+            grow(histogram.counts.length);
+        }
+        for (int i = 0; i < histogram.counts.length; i++) {
+            counts[i] += histogram.counts[i];
+        }
+        count += histogram.count;
+        min = Math.min(min, histogram.min);
+        max = Math.max(max, histogram.max);
+    }
+
+    /*
+     * Adds the values of the histogram increased by the given amount, such as the ages of files counted a while ago.
+     * Each value is taken as the upper bound of its bucket, so the result is as accurate as the buckets.
+     */
+    public void add(LogHistogram histogram, long shift) {
+        if (shift <= 0) {
+            add(histogram);
+            return;
+        }
+        for (int i = 0; i < histogram.counts.length; i++) {
+            if (histogram.counts[i] > 0) {
+                long value = Math.min(Math.max(getUpperBound(i), histogram.min), histogram.max) + shift;
+                int bucket = getBucket(value);
+                if (bucket >= counts.length) {
+                    grow(bucket + 1);
+                }
+                counts[bucket] += histogram.counts[i];
+            }
+        }
+        if (histogram.count > 0) {
+            count += histogram.count;
+            min = Math.min(min, histogram.min + shift);
+            max = Math.max(max, histogram.max + shift);
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMin() {
+        return count > 0 ? min : -1;
+    }
+
+    public long getMax() {
+        return count > 0 ? max : -1;
+    }
+
+    /*
+     * The upper bound of the bucket the value at the given percentile (0 to 100) falls into, capped by the maximum.
+     */
+    public long getPercentile(double percentile) {
+        if (count == 0) {
+            return -1;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(Math.max(getUpperBound(bucket), min), max);
+            }
+        }
+        return max;
+    }
+
+    private void grow(int length) {
+        // Whole powers of two at a time
+        counts = Arrays.copyOf(counts, (length + SUB_BUCKETS - 1) / SUB_BUCKETS * SUB_BUCKETS);
+    }
+
+    static int getBucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> exponent) & (SUB_BUCKETS - 1);
+        return (exponent + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long getUpperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS - 1;
+        long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << exponent;
+        return lowerBound + (1L << exponent) - 1;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/*
+ * Reuses expensive objects, such as direct read buffers, across whichever threads need them. A ThreadLocal would create
+ * one per thread instead, which on virtual threads, where every task runs on a new thread, means one per file. Objects
+ * are only created while all others are in use, so there are never more of them than concurrent users, and at most
+ * maxIdle of them are kept once they are released. Objects that are not kept are handed to the disposer, if any.
+ */
+public class ObjectPool<T> {
+    private final Supplier<T> factory;
+    private final Consumer<T> disposer;
+    private final int maxIdle;
+    private final Queue<T> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    public ObjectPool(Supplier<T> factory, Consumer<T> disposer) {
+        this(factory, disposer, Math.max(Runtime.getRuntime().availableProcessors() * 2, 4));
+    }
+
+    public ObjectPool(Supplier<T> factory, Consumer<T> disposer, int maxIdle) {
+        this.factory = factory;
+        this.disposer = disposer;
+        this.maxIdle = maxIdle;
+    }
+
+    public T acquire() {
+        T object = idle.poll();
+        if (object == null) {
+            return factory.get();
+        }
+        idleCount.decrementAndGet();
+        return object;
+    }
+
+    public void release(T object) {
+        if (idleCount.incrementAndGet() <= maxIdle) {
+            idle.offer(object);
+            return;
+        }
+        idleCount.decrementAndGet();
+        if (disposer != null) {
+            disposer.accept(object);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.util;
+
+import java.util.Arrays;
+
+/*
+ * Assigns a small int id to every path key, in an open addressing table of parallel String and int arrays instead of a
+ * map of boxed entries. Ids stay the same for as long as the key is in the table, and ids of removed keys are handed
+ * out again, so that arrays indexed by id stay dense. Not thread safe.
+ */
+public class PathIdTable {
+    private static final int FREE = -1;
+
+    private String[] keys;
+    private int[] ids;
+    private String[] keysById;
+    private int[] freeIds;
+    private int freeIdCount;
+    private int size;
+    private int nextId;
+
+    public PathIdTable() {
+        this(64);
+    }
+
+    public PathIdTable(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) << 1;
+        keys = new String[capacity];
+        ids = new int[capacity];
+        keysById = new String[Math.max(expectedSize, 8)];
+        freeIds = new int[8];
+    }
+
+    public int getId(String key) {
+        int slot = find(key);
+        return keys[slot] != null ? ids[slot] : FREE;
+    }
+
+    public int getOrAddId(String key) {
+        int slot = find(key);
+        if (keys[slot] != null) {
+            return ids[slot];
+        }
+        int id = freeIdCount > 0 ? freeIds[--freeIdCount] : nextId++;
+        if (id >= keysById.length) {
+            keysById = Arrays.copyOf(keysById, keysById.length * 2);
+        }
+        keys[slot] = key;
+        ids[slot] = id;
+        keysById[id] = key;
+        if (++size * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        return id;
+    }
+
+    public String getKey(int id) {
+        return id >= 0 && id < nextId ? keysById[id] : null;
+    }
+
+    public void remove(int id) {
+        String key = getKey(id);
+        if (key == null) {
+            return;
+        }
+        int slot = find(key);
+        keysById[id] = null;
+        if (freeIdCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+        }
+        freeIds[freeIdCount++] = id;
+        size--;
+        // Shifts the entries after the removed one back, so that no probe sequence has a gap
+        int mask = keys.length - 1;
+        int next = (slot + 1) & mask;
+        while (keys[next] != null) {
+            int home = slot(keys[next]);
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                keys[slot] = keys[next];
+                ids[slot] = ids[next];
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[slot] = null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /*
+     * One more than the highest id handed out so far, the length arrays indexed by id need.
+     */
+    public int getIdLimit() {
+        return nextId;
+    }
+
+    private int find(String key) {
+        int mask = keys.length - 1;
+        int slot = slot(key);
+        while (keys[slot] != null && !keys[slot].equals(key)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int slot(String key) {
+        int hash = key.hashCode() * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (keys.length - 1);
+    }
+
+    private void resize(int capacity) {
+        String[] oldKeys = keys;
+        int[] oldIds = ids;
+        keys = new String[capacity];
+        ids = new int[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                ids[slot] = oldIds[i];
+            }
+        }
+    }
+}
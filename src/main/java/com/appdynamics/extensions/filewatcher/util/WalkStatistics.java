@@ -0,0 +1,138 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.extensions.filewatcher.util;
+
+import com.appdynamics.extensions.filewatcher.config.PathToProcess;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * What collecting and reporting a configured path cost. The walkers of a path count into the counters of its
+ * statistics, which are LongAdders so that concurrent walkers do not contend on them; at the end of a collection the
+ * counts are moved into a copy that is reported with the collection. Statistics are kept per configured path until the
+ * configuration is reloaded.
+ */
+public class WalkStatistics {
+    private static final Map<String, WalkStatistics> STATISTICS = new ConcurrentHashMap<>();
+
+    private final LongAdder entriesVisited = new LongAdder();
+    private final LongAdder entriesMatched = new LongAdder();
+    private final LongAdder statCalls = new LongAdder();
+    private final LongAdder lineCountBytesRead = new LongAdder();
+    private final LongAdder lineCountCacheHits = new LongAdder();
+    private final LongAdder lineCountCacheMisses = new LongAdder();
+    private volatile long walkDurationMillis = -1;
+    private volatile long emissionLatencyMillis = -1;
+    private volatile long emissionQueueDepth = -1;
+
+    public static WalkStatistics get(PathToProcess pathToProcess) {
+        return STATISTICS.computeIfAbsent(pathToProcess.getDisplayName() + "|" + pathToProcess.getPath(),
+                key -> new WalkStatistics());
+    }
+
+    public static void clear() {
+        STATISTICS.clear();
+    }
+
+    /*
+     * Entries handed to a walker, each of which had its attributes read once by the walk.
+     */
+    public void entryVisited() {
+        entriesVisited.increment();
+        statCalls.increment();
+    }
+
+    /*
+     * Entries handed to a walker whose attributes a shared traversal already read for another walker, so that an entry
+     * counts as a stat call only once however many paths share it.
+     */
+    public void sharedEntryVisited() {
+        entriesVisited.increment();
+    }
+
+    public void entryMatched() {
+        entriesMatched.increment();
+    }
+
+    /*
+     * File system calls made for an entry beyond the attributes read by the walk, such as access checks.
+     */
+    public void statCalls(int calls) {
+        statCalls.add(calls);
+    }
+
+    public void lineCountCacheHit() {
+        lineCountCacheHits.increment();
+    }
+
+    public void lineCountCacheMiss(long bytesRead) {
+        lineCountCacheMisses.increment();
+        lineCountBytesRead.add(bytesRead);
+    }
+
+    /*
+     * Moves the counts collected so far into a copy, which also carries the duration of the collection and the cost of
+     * the last report.
+     */
+    public WalkStatistics take(long walkDurationMillis) {
+        WalkStatistics totals = new WalkStatistics();
+        totals.entriesVisited.add(entriesVisited.sumThenReset());
+        totals.entriesMatched.add(entriesMatched.sumThenReset());
+        totals.statCalls.add(statCalls.sumThenReset());
+        totals.lineCountBytesRead.add(lineCountBytesRead.sumThenReset());
+        totals.lineCountCacheHits.add(lineCountCacheHits.sumThenReset());
+        totals.lineCountCacheMisses.add(lineCountCacheMisses.sumThenReset());
+        totals.walkDurationMillis = walkDurationMillis;
+        return totals;
+    }
+
+    public void setEmission(long emissionLatencyMillis, long emissionQueueDepth) {
+        this.emissionLatencyMillis = emissionLatencyMillis;
+        this.emissionQueueDepth = emissionQueueDepth;
+    }
+
+    public long getWalkDurationMillis() {
+        return walkDurationMillis;
+    }
+
+    public long getEntriesVisited() {
+        return entriesVisited.sum();
+    }
+
+    public long getEntriesMatched() {
+        return entriesMatched.sum();
+    }
+
+    public long getStatCalls() {
+        return statCalls.sum();
+    }
+
+    public long getLineCountBytesRead() {
+        return lineCountBytesRead.sum();
+    }
+
+    /*
+     * The percentage of line counts answered from the cache without reading the file, or -1 without any line count.
+     */
+    public long getLineCountCacheHitRatio() {
+        long hits = lineCountCacheHits.sum();
+        long lookups = hits + lineCountCacheMisses.sum();
+        return lookups > 0 ? hits * 100 / lookups : -1;
+    }
+
+    public long getEmissionLatencyMillis() {
+        return emissionLatencyMillis;
+    }
+
+    public long getEmissionQueueDepth() {
+        return emissionQueueDepth;
+    }
+}
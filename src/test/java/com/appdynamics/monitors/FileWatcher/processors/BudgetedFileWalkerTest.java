@@ -0,0 +1,113 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.monitors.FileWatcher.processors;
+
+import com.appdynamics.extensions.filewatcher.config.FileMetric;
+import com.appdynamics.extensions.filewatcher.config.PathToProcess;
+import com.appdynamics.extensions.filewatcher.processors.BudgetedFileWalker;
+import com.appdynamics.extensions.filewatcher.util.FileWatcherUtil;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+public class BudgetedFileWalkerTest {
+
+    private static final String BASE_DIRECTORY = "src/test/resources/TestFiles/";
+
+    private PathToProcess getPathToProcess() {
+        PathToProcess pathToProcess = new PathToProcess();
+        pathToProcess.setDisplayName("Fully Recursive");
+        pathToProcess.setPath("src/test/resources/TestFiles/**");
+        pathToProcess.setIgnoreHiddenFiles(false);
+        pathToProcess.setExcludeSubdirectoryCount(false);
+        pathToProcess.setEnableRecursiveFileCounts(true);
+        pathToProcess.setEnableRecursiveFileSizes(true);
+        return pathToProcess;
+    }
+
+    @Test
+    public void walkResumesUntilThePassCompletes() throws IOException {
+        Map<String, FileMetric> fullWalk = new HashMap<>();
+        FileWatcherUtil.walk(BASE_DIRECTORY, getPathToProcess(), fullWalk);
+
+        PathToProcess pathToProcess = getPathToProcess();
+        pathToProcess.setMaxEntriesPerCycle(2);
+        BudgetedFileWalker budgetedFileWalker = new BudgetedFileWalker(BASE_DIRECTORY, pathToProcess);
+
+        Map<String, FileMetric> fileMetrics = budgetedFileWalker.walk();
+        Assert.assertTrue(fileMetrics.size() < fullWalk.size());
+
+        int cycles = 1;
+        while (!fileMetrics.keySet().equals(fullWalk.keySet()) && cycles < 100) {
+            assertSameCounts(fullWalk, fileMetrics);
+            fileMetrics = budgetedFileWalker.walk();
+            cycles++;
+        }
+        Assert.assertEquals(fullWalk.keySet(), fileMetrics.keySet());
+        Assert.assertTrue(cycles > 1);
+        assertSameCounts(fullWalk, fileMetrics);
+
+        // Once a pass has completed, a partial pass reports the complete one for the entries it has not reached yet
+        Assert.assertEquals(fullWalk.keySet(), budgetedFileWalker.walk().keySet());
+    }
+
+    // Directories are only reported once their counts are complete
+    private static void assertSameCounts(Map<String, FileMetric> expected, Map<String, FileMetric> actual) {
+        for (Map.Entry<String, FileMetric> entry : actual.entrySet()) {
+            FileMetric fileMetric = expected.get(entry.getKey());
+            Assert.assertEquals(fileMetric.getNumberOfFiles(), entry.getValue().getNumberOfFiles());
+            Assert.assertEquals(fileMetric.getRecursiveNumberOfFiles(), entry.getValue().getRecursiveNumberOfFiles());
+            Assert.assertEquals(fileMetric.getRecursiveFileSize(), entry.getValue().getRecursiveFileSize());
+        }
+    }
+
+    @Test
+    public void walkWithoutBudgetCompletesInOneCycle() throws IOException {
+        Map<String, FileMetric> fullWalk = new HashMap<>();
+        FileWatcherUtil.walk(BASE_DIRECTORY, getPathToProcess(), fullWalk);
+
+        BudgetedFileWalker budgetedFileWalker = new BudgetedFileWalker(BASE_DIRECTORY, getPathToProcess());
+        Assert.assertEquals(fullWalk.keySet(), budgetedFileWalker.walk().keySet());
+    }
+
+    @Test
+    public void walkPausesInTheMiddleOfADirectory() throws IOException {
+        Path baseDirectory = Files.createTempDirectory("budgeted");
+        try {
+            for (int i = 0; i < 10; i++) {
+                Files.write(baseDirectory.resolve("file" + i + ".log"), new byte[i]);
+            }
+            PathToProcess pathToProcess = new PathToProcess();
+            pathToProcess.setDisplayName("Budgeted");
+            pathToProcess.setPath(baseDirectory + "/*.log");
+            pathToProcess.setIgnoreHiddenFiles(true);
+            pathToProcess.setMaxEntriesPerCycle(4);
+            BudgetedFileWalker budgetedFileWalker = new BudgetedFileWalker(baseDirectory.toString(), pathToProcess);
+
+            Assert.assertEquals(4, budgetedFileWalker.walk().size());
+            Assert.assertEquals(8, budgetedFileWalker.walk().size());
+            Assert.assertEquals(10, budgetedFileWalker.walk().size());
+
+            // Closing drops the pass in progress, the next one starts over
+            budgetedFileWalker = new BudgetedFileWalker(baseDirectory.toString(), pathToProcess);
+            Assert.assertEquals(4, budgetedFileWalker.walk().size());
+            budgetedFileWalker.close();
+            Assert.assertEquals(4, budgetedFileWalker.walk().size());
+            budgetedFileWalker.close();
+        } finally {
+            FileUtils.deleteDirectory(baseDirectory.toFile());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.monitors.FileWatcher.processors;
+
+import com.appdynamics.extensions.filewatcher.processors.ChangeDetector;
+import com.appdynamics.extensions.filewatcher.processors.ChangeDetector.Change;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+
+public class ChangeDetectorTest {
+
+    @Test
+    public void reportsCreatedModifiedAndDeletedPaths() {
+        ChangeDetector changeDetector = new ChangeDetector();
+        changeDetector.beginCycle();
+        Assert.assertEquals(Change.CREATED, changeDetector.observe("Logs|a.log", 1000));
+        Assert.assertEquals(Change.CREATED, changeDetector.observe("Logs|b.log", 1000));
+        changeDetector.endCycle();
+        Assert.assertEquals(2, changeDetector.getCreatedCount());
+
+        changeDetector.beginCycle();
+        Assert.assertEquals(Change.MODIFIED, changeDetector.observe("Logs|a.log", 2000));
+        Assert.assertEquals(Change.CREATED, changeDetector.observe("Logs|c.log", 2000));
+        changeDetector.endCycle();
+        Assert.assertEquals(1, changeDetector.getCreatedCount());
+        Assert.assertEquals(1, changeDetector.getModifiedCount());
+        Assert.assertEquals(Collections.singletonList("Logs|b.log"), changeDetector.getDeletedPaths());
+
+        changeDetector.beginCycle();
+        Assert.assertEquals(Change.UNCHANGED, changeDetector.observe("Logs|a.log", 2000));
+        changeDetector.retain("Logs|c.log");
+        changeDetector.endCycle();
+        Assert.assertEquals(0, changeDetector.getModifiedCount());
+        Assert.assertTrue(changeDetector.getDeletedPaths().isEmpty());
+    }
+
+    @Test
+    public void pathsAnAbortedCycleDidNotGetToAreReportedDeletedByTheNextCycle() {
+        ChangeDetector changeDetector = new ChangeDetector();
+        changeDetector.beginCycle();
+        changeDetector.observe("Logs|a.log", 1000);
+        changeDetector.observe("Logs|b.log", 1000);
+        changeDetector.endCycle();
+
+        // The walk fails after a.log
+        changeDetector.beginCycle();
+        changeDetector.observe("Logs|a.log", 1000);
+        changeDetector.abortCycle();
+        Assert.assertTrue(changeDetector.getDeletedPaths().isEmpty());
+
+        changeDetector.beginCycle();
+        changeDetector.observe("Logs|a.log", 1000);
+        changeDetector.endCycle();
+        Assert.assertEquals(Collections.singletonList("Logs|b.log"), changeDetector.getDeletedPaths());
+    }
+
+    @Test
+    public void forgetsPathsNotSeenForSeveralCycles() {
+        ChangeDetector changeDetector = new ChangeDetector(2);
+        changeDetector.beginCycle();
+        for (int i = 0; i < 100; i++) {
+            changeDetector.observe("Logs|file" + i, 1000);
+        }
+        changeDetector.endCycle();
+
+        changeDetector.beginCycle();
+        changeDetector.observe("Logs|file0", 1000);
+        changeDetector.endCycle();
+        Assert.assertEquals(100, changeDetector.size());
+        Assert.assertEquals(99, changeDetector.getDeletedPaths().size());
+
+        changeDetector.beginCycle();
+        changeDetector.observe("Logs|file0", 1000);
+        changeDetector.endCycle();
+        Assert.assertEquals(1, changeDetector.size());
+        Assert.assertTrue(changeDetector.getDeletedPaths().isEmpty());
+
+        changeDetector.beginCycle();
+        Assert.assertEquals(Change.CREATED, changeDetector.observe("Logs|file1", 1000));
+        changeDetector.endCycle();
+    }
+
+    @Test
+    public void countsCreatedDeletedRotatedFilesAndAppendedBytes() throws IOException {
+        Path root = Files.createTempDirectory("changes");
+        try {
+            assertChanges(root);
+        } finally {
+            FileUtils.deleteDirectory(root.toFile());
+        }
+    }
+
+    private static void assertChanges(Path root) throws IOException {
+        Path appended = write(root.resolve("appended.log"), "0123456789", false);
+        Path rotated = write(root.resolve("rotated.log"), "0123456789", false);
+        Path deleted = write(root.resolve("deleted.log"), "0123456789", false);
+
+        ChangeDetector changeDetector = new ChangeDetector();
+        changeDetector.beginCycle();
+        observe(changeDetector, appended, rotated, deleted);
+        changeDetector.endCycle();
+        Assert.assertEquals(0, changeDetector.takeChanges().getCreated());
+
+        write(appended, "01234", true);
+        Files.delete(rotated);
+        write(root.resolve("rotated.log.1"), "0123456789", false);
+        write(rotated, "012", false);
+        Files.delete(deleted);
+        Path created = write(root.resolve("created.log"), "0123456", false);
+
+        changeDetector.beginCycle();
+        Assert.assertEquals(Change.ROTATED, observe(changeDetector, rotated));
+        observe(changeDetector, appended, created);
+        changeDetector.endCycle();
+
+        ChangeDetector.Changes changes = changeDetector.takeChanges();
+        Assert.assertEquals(1, changes.getCreated());
+        Assert.assertEquals(1, changes.getDeleted());
+        Assert.assertEquals(1, changes.getRotated());
+        Assert.assertEquals(5 + 3 + 7, changes.getBytesAppended());
+        Assert.assertEquals(0, changeDetector.takeChanges().getBytesAppended());
+    }
+
+    private static Path write(Path file, String content, boolean append) throws IOException {
+        return Files.write(file, content.getBytes(StandardCharsets.UTF_8), append
+                ? new StandardOpenOption[]{StandardOpenOption.APPEND}
+                : new StandardOpenOption[]{StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING});
+    }
+
+    private static Change observe(ChangeDetector changeDetector, Path... files) throws IOException {
+        Change change = null;
+        for (Path file : files) {
+            change = changeDetector.observe(file.toString(), Files.readAttributes(file, BasicFileAttributes.class));
+        }
+        return change;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.monitors.FileWatcher.processors;
+
+import com.appdynamics.extensions.filewatcher.config.FileMetric;
+import com.appdynamics.extensions.filewatcher.config.PathToProcess;
+import com.appdynamics.extensions.filewatcher.processors.ColumnarFileMetricStore;
+import com.appdynamics.extensions.filewatcher.util.FileWatcherUtil;
+import com.appdynamics.extensions.filewatcher.util.PathIdTable;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ColumnarFileMetricStoreTest {
+
+    @Test
+    public void storeHoldsTheSameMetricsAsAMap() throws IOException {
+        String baseDirPath = "src/test/resources/TestFiles/";
+
+        PathToProcess pathToProcess = new PathToProcess();
+        pathToProcess.setDisplayName("Fully Recursive");
+        pathToProcess.setPath("src/test/resources/TestFiles/**");
+        pathToProcess.setIgnoreHiddenFiles(false);
+        pathToProcess.setExcludeSubdirectoryCount(false);
+        pathToProcess.setEnableRecursiveFileCounts(true);
+        pathToProcess.setEnableRecursiveFileSizes(true);
+
+        Map<String, FileMetric> fileMetrics = new HashMap<>();
+        FileWatcherUtil.walk(baseDirPath, pathToProcess, fileMetrics);
+
+        ColumnarFileMetricStore store = new ColumnarFileMetricStore();
+        for (int cycle = 0; cycle < 2; cycle++) {
+            store.beginCycle();
+            FileWatcherUtil.walk(baseDirPath, pathToProcess, store);
+            store.endCycle();
+
+            Assert.assertEquals(fileMetrics.keySet(), store.keySet());
+            for (Map.Entry<String, FileMetric> entry : fileMetrics.entrySet()) {
+                FileMetric expected = entry.getValue();
+                FileMetric actual = store.get(entry.getKey());
+                Assert.assertEquals(expected.getNumberOfFiles(), actual.getNumberOfFiles());
+                Assert.assertEquals(expected.getFileSize(), actual.getFileSize());
+                Assert.assertEquals(expected.getNumberOfLines(), actual.getNumberOfLines());
+                Assert.assertEquals(expected.getLastModifiedTime(), actual.getLastModifiedTime());
+                Assert.assertEquals(expected.getAvailable(), actual.getAvailable());
+                Assert.assertEquals(expected.getRecursiveNumberOfFiles(), actual.getRecursiveNumberOfFiles());
+                Assert.assertEquals(expected.getRecursiveFileSize(), actual.getRecursiveFileSize());
+            }
+        }
+    }
+
+    @Test
+    public void pathsNotSeenInACycleAreDropped() {
+        ColumnarFileMetricStore store = new ColumnarFileMetricStore();
+        FileMetric fileMetric = new FileMetric();
+        store.beginCycle();
+        for (int i = 0; i < 1000; i++) {
+            fileMetric.setFileSize(i);
+            store.put("Logs|file" + i, fileMetric);
+        }
+        store.endCycle();
+        Assert.assertEquals(1000, store.size());
+
+        store.beginCycle();
+        for (int i = 500; i < 1500; i++) {
+            fileMetric.setFileSize(i);
+            store.put("Logs|file" + i, fileMetric);
+        }
+        store.endCycle();
+        Assert.assertEquals(1000, store.size());
+        Assert.assertFalse(store.containsKey("Logs|file499"));
+        Assert.assertEquals(1499, store.get("Logs|file1499").getFileSize());
+        Assert.assertEquals(700, store.get("Logs|file700").getFileSize());
+    }
+
+    @Test
+    public void pathIdsAreReusedAfterRemoval() {
+        PathIdTable pathIds = new PathIdTable(8);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(i, pathIds.getOrAddId("path" + i));
+        }
+        for (int i = 0; i < 100; i += 2) {
+            pathIds.remove(i);
+        }
+        Assert.assertEquals(50, pathIds.size());
+        for (int i = 1; i < 100; i += 2) {
+            Assert.assertEquals(i, pathIds.getId("path" + i));
+        }
+        Assert.assertEquals(-1, pathIds.getId("path0"));
+        for (int i = 0; i < 50; i++) {
+            Assert.assertTrue(pathIds.getOrAddId("new" + i) < 100);
+        }
+        Assert.assertEquals(100, pathIds.getIdLimit());
+    }
+}
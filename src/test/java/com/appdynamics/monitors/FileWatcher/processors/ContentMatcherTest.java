@@ -0,0 +1,127 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.monitors.FileWatcher.processors;
+
+import com.appdynamics.extensions.filewatcher.config.ContentMatches;
+import com.appdynamics.extensions.filewatcher.config.ContentPattern;
+import com.appdynamics.extensions.filewatcher.util.ContentMatchCache;
+import com.appdynamics.extensions.filewatcher.util.ContentMatcher;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+public class ContentMatcherTest {
+
+    private Path file;
+
+    @Before
+    public void setup() throws IOException {
+        file = Files.createTempFile("content", ".log");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void countsLinesMatchingContentPatterns() throws IOException {
+        ContentMatchCache contentMatchCache = new ContentMatchCache(new ContentMatcher(Arrays.asList(
+                contentPattern("Errors", "ERROR", false), contentPattern(null, "ERR", false),
+                contentPattern("Timeouts", "timed out after [0-9]+ ms", true))));
+
+        write("ERROR one ERROR\r\nERR two\rtimed out after 30 ms\n\nok\r");
+        assertMatches(contentMatchCache, 1, 2, 1);
+        Assert.assertEquals("ERR", contentMatchCache.getMatches(file, attributes(file)).getName(1));
+
+        // The \n of a \r\n split across writes does not start a line, and the unfinished last line is scanned again
+        append("\nERR");
+        assertMatches(contentMatchCache, 1, 3, 1);
+        append("OR timed out after 5 ms");
+        assertMatches(contentMatchCache, 2, 3, 2);
+        append("\nERROR\n");
+        assertMatches(contentMatchCache, 3, 4, 2);
+
+        write("timed out after 1 ms\n");
+        assertMatches(contentMatchCache, 0, 0, 1);
+    }
+
+    @Test
+    public void regexMetacharactersOfLiteralPatternsAreMatchedAsIs() throws IOException {
+        ContentMatchCache contentMatchCache = new ContentMatchCache(new ContentMatcher(Arrays.asList(
+                contentPattern("Brackets", "[unclosed", false), contentPattern("Dots", "a.c", false))));
+
+        write("a [unclosed bracket\nabc\na.c\n");
+        assertMatches(contentMatchCache, 1, 1);
+    }
+
+    @Test
+    public void invalidRegexIsRejectedWhenTheMatcherIsBuilt() {
+        for (String invalidRegex : Arrays.asList("[unclosed", "timed out (after", "*ERROR", "a{2,1}")) {
+            try {
+                new ContentMatcher(Collections.singletonList(contentPattern("Invalid", invalidRegex, true)));
+                Assert.fail("Expected " + invalidRegex + " to be rejected");
+            } catch (PatternSyntaxException ex) {
+                Assert.assertEquals(invalidRegex, ex.getPattern());
+            }
+        }
+    }
+
+    @Test
+    public void regexIsCompiledOnceForValidationAndMatching() {
+        ContentPattern contentPattern = contentPattern("Timeouts", "timed out after [0-9]+ ms", true);
+        Pattern compiledPattern = contentPattern.getCompiledPattern();
+        new ContentMatcher(Collections.singletonList(contentPattern));
+        Assert.assertSame(compiledPattern, contentPattern.getCompiledPattern());
+
+        contentPattern.setPattern("timed out");
+        Assert.assertEquals("timed out", contentPattern.getCompiledPattern().pattern());
+    }
+
+    private void assertMatches(ContentMatchCache contentMatchCache, long... counts) throws IOException {
+        ContentMatches contentMatches = contentMatchCache.getMatches(file, attributes(file));
+        long[] actual = new long[contentMatches.size()];
+        for (int i = 0; i < actual.length; i++) {
+            actual[i] = contentMatches.getCount(i);
+        }
+        Assert.assertEquals(Arrays.toString(counts), Arrays.toString(actual));
+    }
+
+    private static ContentPattern contentPattern(String name, String pattern, boolean regex) {
+        ContentPattern contentPattern = new ContentPattern();
+        contentPattern.setName(name);
+        contentPattern.setPattern(pattern);
+        contentPattern.setRegex(regex);
+        return contentPattern;
+    }
+
+    private void write(String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void append(String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+
+    private static BasicFileAttributes attributes(Path path) throws IOException {
+        return Files.readAttributes(path, BasicFileAttributes.class);
+    }
+}
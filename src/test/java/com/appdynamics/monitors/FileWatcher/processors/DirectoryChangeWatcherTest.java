@@ -0,0 +1,103 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.monitors.FileWatcher.processors;
+
+import com.appdynamics.extensions.filewatcher.config.FileMetric;
+import com.appdynamics.extensions.filewatcher.config.PathToProcess;
+import com.appdynamics.extensions.filewatcher.processors.DirectoryChangeWatcher;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.function.Predicate;
+
+public class DirectoryChangeWatcherTest {
+
+    private Path root;
+    private DirectoryChangeWatcher watcher;
+
+    @Before
+    public void setup() throws IOException {
+        root = Files.createTempDirectory("watcher");
+        Files.createDirectories(root.resolve("dir1"));
+        Files.write(root.resolve("dir1/a.txt"), "1\n2\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(root.resolve("b.txt"), "1\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (watcher != null) {
+            watcher.close();
+        }
+        FileUtils.deleteDirectory(root.toFile());
+    }
+
+    @Test
+    public void refreshAppliesCreateModifyAndDeleteEvents() throws Exception {
+        PathToProcess pathToProcess = new PathToProcess();
+        pathToProcess.setDisplayName("Events");
+        pathToProcess.setPath(root.toString() + "/**");
+        pathToProcess.setIgnoreHiddenFiles(true);
+        pathToProcess.setExcludeSubdirectoryCount(true);
+        watcher = new DirectoryChangeWatcher(root.toString() + "/", pathToProcess);
+
+        Map<String, FileMetric> fileMetrics = watcher.refresh();
+        Assert.assertEquals(3, fileMetrics.size());
+        Assert.assertEquals(1, fileMetrics.get("Events|dir1").getNumberOfFiles());
+
+        Files.write(root.resolve("dir1/c.txt"), "1\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(root.resolve("dir1/a.txt"), "3\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        Files.delete(root.resolve("b.txt"));
+
+        // Events can arrive over several refreshes, so it waits for all three of them
+        fileMetrics = refreshUntil(metrics -> metrics.containsKey("Events|dir1|c.txt")
+                && !metrics.containsKey("Events|b.txt")
+                && metrics.get("Events|dir1|a.txt").getNumberOfLines() == 3);
+        Assert.assertEquals(3, fileMetrics.size());
+        Assert.assertTrue(fileMetrics.containsKey("Events|dir1|c.txt"));
+        Assert.assertFalse(fileMetrics.containsKey("Events|b.txt"));
+        Assert.assertEquals(3, fileMetrics.get("Events|dir1|a.txt").getNumberOfLines());
+        Assert.assertEquals(2, fileMetrics.get("Events|dir1").getNumberOfFiles());
+    }
+
+    @Test
+    public void refreshWalksNewlyCreatedDirectories() throws Exception {
+        PathToProcess pathToProcess = new PathToProcess();
+        pathToProcess.setDisplayName("Events");
+        pathToProcess.setPath(root.toString() + "/**");
+        pathToProcess.setIgnoreHiddenFiles(true);
+        pathToProcess.setExcludeSubdirectoryCount(true);
+        watcher = new DirectoryChangeWatcher(root.toString() + "/", pathToProcess);
+        watcher.refresh();
+
+        Files.createDirectories(root.resolve("dir2"));
+        Files.write(root.resolve("dir2/d.txt"), "1\n".getBytes(StandardCharsets.UTF_8));
+
+        Map<String, FileMetric> fileMetrics = refreshUntil(metrics -> metrics.containsKey("Events|dir2|d.txt"));
+        Assert.assertTrue(fileMetrics.containsKey("Events|dir2"));
+        Assert.assertTrue(fileMetrics.containsKey("Events|dir2|d.txt"));
+    }
+
+    private Map<String, FileMetric> refreshUntil(Predicate<Map<String, FileMetric>> condition) throws Exception {
+        Map<String, FileMetric> fileMetrics = watcher.refresh();
+        for (int attempt = 0; attempt < 50 && !condition.test(fileMetrics); attempt++) {
+            Thread.sleep(100);
+            fileMetrics = watcher.refresh();
+        }
+        return fileMetrics;
+    }
+}
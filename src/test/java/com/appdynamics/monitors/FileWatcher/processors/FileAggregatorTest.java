@@ -0,0 +1,152 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.monitors.FileWatcher.processors;
+
+import com.appdynamics.extensions.filewatcher.config.FileMetric;
+import com.appdynamics.extensions.filewatcher.config.PathToProcess;
+import com.appdynamics.extensions.filewatcher.processors.ChangeDetector;
+import com.appdynamics.extensions.filewatcher.processors.FileAggregator;
+import com.appdynamics.extensions.filewatcher.util.FileWatcherUtil;
+import com.appdynamics.extensions.filewatcher.util.LogHistogram;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class FileAggregatorTest {
+
+    @Test
+    public void matchingFilesAreRolledUpPerDirectory() throws IOException {
+        Path baseDirectory = Files.createTempDirectory("aggregation");
+        try {
+            for (int directory = 0; directory < 3; directory++) {
+                Path subdirectory = Files.createDirectory(baseDirectory.resolve("queue" + directory));
+                for (int file = 0; file < 10; file++) {
+                    Path path = Files.write(subdirectory.resolve("message" + file + ".msg"), new byte[file * 200]);
+                    Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis() - file * 60000L));
+                }
+            }
+            PathToProcess pathToProcess = getPathToProcess(baseDirectory, "directory", 0, 2);
+
+            Map<String, FileMetric> fileMetrics = new HashMap<>();
+            FileAggregator fileAggregator = new FileAggregator(pathToProcess, 10, 9);
+            FileWatcherUtil.walk(baseDirectory.toString(), pathToProcess, fileMetrics, null, new ChangeDetector(),
+                    fileAggregator);
+
+            Assert.assertTrue(fileMetrics.isEmpty());
+            List<FileAggregator.Rollup> rollups = fileAggregator.getRollups();
+            Assert.assertEquals(3, rollups.size());
+            for (FileAggregator.Rollup rollup : rollups) {
+                Assert.assertTrue(rollup.getKey().startsWith("Queues|queue"));
+                Assert.assertEquals(10, rollup.getCount());
+                Assert.assertEquals(45 * 200, rollup.getTotalBytes());
+                Assert.assertEquals(6, rollup.getFilesUnder1KB());
+                Assert.assertEquals(4, rollup.getFilesUnder1MB());
+                Assert.assertTrue(rollup.getMinAge() < 60);
+                Assert.assertTrue(rollup.getMaxAge() >= 9 * 60 - 1);
+                Assert.assertTrue(rollup.getAgePercentile(50) <= rollup.getAgePercentile(90));
+            }
+
+            Map<String, FileMetric> topFiles = fileAggregator.getTopFiles();
+            Assert.assertTrue(topFiles.size() >= 2 && topFiles.size() <= 4);
+            for (FileMetric fileMetric : topFiles.values()) {
+                Assert.assertEquals(-1, fileMetric.getNumberOfLines());
+            }
+        } finally {
+            FileUtils.deleteDirectory(baseDirectory.toFile());
+        }
+    }
+
+    @Test
+    public void directoriesBeyondTheSeriesCapAreRolledUpIntoOther() throws IOException {
+        Path baseDirectory = Files.createTempDirectory("aggregation");
+        try {
+            for (int directory = 0; directory < 20; directory++) {
+                Path subdirectory = Files.createDirectory(baseDirectory.resolve("queue" + directory));
+                Files.write(subdirectory.resolve("message.msg"), new byte[10]);
+            }
+            // One file that is both the largest and the oldest, so that it is the only top file
+            Path topFile = Files.write(baseDirectory.resolve("queue7").resolve("message.msg"), new byte[20]);
+            Files.setLastModifiedTime(topFile, FileTime.fromMillis(System.currentTimeMillis() - 3600000L));
+            // Room for the Other rollup, two top files of 9 metrics each and 4 more rollups
+            PathToProcess pathToProcess = getPathToProcess(baseDirectory, "directory", 10 + 2 * 9 + 4 * 10, 1);
+
+            FileAggregator fileAggregator = new FileAggregator(pathToProcess, 10, 9);
+            FileWatcherUtil.walk(baseDirectory.toString(), pathToProcess, new HashMap<>(), null,
+                    new ChangeDetector(), fileAggregator);
+
+            List<FileAggregator.Rollup> rollups = fileAggregator.getRollups();
+            Assert.assertEquals(5, rollups.size());
+            FileAggregator.Rollup other = rollups.get(4);
+            Assert.assertEquals("Queues|Other", other.getKey());
+            Assert.assertEquals(16, other.getCount());
+            Assert.assertEquals(Collections.singleton("Queues|queue7|message.msg"),
+                    fileAggregator.getTopFiles().keySet());
+        } finally {
+            FileUtils.deleteDirectory(baseDirectory.toFile());
+        }
+    }
+
+    @Test
+    public void pathAggregationHasASingleRollup() throws IOException {
+        File baseDirectory = new File("src/test/resources/TestFiles/");
+        PathToProcess pathToProcess = getPathToProcess(baseDirectory.toPath(), "path", 0, 0);
+        pathToProcess.setPath("src/test/resources/TestFiles/**");
+
+        Map<String, FileMetric> fileMetrics = new HashMap<>();
+        FileAggregator fileAggregator = new FileAggregator(pathToProcess, 10, 9);
+        FileWatcherUtil.walk("src/test/resources/TestFiles/", pathToProcess, fileMetrics, null,
+                new ChangeDetector(), fileAggregator);
+
+        Assert.assertEquals(1, fileAggregator.getRollups().size());
+        FileAggregator.Rollup rollup = fileAggregator.getRollups().get(0);
+        Assert.assertEquals("Queues", rollup.getKey());
+        Assert.assertTrue(rollup.getCount() > 0);
+        Assert.assertTrue(fileAggregator.getTopFiles().isEmpty());
+        for (String key : fileMetrics.keySet()) {
+            Assert.assertTrue(Files.isDirectory(new File(baseDirectory, key.replace("Queues|", "")
+                    .replace('|', File.separatorChar)).toPath()));
+        }
+    }
+
+    @Test
+    public void histogramPercentilesAreWithinABucketOfTheExactValue() {
+        LogHistogram histogram = new LogHistogram();
+        for (long value = 1; value <= 100000; value++) {
+            histogram.record(value);
+        }
+        Assert.assertEquals(1, histogram.getMin());
+        Assert.assertEquals(100000, histogram.getMax());
+        Assert.assertEquals(100000, histogram.getCount());
+        Assert.assertEquals(50000, histogram.getPercentile(50), 50000 / 8);
+        Assert.assertEquals(95000, histogram.getPercentile(95), 95000 / 8);
+        Assert.assertEquals(100000, histogram.getPercentile(100));
+        Assert.assertEquals(-1, new LogHistogram().getPercentile(50));
+    }
+
+    private PathToProcess getPathToProcess(Path baseDirectory, String aggregation, int maxSeries, int topFiles) {
+        PathToProcess pathToProcess = new PathToProcess();
+        pathToProcess.setDisplayName("Queues");
+        pathToProcess.setPath(baseDirectory + "/**/*.msg");
+        pathToProcess.setIgnoreHiddenFiles(false);
+        pathToProcess.setAggregation(aggregation);
+        pathToProcess.setMaxSeries(maxSeries);
+        pathToProcess.setTopFiles(topFiles);
+        return pathToProcess;
+    }
+}
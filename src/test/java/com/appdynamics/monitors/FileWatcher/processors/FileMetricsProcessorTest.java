@@ -0,0 +1,121 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.monitors.FileWatcher.processors;
+
+import com.appdynamics.extensions.MetricWriteHelper;
+import com.appdynamics.extensions.filewatcher.config.FileMetric;
+import com.appdynamics.extensions.filewatcher.processors.FileMetricsProcessor;
+import com.appdynamics.extensions.filewatcher.processors.MetricEmissionPlan;
+import com.appdynamics.extensions.metrics.Metric;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.appdynamics.extensions.filewatcher.util.Constants.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class FileMetricsProcessorTest {
+
+    private MetricWriteHelper metricWriteHelper;
+    private List<Integer> batchSizes;
+    private Set<String> publishingThreads;
+
+    @Before
+    public void setUp() {
+        metricWriteHelper = mock(MetricWriteHelper.class);
+        batchSizes = Collections.synchronizedList(new ArrayList<>());
+        publishingThreads = Collections.synchronizedSet(new HashSet<>());
+        doAnswer(invocation -> {
+            publishingThreads.add(Thread.currentThread().getName());
+            batchSizes.add(((List<Metric>) invocation.getArgument(0)).size());
+            return null;
+        }).when(metricWriteHelper).transformAndPrintMetrics(anyList());
+    }
+
+    private static MetricEmissionPlan getPlan(int batchSize, long lingerMillis) {
+        Map<String, Map<String, ?>> metrics = new LinkedHashMap<>();
+        for (String name : new String[]{FILE_SIZE, MODIFIED}) {
+            Map<String, Object> properties = new HashMap<>();
+            properties.put("alias", name);
+            metrics.put(name, properties);
+        }
+        return new MetricEmissionPlan("Custom Metrics|File Watcher", metrics, batchSize, lingerMillis);
+    }
+
+    private static Map<String, FileMetric> getFileMetrics(int entries) {
+        Map<String, FileMetric> fileMetrics = new HashMap<>();
+        for (int i = 0; i < entries; i++) {
+            FileMetric fileMetric = new FileMetric();
+            fileMetric.setFileSize(i);
+            fileMetric.setModified(true);
+            fileMetrics.put("Logs|file" + i, fileMetric);
+        }
+        return fileMetrics;
+    }
+
+    @Test
+    public void publishesFullBatchesAndTheRemainder() {
+        FileMetricsProcessor fileMetricsProcessor = new FileMetricsProcessor(getPlan(4, 0), metricWriteHelper);
+        Map<String, FileMetric> fileMetrics = getFileMetrics(3);
+        fileMetricsProcessor.printMetrics(fileMetrics);
+
+        Assert.assertEquals(Arrays.asList(4, 2), batchSizes);
+        for (FileMetric fileMetric : fileMetrics.values()) {
+            Assert.assertFalse(fileMetric.getModified());
+        }
+    }
+
+    @Test
+    public void lingeringBatchIsPublishedOnFlush() {
+        FileMetricsProcessor fileMetricsProcessor = new FileMetricsProcessor(getPlan(0, 60000), metricWriteHelper);
+        fileMetricsProcessor.printMetrics(getFileMetrics(2));
+        fileMetricsProcessor.printMetrics(getFileMetrics(3));
+        Assert.assertTrue(batchSizes.isEmpty());
+
+        fileMetricsProcessor.flush();
+        Assert.assertEquals(Collections.singletonList(10), batchSizes);
+        fileMetricsProcessor.flush();
+        Assert.assertEquals(Collections.singletonList(10), batchSizes);
+    }
+
+    @Test
+    public void batchesArePublishedOnTheEmitterBeforeFlushReturns() {
+        ExecutorService emitter = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "emitter"));
+        try {
+            FileMetricsProcessor fileMetricsProcessor = new FileMetricsProcessor(getPlan(4, 0), metricWriteHelper,
+                    emitter);
+            fileMetricsProcessor.printMetrics(getFileMetrics(3));
+            fileMetricsProcessor.printMetrics(getFileMetrics(5));
+            fileMetricsProcessor.flush();
+
+            Assert.assertEquals(Arrays.asList(4, 2, 4, 4, 2), batchSizes);
+            Assert.assertEquals(Collections.singleton("emitter"), publishingThreads);
+        } finally {
+            emitter.shutdownNow();
+        }
+    }
+
+    @Test
+    public void batchesArePublishedInlineOnceTheEmitterIsShutDown() {
+        ExecutorService emitter = Executors.newSingleThreadExecutor();
+        emitter.shutdown();
+        FileMetricsProcessor fileMetricsProcessor = new FileMetricsProcessor(getPlan(4, 0), metricWriteHelper, emitter);
+        fileMetricsProcessor.printMetrics(getFileMetrics(3));
+        fileMetricsProcessor.flush();
+
+        Assert.assertEquals(Arrays.asList(4, 2), batchSizes);
+        Assert.assertEquals(Collections.singleton(Thread.currentThread().getName()), publishingThreads);
+    }
+}
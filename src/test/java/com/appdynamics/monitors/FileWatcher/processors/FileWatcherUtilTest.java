@@ -15,12 +15,16 @@ package com.appdynamics.monitors.FileWatcher.processors;
 import com.appdynamics.extensions.filewatcher.config.PathToProcess;
 import com.appdynamics.extensions.filewatcher.processors.FilePathProcessor;
 import com.appdynamics.extensions.filewatcher.util.FileWatcherUtil;
+import org.apache.commons.io.FileUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
 import java.util.List;
 
 public class FileWatcherUtilTest {
@@ -84,4 +88,23 @@ public class FileWatcherUtilTest {
         Assert.assertEquals(0, FileWatcherUtil.getNumberOfLinesFromFile(path));
     }
 
-}
\ No newline at end of file
+
+    @Test
+    public void attributeChecksMatchPathChecks() throws IOException {
+        Path directory = Files.createTempDirectory("attributes");
+        try {
+            Path hidden = Files.createFile(directory.resolve(".hidden.txt"));
+            Path visible = Files.createFile(directory.resolve("visible.txt"));
+            for (Path path : Arrays.asList(directory, hidden, visible)) {
+                BasicFileAttributes attributes = FileWatcherUtil.readAttributes(path);
+                Assert.assertEquals(path.toFile().isHidden(), FileWatcherUtil.isHidden(path, attributes));
+                Assert.assertEquals(FileWatcherUtil.isDirectoryAccessible(path),
+                        FileWatcherUtil.isDirectoryAccessible(path, attributes));
+                Assert.assertEquals(FileWatcherUtil.isFileAccessible(path),
+                        FileWatcherUtil.isFileAccessible(path, attributes));
+            }
+        } finally {
+            FileUtils.deleteDirectory(directory.toFile());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.monitors.FileWatcher.processors;
+
+import com.appdynamics.extensions.filewatcher.config.FileMetric;
+import com.appdynamics.extensions.filewatcher.config.PathToProcess;
+import com.appdynamics.extensions.filewatcher.helpers.GlobPathMatcher;
+import com.appdynamics.extensions.filewatcher.util.FileWatcherUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+public class GlobPathMatcherTest {
+
+    private static GlobPathMatcher getMatcher(String path) {
+        PathToProcess pathToProcess = new PathToProcess();
+        pathToProcess.setDisplayName("Matcher");
+        pathToProcess.setPath(path);
+        return (GlobPathMatcher) FileWatcherUtil.getPathMatcher(pathToProcess);
+    }
+
+    @Test
+    public void canMatchDescendantFollowsTheLeadingSegments() {
+        GlobPathMatcher matcher = getMatcher("/A/B/Test*/*.*");
+        Assert.assertTrue(matcher.canMatchDescendant(Paths.get("/")));
+        Assert.assertTrue(matcher.canMatchDescendant(Paths.get("/A/B")));
+        Assert.assertTrue(matcher.canMatchDescendant(Paths.get("/A/B/TestFiles")));
+        Assert.assertFalse(matcher.canMatchDescendant(Paths.get("/A/B/Other")));
+        Assert.assertFalse(matcher.canMatchDescendant(Paths.get("/A/C")));
+        Assert.assertFalse(matcher.canMatchDescendant(Paths.get("/A/B/TestFiles/dir1")));
+    }
+
+    @Test
+    public void canMatchDescendantNeverPrunesBelowDoubleStar() {
+        GlobPathMatcher matcher = getMatcher("/A/**/*.txt");
+        Assert.assertTrue(matcher.canMatchDescendant(Paths.get("/A/B/C/D/E")));
+        Assert.assertFalse(matcher.canMatchDescendant(Paths.get("/B/C")));
+    }
+
+    @Test
+    public void canMatchDescendantDoesNotPruneGroups() {
+        Assert.assertTrue(getMatcher("/A/{B,C/D}/*").canMatchDescendant(Paths.get("/A/C/D")));
+    }
+
+    @Test
+    public void matchersAreCompiledOncePerPath() {
+        GlobPathMatcher matcher = getMatcher("/A/B/*");
+        Assert.assertSame(matcher, getMatcher("/A/B/*"));
+        FileWatcherUtil.clearPathMatchers();
+        Assert.assertNotSame(matcher, getMatcher("/A/B/*"));
+    }
+
+    @Test
+    public void walkWithPrunedSubtreesReportsMatchingEntries() throws IOException {
+        PathToProcess pathToProcess = new PathToProcess();
+        pathToProcess.setDisplayName("Pruned");
+        pathToProcess.setPath("src/test/resources/TestFiles/*.txt");
+        pathToProcess.setIgnoreHiddenFiles(true);
+        pathToProcess.setExcludeSubdirectoryCount(false);
+
+        Map<String, FileMetric> fileMetrics = new HashMap<>();
+        FileWatcherUtil.walk("src/test/resources/TestFiles/", pathToProcess, fileMetrics);
+
+        Assert.assertEquals(1, fileMetrics.size());
+        Assert.assertTrue(fileMetrics.containsKey("Pruned|TF1.txt"));
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.monitors.FileWatcher.processors;
+
+import com.appdynamics.extensions.filewatcher.config.FileMetric;
+import com.appdynamics.extensions.filewatcher.config.PathToProcess;
+import com.appdynamics.extensions.filewatcher.processors.ChangeDetector;
+import com.appdynamics.extensions.filewatcher.processors.LineCountPool;
+import com.appdynamics.extensions.filewatcher.util.FileWatcherUtil;
+import com.appdynamics.extensions.filewatcher.util.LineCountCache;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+public class LineCountCacheTest {
+
+    private Path file;
+    private LineCountCache lineCountCache;
+
+    @Before
+    public void setup() throws IOException {
+        file = Files.createTempFile("lines", ".log");
+        lineCountCache = new LineCountCache();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void countsLinesLikeBufferedReader() throws IOException {
+        Path path = Paths.get("src/test/resources/TestFiles/TF1.txt");
+        Assert.assertEquals(259, lineCountCache.getNumberOfLines(path, attributes(path)));
+        Assert.assertEquals(259, lineCountCache.getNumberOfLines(path, attributes(path)));
+
+        write("a\r\nb\rc\n\nd");
+        Assert.assertEquals(FileWatcherUtil.getNumberOfLinesFromFile(file), count());
+    }
+
+    @Test
+    public void countsLineBreaksAtEveryOffset() throws IOException {
+        // Line breaks placed at every position of an eight byte word and across word boundaries
+        StringBuilder content = new StringBuilder();
+        String[] breaks = {"\n", "\r", "\r\n", "\n\r", "\r\r\n"};
+        for (int i = 0; i < 200; i++) {
+            content.append("abcdefghij", 0, i % 10).append(breaks[i % breaks.length]);
+        }
+        content.append("tail");
+        write(content.toString());
+        Assert.assertEquals(readLines(file), count());
+        Assert.assertEquals(readLines(file), FileWatcherUtil.getNumberOfLinesFromFile(file));
+    }
+
+    @Test
+    public void countsOnlyAppendedBytes() throws IOException {
+        write("a\nb\r");
+        Assert.assertEquals(2, count());
+
+        append("\nc");
+        Assert.assertEquals(3, count());
+
+        append("c\nd\n");
+        Assert.assertEquals(FileWatcherUtil.getNumberOfLinesFromFile(file), count());
+        Assert.assertEquals(4, count());
+    }
+
+    @Test
+    public void recountsAfterTruncation() throws IOException {
+        write("a\nb\nc\n");
+        Assert.assertEquals(3, count());
+
+        write("a\n");
+        Assert.assertEquals(1, count());
+    }
+
+    @Test
+    public void lineCountPoolAttachesCountsAfterTheWalk() throws IOException {
+        Path baseDirectory = Files.createTempDirectory("lineCountPool");
+        LineCountPool lineCountPool = new LineCountPool(2, 100, 10000);
+        try {
+            for (int i = 1; i <= 20; i++) {
+                StringBuilder content = new StringBuilder();
+                for (int line = 0; line < i * 50; line++) {
+                    content.append("line ").append(line).append('\n');
+                }
+                Files.write(baseDirectory.resolve("file" + i + ".log"),
+                        content.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            PathToProcess pathToProcess = new PathToProcess();
+            pathToProcess.setDisplayName("Pool");
+            pathToProcess.setPath(baseDirectory + "/*.log");
+            pathToProcess.setIgnoreHiddenFiles(true);
+
+            Map<String, FileMetric> fileMetrics = new HashMap<>();
+            LineCountPool.Batch lineCountBatch = lineCountPool.begin(pathToProcess, baseDirectory.toString());
+            FileWatcherUtil.walk(baseDirectory.toString(), pathToProcess, fileMetrics, null, new ChangeDetector(), null,
+                    lineCountBatch);
+            lineCountBatch.attach(fileMetrics);
+
+            Assert.assertEquals(20, fileMetrics.size());
+            for (int i = 1; i <= 20; i++) {
+                Assert.assertEquals(i * 50, fileMetrics.get("Pool|file" + i + ".log").getNumberOfLines());
+            }
+        } finally {
+            lineCountPool.close();
+            FileUtils.deleteDirectory(baseDirectory.toFile());
+        }
+    }
+
+    @Test
+    public void reportsLastKnownCountAndBytesToCount() throws IOException {
+        write("a\nb\n");
+        Assert.assertEquals(-1, lineCountCache.getLastNumberOfLines(file));
+        Assert.assertEquals(4, lineCountCache.getBytesToCount(file, attributes(file)));
+        Assert.assertEquals(2, count());
+        Assert.assertTrue(lineCountCache.isCurrent(file, attributes(file)));
+
+        append("c\n");
+        Assert.assertFalse(lineCountCache.isCurrent(file, attributes(file)));
+        Assert.assertEquals(2, lineCountCache.getLastNumberOfLines(file));
+        Assert.assertEquals(2, lineCountCache.getBytesToCount(file, attributes(file)));
+    }
+
+    @Test
+    public void countsDecompressedLinesOfGzipFiles() throws IOException {
+        Path gzipFile = Files.createTempFile("lines", ".log.gz");
+        try {
+            StringBuilder content = new StringBuilder();
+            for (int line = 0; line < 100000; line++) {
+                content.append("request ").append(line).append(line % 3 == 0 ? "\r\n" : "\n");
+            }
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            gzip(compressed, content.toString());
+            Files.write(gzipFile, compressed.toByteArray());
+            Assert.assertEquals(100000, lineCountCache.getNumberOfLines(gzipFile, attributes(gzipFile)));
+            Assert.assertTrue(lineCountCache.isCurrent(gzipFile, attributes(gzipFile)));
+            Assert.assertEquals(100000, FileWatcherUtil.getNumberOfLinesFromFile(gzipFile));
+
+            // Concatenated members, the last one without a line break at its end
+            gzip(compressed, "last\nline");
+            Files.write(gzipFile, compressed.toByteArray());
+            Assert.assertEquals(100002, lineCountCache.getNumberOfLines(gzipFile, attributes(gzipFile)));
+
+            compressed.reset();
+            gzip(compressed, "");
+            Files.write(gzipFile, compressed.toByteArray());
+            Assert.assertEquals(0, lineCountCache.getNumberOfLines(gzipFile, attributes(gzipFile)));
+        } finally {
+            Files.deleteIfExists(gzipFile);
+        }
+    }
+
+    private static void gzip(ByteArrayOutputStream compressed, String content) throws IOException {
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(compressed)) {
+            gzipOutputStream.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private long count() throws IOException {
+        return lineCountCache.getNumberOfLines(file, attributes(file));
+    }
+
+    private void write(String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void append(String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+
+    private static BasicFileAttributes attributes(Path path) throws IOException {
+        return Files.readAttributes(path, BasicFileAttributes.class);
+    }
+
+    private static long readLines(Path path) throws IOException {
+        long lines = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            while (reader.readLine() != null) {
+                lines++;
+            }
+        }
+        return lines;
+    }
+}
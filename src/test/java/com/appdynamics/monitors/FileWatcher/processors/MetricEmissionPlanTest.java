@@ -0,0 +1,92 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.monitors.FileWatcher.processors;
+
+import com.appdynamics.extensions.filewatcher.config.FileMetric;
+import com.appdynamics.extensions.filewatcher.processors.ChangeDetector;
+import com.appdynamics.extensions.filewatcher.processors.MetricEmissionPlan;
+import com.appdynamics.extensions.metrics.Metric;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.appdynamics.extensions.filewatcher.util.Constants.*;
+
+public class MetricEmissionPlanTest {
+
+    private static Map<String, Map<String, ?>> getMetricsFromConfig(String... names) {
+        Map<String, Map<String, ?>> metrics = new LinkedHashMap<>();
+        for (String name : names) {
+            Map<String, Object> properties = new HashMap<>();
+            properties.put("alias", name + " Alias");
+            metrics.put(name, properties);
+        }
+        return metrics;
+    }
+
+    @Test
+    public void addsConfiguredMetricsAndSkipsUnsetValues() {
+        MetricEmissionPlan plan = new MetricEmissionPlan("Custom Metrics|File Watcher ",
+                getMetricsFromConfig(FILE_SIZE, NUMBER_OF_LINES, AVAILABLE, RECURSIVE_FILE_SIZE));
+        Assert.assertEquals(4, plan.getMetricsPerEntry());
+
+        FileMetric fileMetric = new FileMetric();
+        fileMetric.setFileSize(1024);
+        fileMetric.setNumberOfLines(12);
+        fileMetric.setAvailable(true);
+        fileMetric.setRecursiveFileSize(-1);
+
+        List<Metric> metrics = new ArrayList<>();
+        plan.addMetrics("Logs|app.log", fileMetric, metrics);
+
+        Assert.assertEquals(3, metrics.size());
+        Assert.assertEquals(FILE_SIZE, metrics.get(0).getMetricName());
+        Assert.assertEquals("1024", metrics.get(0).getMetricValue());
+        Assert.assertEquals("Custom Metrics|File Watcher|Logs|app.log|fileSize Alias", metrics.get(0).getMetricPath());
+        Assert.assertEquals("12", metrics.get(1).getMetricValue());
+        Assert.assertEquals("true", metrics.get(2).getMetricValue());
+    }
+
+    @Test
+    public void reusesMetricPathsButNotMetrics() {
+        MetricEmissionPlan plan = new MetricEmissionPlan("Custom Metrics|File Watcher",
+                getMetricsFromConfig(FILE_COUNT));
+        FileMetric fileMetric = new FileMetric();
+        fileMetric.setNumberOfFiles(3);
+
+        List<Metric> first = new ArrayList<>();
+        plan.addMetrics("Logs", fileMetric, first);
+        fileMetric.setNumberOfFiles(4);
+        List<Metric> second = new ArrayList<>();
+        plan.addMetrics("Logs", fileMetric, second);
+
+        Assert.assertNotSame(first.get(0), second.get(0));
+        Assert.assertSame(first.get(0).getMetricPath(), second.get(0).getMetricPath());
+        Assert.assertEquals("3", first.get(0).getMetricValue());
+        Assert.assertEquals("4", second.get(0).getMetricValue());
+    }
+
+    @Test
+    public void addsChangeMetricsUnderTheDisplayName() {
+        MetricEmissionPlan plan = new MetricEmissionPlan("Custom Metrics|File Watcher",
+                getMetricsFromConfig(FILE_SIZE, FILES_CREATED, BYTES_APPENDED));
+        List<Metric> metrics = new ArrayList<>();
+        plan.addChangeMetrics("Spool", new ChangeDetector.Changes(), metrics);
+
+        Assert.assertEquals(2, metrics.size());
+        Assert.assertEquals("Custom Metrics|File Watcher|Spool|filesCreated Alias", metrics.get(0).getMetricPath());
+        Assert.assertEquals("0", metrics.get(0).getMetricValue());
+        Assert.assertEquals(BYTES_APPENDED, metrics.get(1).getMetricName());
+    }
+}
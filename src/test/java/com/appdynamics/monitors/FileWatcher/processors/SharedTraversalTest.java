@@ -0,0 +1,140 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.monitors.FileWatcher.processors;
+
+import com.appdynamics.extensions.filewatcher.config.FileMetric;
+import com.appdynamics.extensions.filewatcher.config.PathToProcess;
+import com.appdynamics.extensions.filewatcher.helpers.GlobPathMatcher;
+import com.appdynamics.extensions.filewatcher.processors.ChangeDetector;
+import com.appdynamics.extensions.filewatcher.processors.CustomFileWalker;
+import com.appdynamics.extensions.filewatcher.processors.SharedTraversal;
+import com.appdynamics.extensions.filewatcher.util.FileWatcherUtil;
+import com.appdynamics.extensions.filewatcher.util.WalkStatistics;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+public class SharedTraversalTest {
+    private static final String BASE_DIRECTORY = "src/test/resources/TestFiles/";
+
+    @Test
+    public void sharedTraversalReportsTheSameMetricsAsSeparateWalks() throws IOException {
+        List<PathToProcess> pathsToProcess = Arrays.asList(
+                getPathToProcess("Fully Recursive", BASE_DIRECTORY + "**", true),
+                getPathToProcess("Single Level", BASE_DIRECTORY + "*", false),
+                getPathToProcess("Text Files", BASE_DIRECTORY + "**.txt", false),
+                getPathToProcess("Specific Directory", BASE_DIRECTORY + "dir2", true),
+                getPathToProcess("Specific File", BASE_DIRECTORY + "TF1.txt", false));
+
+        List<Map<String, FileMetric>> separateMetrics = new ArrayList<>();
+        for (PathToProcess pathToProcess : pathsToProcess) {
+            Map<String, FileMetric> fileMetrics = new HashMap<>();
+            FileWatcherUtil.walk(BASE_DIRECTORY, pathToProcess, fileMetrics);
+            separateMetrics.add(fileMetrics);
+        }
+
+        List<List<PathToProcess>> groups = SharedTraversal.plan(pathsToProcess,
+                pathToProcess -> FileWatcherUtil.getWalkRoot(BASE_DIRECTORY, pathToProcess));
+        Assert.assertEquals(1, groups.size());
+        Path root = FileWatcherUtil.getWalkRoot(BASE_DIRECTORY, groups.get(0).get(0));
+        Assert.assertEquals(Paths.get(BASE_DIRECTORY), root);
+
+        SharedTraversal sharedTraversal = new SharedTraversal(root);
+        List<Map<String, FileMetric>> sharedMetrics = new ArrayList<>();
+        for (PathToProcess pathToProcess : pathsToProcess) {
+            Map<String, FileMetric> fileMetrics = new HashMap<>();
+            sharedTraversal.add(FileWatcherUtil.getWalkRoot(BASE_DIRECTORY, pathToProcess),
+                    FileWatcherUtil.getWalkDepth(pathToProcess), new CustomFileWalker(BASE_DIRECTORY,
+                            (GlobPathMatcher) FileWatcherUtil.getPathMatcher(pathToProcess), pathToProcess,
+                            fileMetrics, new ChangeDetector(), null));
+            sharedMetrics.add(fileMetrics);
+        }
+        sharedTraversal.walk();
+
+        for (int i = 0; i < pathsToProcess.size(); i++) {
+            Map<String, FileMetric> expected = separateMetrics.get(i);
+            Map<String, FileMetric> actual = sharedMetrics.get(i);
+            Assert.assertFalse(expected.isEmpty());
+            Assert.assertEquals(expected.keySet(), actual.keySet());
+            for (Map.Entry<String, FileMetric> entry : expected.entrySet()) {
+                FileMetric fileMetric = actual.get(entry.getKey());
+                Assert.assertEquals(entry.getKey(), entry.getValue().getNumberOfFiles(), fileMetric.getNumberOfFiles());
+                Assert.assertEquals(entry.getValue().getFileSize(), fileMetric.getFileSize());
+                Assert.assertEquals(entry.getValue().getNumberOfLines(), fileMetric.getNumberOfLines());
+                Assert.assertEquals(entry.getValue().getRecursiveNumberOfFiles(),
+                        fileMetric.getRecursiveNumberOfFiles());
+                Assert.assertEquals(entry.getValue().getRecursiveFileSize(), fileMetric.getRecursiveFileSize());
+                Assert.assertEquals(entry.getValue().getAvailable(), fileMetric.getAvailable());
+            }
+        }
+    }
+
+    @Test
+    public void sharedTraversalCountsTheStatOfAnEntryOnce() throws IOException {
+        List<PathToProcess> pathsToProcess = Arrays.asList(
+                getPathToProcess("Shared Stats All Files", BASE_DIRECTORY + "**", true),
+                getPathToProcess("Shared Stats Text Files", BASE_DIRECTORY + "**.txt", false));
+        WalkStatistics.clear();
+        try {
+            long separateStatCalls = 0;
+            for (PathToProcess pathToProcess : pathsToProcess) {
+                FileWatcherUtil.walk(BASE_DIRECTORY, pathToProcess, new HashMap<>());
+                separateStatCalls += WalkStatistics.get(pathToProcess).take(0).getStatCalls();
+            }
+            SharedTraversal sharedTraversal = new SharedTraversal(Paths.get(BASE_DIRECTORY));
+            for (PathToProcess pathToProcess : pathsToProcess) {
+                sharedTraversal.add(FileWatcherUtil.getWalkRoot(BASE_DIRECTORY, pathToProcess),
+                        FileWatcherUtil.getWalkDepth(pathToProcess), new CustomFileWalker(BASE_DIRECTORY,
+                                (GlobPathMatcher) FileWatcherUtil.getPathMatcher(pathToProcess), pathToProcess,
+                                new HashMap<>(), new ChangeDetector(), null));
+            }
+            sharedTraversal.walk();
+
+            long sharedStatCalls = 0;
+            List<Long> entriesVisited = new ArrayList<>();
+            for (PathToProcess pathToProcess : pathsToProcess) {
+                WalkStatistics statistics = WalkStatistics.get(pathToProcess).take(0);
+                sharedStatCalls += statistics.getStatCalls();
+                entriesVisited.add(statistics.getEntriesVisited());
+            }
+            // Both paths are handed every entry of the tree, but only the first one is charged for reading it
+            Assert.assertEquals(entriesVisited.get(0), entriesVisited.get(1));
+            Assert.assertEquals(separateStatCalls - entriesVisited.get(1), sharedStatCalls);
+        } finally {
+            WalkStatistics.clear();
+        }
+    }
+
+    @Test
+    public void pathsInSeparateTreesAreNotGrouped() {
+        List<Path> walkRoots = Arrays.asList(Paths.get("/data/in"), Paths.get("/logs"), Paths.get("/data"),
+                Paths.get("/data/in/today.csv"), Paths.get("/logs2"));
+        List<List<Path>> groups = SharedTraversal.plan(walkRoots, walkRoot -> walkRoot);
+        Assert.assertEquals(3, groups.size());
+        Assert.assertEquals(Arrays.asList(Paths.get("/data"), Paths.get("/data/in"), Paths.get("/data/in/today.csv")),
+                groups.get(0));
+        Assert.assertEquals(Collections.singletonList(Paths.get("/logs")), groups.get(1));
+        Assert.assertEquals(Collections.singletonList(Paths.get("/logs2")), groups.get(2));
+    }
+
+    private PathToProcess getPathToProcess(String displayName, String path, boolean recursive) {
+        PathToProcess pathToProcess = new PathToProcess();
+        pathToProcess.setDisplayName(displayName);
+        pathToProcess.setPath(path);
+        pathToProcess.setIgnoreHiddenFiles(true);
+        pathToProcess.setExcludeSubdirectoryCount(false);
+        pathToProcess.setEnableRecursiveFileCounts(recursive);
+        pathToProcess.setEnableRecursiveFileSizes(recursive);
+        return pathToProcess;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ *  Copyright 2020. AppDynamics LLC and its affiliates.
+ *  All Rights Reserved.
+ *  This is unpublished proprietary source code of AppDynamics LLC and its affiliates.
+ *  The copyright notice above does not evidence any actual or intended publication of such source code.
+ *
+ */
+
+package com.appdynamics.monitors.FileWatcher.processors;
+
+import com.appdynamics.extensions.filewatcher.config.FileMetric;
+import com.appdynamics.extensions.filewatcher.config.PathToProcess;
+import com.appdynamics.extensions.filewatcher.processors.ChangeDetector;
+import com.appdynamics.extensions.filewatcher.processors.StateSnapshot;
+import com.appdynamics.extensions.filewatcher.util.FileWatcherUtil;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class StateSnapshotTest {
+
+    @Test
+    public void restoredChangeDetectorReportsChangesMadeWhileStopped() throws IOException {
+        Path directory = Files.createTempDirectory("snapshot");
+        try {
+            Path baseDirectory = Files.createDirectory(directory.resolve("logs"));
+            Path appended = Files.write(baseDirectory.resolve("app.log"), "a\nb\n".getBytes(StandardCharsets.UTF_8));
+            Files.setLastModifiedTime(appended, FileTime.fromMillis(System.currentTimeMillis() - 60000));
+            Files.write(baseDirectory.resolve("unchanged.log"), "a\n".getBytes(StandardCharsets.UTF_8));
+            PathToProcess pathToProcess = getPathToProcess(baseDirectory);
+
+            ChangeDetector changeDetector = new ChangeDetector();
+            walk(baseDirectory, pathToProcess, changeDetector);
+            Path file = directory.resolve("state").resolve("file-watcher.state");
+            new StateSnapshot(file).write(Collections.singletonMap("Logs", changeDetector));
+            Assert.assertTrue(Files.isRegularFile(file));
+            Assert.assertFalse(Files.exists(file.resolveSibling("file-watcher.state.tmp")));
+
+            Files.write(appended, "c\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+            Files.write(baseDirectory.resolve("new.log"), "a\n".getBytes(StandardCharsets.UTF_8));
+
+            ChangeDetector restored = new ChangeDetector();
+            StateSnapshot stateSnapshot = new StateSnapshot(file);
+            stateSnapshot.restore("Other", restored);
+            Assert.assertEquals(0, restored.size());
+            stateSnapshot.restore("Logs", restored);
+            Assert.assertEquals(changeDetector.size(), restored.size());
+
+            Map<String, FileMetric> fileMetrics = walk(baseDirectory, pathToProcess, restored);
+            Assert.assertTrue(fileMetrics.get("Logs|app.log").getModified());
+            Assert.assertFalse(fileMetrics.get("Logs|unchanged.log").getModified());
+            Assert.assertEquals(3, fileMetrics.get("Logs|app.log").getNumberOfLines());
+            ChangeDetector.Changes changes = restored.takeChanges();
+            Assert.assertEquals(1, changes.getCreated());
+            Assert.assertEquals(4, changes.getBytesAppended());
+        } finally {
+            FileUtils.deleteDirectory(directory.toFile());
+        }
+    }
+
+    @Test
+    public void unreadableSnapshotIsIgnored() throws IOException {
+        Path directory = Files.createTempDirectory("snapshot");
+        try {
+            Path file = Files.write(directory.resolve("file-watcher.state"), new byte[]{1, 2, 3});
+            ChangeDetector changeDetector = new ChangeDetector();
+            new StateSnapshot(file).restore("Logs", changeDetector);
+            Assert.assertEquals(0, changeDetector.size());
+        } finally {
+            FileUtils.deleteDirectory(directory.toFile());
+        }
+    }
+
+    @Test
+    public void statesOfBaseDirectoriesNoLongerConfiguredAreDropped() throws IOException {
+        Path directory = Files.createTempDirectory("snapshot");
+        try {
+            Path baseDirectory = Files.createDirectory(directory.resolve("logs"));
+            Files.write(baseDirectory.resolve("app.log"), "a\n".getBytes(StandardCharsets.UTF_8));
+            ChangeDetector changeDetector = new ChangeDetector();
+            walk(baseDirectory, getPathToProcess(baseDirectory), changeDetector);
+            Map<String, ChangeDetector> changeDetectors = new HashMap<>();
+            changeDetectors.put("Logs", changeDetector);
+            changeDetectors.put("Removed", changeDetector);
+            Path file = directory.resolve("file-watcher.state");
+            new StateSnapshot(file).write(changeDetectors);
+
+            // Neither state is restored before the write, only the configured one is kept
+            new StateSnapshot(file).write(Collections.emptyMap(), Collections.singleton("Logs"));
+
+            StateSnapshot stateSnapshot = new StateSnapshot(file);
+            ChangeDetector removed = new ChangeDetector();
+            stateSnapshot.restore("Removed", removed);
+            Assert.assertEquals(0, removed.size());
+            ChangeDetector restored = new ChangeDetector();
+            stateSnapshot.restore("Logs", restored);
+            Assert.assertEquals(changeDetector.size(), restored.size());
+        } finally {
+            FileUtils.deleteDirectory(directory.toFile());
+        }
+    }
+
+    private Map<String, FileMetric> walk(Path baseDirectory, PathToProcess pathToProcess,
+                                         ChangeDetector changeDetector) throws IOException {
+        Map<String, FileMetric> fileMetrics = new HashMap<>();
+        changeDetector.beginCycle();
+        FileWatcherUtil.walk(baseDirectory.toString(), pathToProcess, fileMetrics, null, changeDetector);
+        changeDetector.endCycle();
+        return fileMetrics;
+    }
+
+    private PathToProcess getPathToProcess(Path baseDirectory) {
+        PathToProcess pathToProcess = new PathToProcess();
+        pathToProcess.setDisplayName("Logs");
+        pathToProcess.setPath(baseDirectory + "/*.log");
+        pathToProcess.setIgnoreHiddenFiles(false);
+        return pathToProcess;
+    }
+}
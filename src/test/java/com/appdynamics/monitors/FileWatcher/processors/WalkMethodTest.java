@@ -3,15 +3,25 @@ package com.appdynamics.monitors.FileWatcher.processors;
 import com.appdynamics.extensions.filewatcher.config.FileMetric;
 import com.appdynamics.extensions.filewatcher.config.PathToProcess;
 import com.appdynamics.extensions.filewatcher.processors.CustomFileWalker;
+import com.appdynamics.extensions.filewatcher.processors.DirectoryTreeCache;
+import com.appdynamics.extensions.filewatcher.processors.VirtualThreadExecutor;
 import com.appdynamics.extensions.filewatcher.util.FileWatcherUtil;
+import com.appdynamics.extensions.filewatcher.util.WalkStatistics;
 import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -89,6 +99,151 @@ public class WalkMethodTest {
 
     }
 
+    @Test
+    public void testWalkFunctionAggregatesRecursiveMetricsInSinglePass() throws IOException {
+
+        Map<String, FileMetric> fileMetricMap = new HashMap<>();
+
+        String baseDirPath = "src/test/resources/TestFiles/";
+
+        PathToProcess pathToProcess = new PathToProcess();
+        pathToProcess.setDisplayName("Single Level");
+        pathToProcess.setPath("src/test/resources/TestFiles/*");
+        pathToProcess.setIgnoreHiddenFiles(true);
+        pathToProcess.setExcludeSubdirectoryCount(false);
+        pathToProcess.setEnableRecursiveFileCounts(true);
+        pathToProcess.setEnableRecursiveFileSizes(true);
+
+        FileWatcherUtil.walk(baseDirPath,pathToProcess,fileMetricMap);
+
+        Assert.assertEquals(3,fileMetricMap.size());
+        FileMetric dir2 = fileMetricMap.get("Single Level|dir2");
+        Path dir2Path = Paths.get("src/test/resources/TestFiles/dir2");
+        Assert.assertEquals(3, dir2.getNumberOfFiles());
+        Assert.assertEquals(FileWatcherUtil.calculateRecursiveFileCount(dir2Path, true, false),
+                dir2.getRecursiveNumberOfFiles());
+        Assert.assertEquals(FileUtils.sizeOfDirectoryAsBigInteger(dir2Path.toFile()).longValue(),
+                dir2.getRecursiveFileSize());
+    }
+
+    @Test
+    public void testParallelWalkMatchesSequentialWalk() throws IOException {
+
+        String baseDirPath = "src/test/resources/TestFiles/";
+
+        PathToProcess pathToProcess = new PathToProcess();
+        pathToProcess.setDisplayName("Fully Recursive");
+        pathToProcess.setPath("src/test/resources/TestFiles/**");
+        pathToProcess.setIgnoreHiddenFiles(false);
+        pathToProcess.setExcludeSubdirectoryCount(false);
+        pathToProcess.setEnableRecursiveFileCounts(true);
+        pathToProcess.setEnableRecursiveFileSizes(true);
+
+        Map<String, FileMetric> sequentialMetrics = new HashMap<>();
+        FileWatcherUtil.walk(baseDirPath,pathToProcess,sequentialMetrics);
+
+        pathToProcess.setWalkParallelism(4);
+        Map<String, FileMetric> parallelMetrics = new HashMap<>();
+        FileWatcherUtil.walk(baseDirPath,pathToProcess,parallelMetrics);
+
+        Assert.assertEquals(sequentialMetrics.keySet(), parallelMetrics.keySet());
+        for (Map.Entry<String, FileMetric> entry : sequentialMetrics.entrySet()) {
+            FileMetric expected = entry.getValue();
+            FileMetric actual = parallelMetrics.get(entry.getKey());
+            Assert.assertEquals(expected.getNumberOfFiles(), actual.getNumberOfFiles());
+            Assert.assertEquals(expected.getFileSize(), actual.getFileSize());
+            Assert.assertEquals(expected.getNumberOfLines(), actual.getNumberOfLines());
+            Assert.assertEquals(expected.getOldestFileAge(), actual.getOldestFileAge(), 1);
+            Assert.assertEquals(expected.getRecursiveNumberOfFiles(), actual.getRecursiveNumberOfFiles());
+            Assert.assertEquals(expected.getRecursiveFileSize(), actual.getRecursiveFileSize());
+        }
+    }
+
+    @Test
+    public void testVirtualThreadWalkMatchesSequentialWalk() throws IOException {
+
+        VirtualThreadExecutor virtualThreadExecutor = VirtualThreadExecutor.create(2);
+        Assume.assumeNotNull(virtualThreadExecutor);
+
+        String baseDirPath = "src/test/resources/TestFiles/";
+
+        PathToProcess pathToProcess = new PathToProcess();
+        pathToProcess.setDisplayName("Fully Recursive");
+        pathToProcess.setPath("src/test/resources/TestFiles/**");
+        pathToProcess.setIgnoreHiddenFiles(false);
+        pathToProcess.setExcludeSubdirectoryCount(false);
+        pathToProcess.setEnableRecursiveFileCounts(true);
+        pathToProcess.setEnableRecursiveFileSizes(true);
+
+        Map<String, FileMetric> sequentialMetrics = new HashMap<>();
+        FileWatcherUtil.walk(baseDirPath,pathToProcess,sequentialMetrics);
+
+        Map<String, FileMetric> virtualThreadMetrics = new HashMap<>();
+        try {
+            FileWatcherUtil.walk(baseDirPath,pathToProcess,virtualThreadMetrics,virtualThreadExecutor);
+        } finally {
+            virtualThreadExecutor.close();
+        }
+
+        Assert.assertEquals(sequentialMetrics.keySet(), virtualThreadMetrics.keySet());
+        for (Map.Entry<String, FileMetric> entry : sequentialMetrics.entrySet()) {
+            FileMetric expected = entry.getValue();
+            FileMetric actual = virtualThreadMetrics.get(entry.getKey());
+            Assert.assertEquals(expected.getNumberOfFiles(), actual.getNumberOfFiles());
+            Assert.assertEquals(expected.getNumberOfLines(), actual.getNumberOfLines());
+            Assert.assertEquals(expected.getRecursiveNumberOfFiles(), actual.getRecursiveNumberOfFiles());
+            Assert.assertEquals(expected.getRecursiveFileSize(), actual.getRecursiveFileSize());
+        }
+    }
+
+    @Test
+    public void testParallelAndVirtualThreadWalksCountSubdirectoriesOfMatchedDirectories() throws IOException {
+
+        String baseDirPath = "src/test/resources/TestFiles/";
+
+        // dir3 cannot match the glob, but is part of the recursive totals of dir2
+        PathToProcess pathToProcess = new PathToProcess();
+        pathToProcess.setDisplayName("Single Level");
+        pathToProcess.setPath("src/test/resources/TestFiles/*");
+        pathToProcess.setIgnoreHiddenFiles(false);
+        pathToProcess.setExcludeSubdirectoryCount(false);
+        pathToProcess.setEnableRecursiveFileCounts(true);
+        pathToProcess.setEnableRecursiveFileSizes(true);
+
+        Map<String, FileMetric> sequentialMetrics = new HashMap<>();
+        FileWatcherUtil.walk(baseDirPath,pathToProcess,sequentialMetrics);
+        Assert.assertEquals(FileWatcherUtil.calculateRecursiveFileCount(Paths.get(baseDirPath + "dir2"), false, false),
+                sequentialMetrics.get("Single Level|dir2").getRecursiveNumberOfFiles());
+
+        pathToProcess.setWalkParallelism(4);
+        Map<String, FileMetric> parallelMetrics = new HashMap<>();
+        FileWatcherUtil.walk(baseDirPath,pathToProcess,parallelMetrics);
+        assertSameRecursiveMetrics(sequentialMetrics, parallelMetrics);
+
+        VirtualThreadExecutor virtualThreadExecutor = VirtualThreadExecutor.create(2);
+        Assume.assumeNotNull(virtualThreadExecutor);
+        pathToProcess.setWalkParallelism(1);
+        Map<String, FileMetric> virtualThreadMetrics = new HashMap<>();
+        try {
+            FileWatcherUtil.walk(baseDirPath,pathToProcess,virtualThreadMetrics,virtualThreadExecutor);
+        } finally {
+            virtualThreadExecutor.close();
+        }
+        assertSameRecursiveMetrics(sequentialMetrics, virtualThreadMetrics);
+    }
+
+    private void assertSameRecursiveMetrics(Map<String, FileMetric> expectedMetrics,
+                                            Map<String, FileMetric> actualMetrics) {
+        Assert.assertEquals(expectedMetrics.keySet(), actualMetrics.keySet());
+        for (Map.Entry<String, FileMetric> entry : expectedMetrics.entrySet()) {
+            FileMetric expected = entry.getValue();
+            FileMetric actual = actualMetrics.get(entry.getKey());
+            Assert.assertEquals(expected.getNumberOfFiles(), actual.getNumberOfFiles());
+            Assert.assertEquals(expected.getRecursiveNumberOfFiles(), actual.getRecursiveNumberOfFiles());
+            Assert.assertEquals(expected.getRecursiveFileSize(), actual.getRecursiveFileSize());
+        }
+    }
+
     public List<String> expectedMetricListSingleLevel(){
         List<String> metricListSingleLevel = Lists.newLinkedList();
         metricListSingleLevel.add("Single Level|dir1");
@@ -142,4 +297,160 @@ public class WalkMethodTest {
         Assert.assertEquals(259,(fileMetricMap.get("Specific File|TF1.txt")).getNumberOfLines());
     }
 
+    @Test
+    public void testWalkStatisticsCountEntriesAndLineCounts() throws IOException {
+        String baseDirPath = "src/test/resources/TestFiles/";
+
+        PathToProcess pathToProcess = new PathToProcess();
+        pathToProcess.setDisplayName("Walk Statistics");
+        pathToProcess.setPath("src/test/resources/TestFiles/**");
+        pathToProcess.setIgnoreHiddenFiles(true);
+        pathToProcess.setExcludeSubdirectoryCount(true);
+        pathToProcess.setEnableRecursiveFileCounts(false);
+        pathToProcess.setEnableRecursiveFileSizes(false);
+
+        FileWatcherUtil.walk(baseDirPath, pathToProcess, new HashMap<>());
+        WalkStatistics first = WalkStatistics.get(pathToProcess).take(5);
+        Assert.assertEquals(5, first.getWalkDurationMillis());
+        Assert.assertEquals(9, first.getEntriesMatched());
+        Assert.assertTrue(first.getEntriesVisited() >= 9);
+        Assert.assertTrue(first.getStatCalls() > first.getEntriesVisited());
+        Assert.assertTrue(first.getLineCountCacheHitRatio() >= 0);
+
+        // Nothing changed, so every line count comes from the cache
+        FileWatcherUtil.walk(baseDirPath, pathToProcess, new HashMap<>());
+        WalkStatistics second = WalkStatistics.get(pathToProcess).take(0);
+        Assert.assertEquals(first.getEntriesVisited(), second.getEntriesVisited());
+        Assert.assertEquals(100, second.getLineCountCacheHitRatio());
+        Assert.assertEquals(0, second.getLineCountBytesRead());
+        Assert.assertEquals(-1, second.getEmissionLatencyMillis());
+    }
+
+    @Test
+    public void testDirectoryFileAgeAndSizePercentiles() throws IOException {
+        Path baseDirectory = Files.createTempDirectory("percentiles");
+        try {
+            Path queue = Files.createDirectory(baseDirectory.resolve("queue"));
+            Path nested = Files.createDirectory(queue.resolve("nested"));
+            long now = System.currentTimeMillis();
+            for (int i = 1; i <= 100; i++) {
+                Path file = Files.write((i % 2 == 0 ? queue : nested).resolve("message" + i), new byte[i * 100]);
+                Files.setLastModifiedTime(file, FileTime.fromMillis(now - i * 10000L));
+            }
+
+            PathToProcess pathToProcess = new PathToProcess();
+            pathToProcess.setDisplayName("Queue");
+            pathToProcess.setPath(queue.toString());
+            pathToProcess.setIgnoreHiddenFiles(false);
+            pathToProcess.setEnableRecursiveFileCounts(false);
+
+            Map<String, FileMetric> fileMetricMap = new HashMap<>();
+            FileWatcherUtil.walk(baseDirectory.toString(), pathToProcess, fileMetricMap);
+            FileMetric direct = fileMetricMap.get("Queue|queue");
+            // Only the 50 files directly in the directory, with ages of 20 to 1000 seconds
+            Assert.assertEquals(500, direct.getMedianFileAge(), 500 / 8 + 1);
+            Assert.assertEquals(900, direct.getP90FileAge(), 900 / 8 + 1);
+            Assert.assertEquals(5000, direct.getMedianFileSize(), 5000 / 8 + 1);
+            Assert.assertTrue(direct.getP99FileSize() <= 10000);
+
+            pathToProcess.setEnableRecursiveFileCounts(true);
+            fileMetricMap = new HashMap<>();
+            FileWatcherUtil.walk(baseDirectory.toString(), pathToProcess, fileMetricMap);
+            FileMetric recursive = fileMetricMap.get("Queue|queue");
+            // All 100 files below the directory, with ages of 10 to 1000 seconds
+            Assert.assertEquals(500, recursive.getMedianFileAge(), 500 / 8 + 1);
+            Assert.assertEquals(990, recursive.getP99FileAge(), 990 / 8 + 1);
+            Assert.assertEquals(9900, recursive.getP99FileSize(), 9900 / 8 + 1);
+            Assert.assertTrue(recursive.getMedianFileAge() <= recursive.getP90FileAge());
+        } finally {
+            FileUtils.deleteDirectory(baseDirectory.toFile());
+        }
+    }
+
+    @Test
+    public void testDirectoryCacheReusesUnchangedSubtrees() throws IOException {
+        Path baseDirectory = Files.createTempDirectory("directoryCache");
+        try {
+            Path queue = Files.createDirectory(baseDirectory.resolve("queue"));
+            Path nested = Files.createDirectories(queue.resolve("archive").resolve("2020"));
+            Path other = Files.createDirectory(queue.resolve("failed"));
+            for (int i = 0; i < 10; i++) {
+                Files.write(nested.resolve("message" + i), new byte[100]);
+                Files.write(other.resolve("message" + i), new byte[10]);
+            }
+
+            PathToProcess pathToProcess = new PathToProcess();
+            pathToProcess.setDisplayName("Cached Queue");
+            pathToProcess.setPath(queue.toString());
+            pathToProcess.setIgnoreHiddenFiles(false);
+            pathToProcess.setEnableRecursiveFileCounts(true);
+            pathToProcess.setEnableRecursiveFileSizes(true);
+            pathToProcess.setDirectoryCache(true);
+
+            Map<String, FileMetric> fileMetricMap = new HashMap<>();
+            FileWatcherUtil.walk(baseDirectory.toString(), pathToProcess, fileMetricMap);
+            FileMetric first = fileMetricMap.get("Cached Queue|queue");
+            long firstVisited = WalkStatistics.get(pathToProcess).take(0).getEntriesVisited();
+
+            // Nothing changed, so neither subtree is listed again
+            fileMetricMap = new HashMap<>();
+            FileWatcherUtil.walk(baseDirectory.toString(), pathToProcess, fileMetricMap);
+            FileMetric second = fileMetricMap.get("Cached Queue|queue");
+            long secondVisited = WalkStatistics.get(pathToProcess).take(0).getEntriesVisited();
+            Assert.assertEquals(first.getRecursiveNumberOfFiles(), second.getRecursiveNumberOfFiles());
+            Assert.assertEquals(first.getRecursiveFileSize(), second.getRecursiveFileSize());
+            Assert.assertEquals(first.getMedianFileAge(), second.getMedianFileAge(), 1);
+            Assert.assertEquals(3, secondVisited);
+            Assert.assertTrue(secondVisited < firstVisited);
+
+            // Only the changed subtree is walked again
+            Files.write(nested.resolve("message10"), new byte[100]);
+            Files.setLastModifiedTime(nested, FileTime.fromMillis(System.currentTimeMillis() + 10000));
+            fileMetricMap = new HashMap<>();
+            FileWatcherUtil.walk(baseDirectory.toString(), pathToProcess, fileMetricMap);
+            FileMetric third = fileMetricMap.get("Cached Queue|queue");
+            Assert.assertEquals(first.getRecursiveNumberOfFiles() + 1, third.getRecursiveNumberOfFiles());
+            Assert.assertEquals(first.getRecursiveFileSize() + 100, third.getRecursiveFileSize());
+            Assert.assertEquals(3 + 1 + 11, WalkStatistics.get(pathToProcess).take(0).getEntriesVisited());
+        } finally {
+            DirectoryTreeCache.clear();
+            FileUtils.deleteDirectory(baseDirectory.toFile());
+        }
+    }
+
+    @Test
+    public void testDirectoryCachePicksUpFilesAppendedInPlaceOnceItExpires() throws IOException, InterruptedException {
+        Path baseDirectory = Files.createTempDirectory("directoryCache");
+        try {
+            Path queue = Files.createDirectory(baseDirectory.resolve("queue"));
+            Path nested = Files.createDirectory(queue.resolve("archive"));
+            Path log = Files.write(nested.resolve("z.txt"), new byte[100]);
+            FileTime directoryTime = FileTime.fromMillis(System.currentTimeMillis() - 60000);
+            Files.setLastModifiedTime(nested, directoryTime);
+
+            PathToProcess pathToProcess = new PathToProcess();
+            pathToProcess.setDisplayName("Appended Queue");
+            pathToProcess.setPath(queue.toString());
+            pathToProcess.setIgnoreHiddenFiles(false);
+            pathToProcess.setEnableRecursiveFileCounts(true);
+            pathToProcess.setEnableRecursiveFileSizes(true);
+            pathToProcess.setDirectoryCache(true);
+            pathToProcess.setDirectoryCacheMaxAgeSeconds(1);
+
+            Map<String, FileMetric> fileMetricMap = new HashMap<>();
+            FileWatcherUtil.walk(baseDirectory.toString(), pathToProcess, fileMetricMap);
+            Assert.assertEquals(100, fileMetricMap.get("Appended Queue|queue").getRecursiveFileSize());
+
+            // Appending does not change the time of the directory, so only the expiry of its aggregate picks it up
+            Files.write(log, new byte[5], StandardOpenOption.APPEND);
+            Files.setLastModifiedTime(nested, directoryTime);
+            Thread.sleep(1100);
+            fileMetricMap = new HashMap<>();
+            FileWatcherUtil.walk(baseDirectory.toString(), pathToProcess, fileMetricMap);
+            Assert.assertEquals(105, fileMetricMap.get("Appended Queue|queue").getRecursiveFileSize());
+        } finally {
+            DirectoryTreeCache.clear();
+            FileUtils.deleteDirectory(baseDirectory.toFile());
+        }
+    }
 }